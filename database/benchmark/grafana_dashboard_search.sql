@@ -0,0 +1,66 @@
+-- Grafana dashboard search benchmark: compares get_grafana_dashboards (full dashboard JSON, unindexed ILIKE) with
+-- search_grafana_dashboards (projection, trigram and tag indexes) over 5000 generated dashboards.
+--
+-- Runs in a transaction that is rolled back, so it can be pointed at a local database with the current schema:
+--
+--   psql -h localhost -p 38088 -U postgres -d local_zmon_db -f database/benchmark/grafana_dashboard_search.sql
+
+\timing on
+SET search_path TO zzm_api, public;
+
+BEGIN;
+
+-- dashboards of ~20 KB each, the size of a typical dashboard with a few rows of graph panels
+INSERT INTO zzm_data.grafana_dashboard (gd_id, gd_title, gd_dashboard, gd_grafana_version, gd_starred_by, gd_created_by)
+SELECT 'benchmark-' || i,
+       'Benchmark ' || (ARRAY['Checkout', 'Catalog', 'Payment', 'Search', 'Logistics'])[1 + i % 5] || ' Dashboard ' || i,
+       jsonb_build_object(
+           'title', 'Benchmark Dashboard ' || i,
+           'tags', jsonb_build_array('team-' || (i % 50), (ARRAY['prod', 'staging'])[1 + i % 2]),
+           'rows', (SELECT jsonb_agg(jsonb_build_object(
+                           'title', 'Row ' || r,
+                           'panels', (SELECT jsonb_agg(jsonb_build_object(
+                                             'type', 'graph',
+                                             'title', 'Panel ' || p,
+                                             'targets', jsonb_build_array(jsonb_build_object(
+                                                 'metric', 'zmon.check.' || (i * 10 + p),
+                                                 'tags', jsonb_build_object('entity', jsonb_build_array(repeat('x', 200)))))))
+                                        FROM generate_series(1, 8) p)))
+                      FROM generate_series(1, 8) r)),
+       'v2',
+       CASE WHEN i % 10 = 0 THEN ARRAY['benchmark-user'] ELSE '{}'::text[] END,
+       'benchmark-user'
+  FROM generate_series(1, 5000) i;
+
+ANALYZE zzm_data.grafana_dashboard;
+
+\echo '--- open search dialog (no filter)'
+SELECT count(*) FROM get_grafana_dashboards('', NULL, NULL, 'benchmark-user');
+SELECT count(*) FROM search_grafana_dashboards('', NULL, NULL, 'benchmark-user');
+
+\echo '--- title filter'
+SELECT count(*) FROM get_grafana_dashboards('payment dashboard 12', NULL, NULL, 'benchmark-user');
+SELECT count(*) FROM search_grafana_dashboards('payment dashboard 12', NULL, NULL, 'benchmark-user');
+
+\echo '--- tag filter'
+SELECT count(*) FROM get_grafana_dashboards('', '["team-7"]', NULL, 'benchmark-user');
+SELECT count(*) FROM search_grafana_dashboards('', '["team-7"]', NULL, 'benchmark-user');
+
+\echo '--- starred'
+SELECT count(*) FROM get_grafana_dashboards('', NULL, 'benchmark-user', 'benchmark-user');
+SELECT count(*) FROM search_grafana_dashboards('', NULL, 'benchmark-user', 'benchmark-user');
+
+\echo '--- plans of the search query'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT gd_id, gd_title, gd_tags::text
+  FROM zzm_data.grafana_dashboard
+ WHERE gd_title ilike '%payment dashboard 12%'
+ ORDER BY gd_title;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT gd_id, gd_title, gd_tags::text
+  FROM zzm_data.grafana_dashboard
+ WHERE gd_tags @> '["team-7"]'::jsonb
+ ORDER BY gd_title;
+
+ROLLBACK;
@@ -1,2 +1,5 @@
 RESET ROLE;
 SELECT zz_utils.create_project_schema_data_env(schema_name:='zzm_data');
+
+-- trigram indexes for ILIKE searches
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
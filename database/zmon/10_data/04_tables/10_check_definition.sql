@@ -20,3 +20,5 @@ CREATE TABLE zzm_data.check_definition (
 
 CREATE UNIQUE INDEX ON zzm_data.check_definition (lower(cd_name), lower(cd_owning_team));
 CREATE UNIQUE INDEX ON zzm_data.check_definition (lower(cd_source_url));
+CREATE INDEX ON zzm_data.check_definition USING gin (cd_name gin_trgm_ops);
+CREATE INDEX ON zzm_data.check_definition USING gin ((cd_id::text) gin_trgm_ops);
@@ -24,6 +24,9 @@ CREATE TABLE zzm_data.alert_definition_tree   (
 
 CREATE INDEX ON zzm_data.alert_definition_tree(adt_parent_id);
 CREATE INDEX ON zzm_data.alert_definition_tree(adt_check_definition_id);
+CREATE INDEX ON zzm_data.alert_definition_tree USING gin (adt_name gin_trgm_ops);
+CREATE INDEX ON zzm_data.alert_definition_tree USING gin ((adt_id::text) gin_trgm_ops);
+CREATE INDEX ON zzm_data.alert_definition_tree (adt_id) WHERE adt_name IS NULL;
 
 COMMENT ON COLUMN zzm_data.alert_definition_tree.adt_team IS 'The team that should see the alert';
 COMMENT ON COLUMN zzm_data.alert_definition_tree.adt_responsible_team IS 'The team that should fix the alert when triggered';
@@ -10,5 +10,9 @@ CREATE TABLE zzm_data.dashboard (
     d_view_mode               zzm_data.view_mode    NOT NULL    DEFAULT 'FULL',
     d_edit_option             zzm_data.edit_option  NOT NULL    DEFAULT 'PRIVATE',
     d_shared_teams            text[]                NOT NULL    DEFAULT '{}',
-    d_tags                    text[]                NULL
+    d_tags                    text[]                NULL,
+    d_version                 int                   NOT NULL    DEFAULT 1
 );
+
+CREATE INDEX ON zzm_data.dashboard USING gin (d_name gin_trgm_ops);
+CREATE INDEX ON zzm_data.dashboard USING gin ((d_id::text) gin_trgm_ops);
@@ -9,5 +9,13 @@ CREATE TABLE zzm_data.grafana_dashboard
   gd_created timestamp default now(),
   gd_last_modified_by text,
   gd_last_modified timestamp default now(),
+  gd_tags jsonb not null default '[]'::jsonb, -- copy of gd_dashboard->'tags', maintained by grafana_dashboard_tags_trigger
+  gd_dashboard_v1 jsonb, -- dashboard before the v1 to v2 migration, kept for rollback
+  gd_version int not null default 1, -- incremented on every save
   primary key ( gd_id )
 );
+
+CREATE INDEX ON zzm_data.grafana_dashboard USING gin (gd_title gin_trgm_ops);
+CREATE INDEX ON zzm_data.grafana_dashboard USING gin (gd_tags jsonb_path_ops);
+CREATE INDEX ON zzm_data.grafana_dashboard USING gin (gd_starred_by);
+CREATE INDEX ON zzm_data.grafana_dashboard (gd_id) WHERE gd_grafana_version = 'v1';
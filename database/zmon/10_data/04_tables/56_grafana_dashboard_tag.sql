@@ -0,0 +1,7 @@
+-- number of Grafana dashboards per tag, maintained by grafana_dashboard_tag_count_trigger
+CREATE TABLE zzm_data.grafana_dashboard_tag
+(
+  gdt_tag text not null,
+  gdt_count int not null,
+  primary key ( gdt_tag )
+);
@@ -0,0 +1,8 @@
+CREATE OR REPLACE FUNCTION zzm_data.grafana_dashboard_tags_trigger() RETURNS trigger AS
+$BODY$
+BEGIN
+    NEW.gd_tags = CASE WHEN jsonb_typeof(NEW.gd_dashboard->'tags') = 'array' THEN NEW.gd_dashboard->'tags' ELSE '[]'::jsonb END;
+    RETURN NEW;
+END;
+$BODY$
+LANGUAGE plpgsql;
@@ -0,0 +1,46 @@
+-- tags are counted once per occurrence in gd_tags, like json_array_elements_text on the dashboard did
+CREATE OR REPLACE FUNCTION zzm_data.grafana_dashboard_tag_count_trigger() RETURNS trigger AS
+$BODY$
+DECLARE
+    l_old_tags jsonb := '[]'::jsonb;
+    l_new_tags jsonb := '[]'::jsonb;
+    l_tag      text;
+    l_count    int;
+BEGIN
+    -- OLD and NEW are only assigned for the matching operations
+    IF TG_OP <> 'INSERT' THEN
+        l_old_tags = OLD.gd_tags;
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        l_new_tags = NEW.gd_tags;
+    END IF;
+
+    -- rows are always locked in tag order, so concurrent saves cannot deadlock
+    -- null elements in the tags array are not counted, gdt_tag cannot hold them
+    FOR l_tag, l_count IN
+        SELECT tag, sum(delta)::int
+          FROM (SELECT tag, -1 AS delta
+                  FROM jsonb_array_elements_text(l_old_tags) o(tag)
+                 WHERE tag IS NOT NULL
+                 UNION ALL
+                SELECT tag, 1 AS delta
+                  FROM jsonb_array_elements_text(l_new_tags) n(tag)
+                 WHERE tag IS NOT NULL) t
+         GROUP BY tag
+        HAVING sum(delta) <> 0
+         ORDER BY tag
+    LOOP
+        INSERT INTO zzm_data.grafana_dashboard_tag (gdt_tag, gdt_count)
+             VALUES (l_tag, l_count)
+        ON CONFLICT (gdt_tag) DO UPDATE
+                SET gdt_count = grafana_dashboard_tag.gdt_count + EXCLUDED.gdt_count;
+
+        DELETE FROM zzm_data.grafana_dashboard_tag
+         WHERE gdt_tag = l_tag
+           AND gdt_count <= 0;
+    END LOOP;
+
+    RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql;
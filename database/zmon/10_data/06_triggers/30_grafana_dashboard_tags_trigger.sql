@@ -0,0 +1,3 @@
+CREATE TRIGGER grafana_dashboard_tags_trigger
+BEFORE INSERT OR UPDATE OF gd_dashboard ON zzm_data.grafana_dashboard
+    FOR EACH ROW EXECUTE PROCEDURE zzm_data.grafana_dashboard_tags_trigger();
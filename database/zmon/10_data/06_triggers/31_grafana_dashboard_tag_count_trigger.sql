@@ -0,0 +1,9 @@
+CREATE TRIGGER grafana_dashboard_tag_count_trigger
+AFTER INSERT OR DELETE ON zzm_data.grafana_dashboard
+    FOR EACH ROW EXECUTE PROCEDURE zzm_data.grafana_dashboard_tag_count_trigger();
+
+-- gd_tags is written by grafana_dashboard_tags_trigger, so UPDATE OF gd_tags alone would not fire on dashboard saves
+CREATE TRIGGER grafana_dashboard_tag_count_update_trigger
+AFTER UPDATE OF gd_dashboard, gd_tags ON zzm_data.grafana_dashboard
+    FOR EACH ROW WHEN (OLD.gd_tags IS DISTINCT FROM NEW.gd_tags)
+    EXECUTE PROCEDURE zzm_data.grafana_dashboard_tag_count_trigger();
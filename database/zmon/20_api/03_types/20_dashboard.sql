@@ -9,5 +9,6 @@ CREATE TYPE dashboard AS (
     view_mode               zzm_data.view_mode,
     edit_option             zzm_data.edit_option,
     shared_teams            text[],
-    tags                    text[]
+    tags                    text[],
+    version                 int
 );
@@ -1,22 +1,38 @@
-CREATE OR REPLACE FUNCTION create_or_update_grafana_dashboard(id text, title text, dashboard text, user_name text, version text) RETURNS void AS
+-- returns the new version, or nothing if the dashboard was saved by someone else since expected_version was read
+-- a NULL expected_version overwrites any version
+CREATE OR REPLACE FUNCTION create_or_update_grafana_dashboard(id text, title text, dashboard text, user_name text, version text, expected_version int) RETURNS SETOF int AS
 $$
+DECLARE
+  l_version int;
 BEGIN
-  RAISE WARNING 'dashboard: % title: %', dashboard, title;
+  UPDATE zzm_data.grafana_dashboard
+     SET gd_title = title,
+         gd_dashboard = dashboard::jsonb,
+         gd_last_modified = now(),
+         gd_last_modified_by = user_name,
+         gd_grafana_version = version,
+         gd_version = gd_version + 1
+   WHERE gd_id = id
+     AND (expected_version IS NULL OR gd_version = expected_version)
+  RETURNING gd_version INTO l_version;
+
+  IF FOUND THEN
+    RETURN NEXT l_version;
+    RETURN;
+  END IF;
 
   BEGIN
 
     INSERT INTO zzm_data.grafana_dashboard(gd_id, gd_title, gd_dashboard, gd_grafana_version, gd_created_by, gd_last_modified_by)
-         SELECT id, title, dashboard::jsonb, version, user_name, user_name;
+         VALUES (id, title, dashboard::jsonb, version, user_name, user_name)
+      RETURNING gd_version INTO l_version;
+
+    RETURN NEXT l_version;
 
   EXCEPTION WHEN UNIQUE_VIOLATION THEN
 
-    UPDATE zzm_data.grafana_dashboard
-       SET gd_title = title,
-           gd_dashboard = dashboard::jsonb,
-           gd_last_modified = now(),
-           gd_last_modified_by = user_name,
-           gd_grafana_version = version
-     WHERE gd_id = id;
+    -- exists with another version
+    RETURN;
 
   END;
 END;
@@ -32,9 +48,19 @@ $$
    ORDER BY gd_title ASC;
 $$ LANGUAGE SQL VOLATILE SECURITY DEFINER;
 
-CREATE OR REPLACE FUNCTION get_grafana_dashboard(INOUT id text, IN user_name TEXT, OUT title text, OUT dashboard text, OUT "user" TEXT, OUT starred BOOLEAN, OUT "grafana_version" TEXT) RETURNS SETOF record AS
+CREATE OR REPLACE FUNCTION search_grafana_dashboards(IN s_title TEXT, IN s_tags TEXT, IN s_starred TEXT, IN s_user TEXT, OUT id TEXT, OUT title TEXT, OUT "tags" TEXT, OUT "starred" BOOLEAN, OUT "grafana_version" TEXT) RETURNS SETOF record AS
 $$
-  SELECT gd_id id, gd_title title, gd_dashboard::text dashboard, gd_created_by "user", COALESCE(user_name=ANY(gd_starred_by), FALSE) "starred", gd_grafana_version "grafana_version"
+  SELECT gd_id id, gd_title title, gd_tags::text "tags", COALESCE(s_user =ANY(gd_starred_by), FALSE) "starred", gd_grafana_version "grafana_version"
+    FROM zzm_data.grafana_dashboard
+   WHERE (s_title IS NULL OR s_title = '' OR gd_title ilike '%' || s_title || '%')
+     AND (s_tags IS NULL OR gd_tags @> s_tags::jsonb)
+     AND (s_starred IS NULL OR gd_starred_by @> ARRAY[s_starred])
+   ORDER BY gd_title ASC;
+$$ LANGUAGE SQL STABLE SECURITY DEFINER;
+
+CREATE OR REPLACE FUNCTION get_grafana_dashboard(INOUT id text, IN user_name TEXT, OUT title text, OUT dashboard text, OUT "user" TEXT, OUT starred BOOLEAN, OUT "grafana_version" TEXT, OUT version INT) RETURNS SETOF record AS
+$$
+  SELECT gd_id id, gd_title title, gd_dashboard::text dashboard, gd_created_by "user", COALESCE(user_name=ANY(gd_starred_by), FALSE) "starred", gd_grafana_version "grafana_version", gd_version version
     FROM zzm_data.grafana_dashboard
    WHERE gd_id = id;
 $$ LANGUAGE SQL VOLATILE SECURITY DEFINER;
@@ -49,11 +75,10 @@ $$ LANGUAGE SQL VOLATILE SECURITY DEFINER;
 
 CREATE OR REPLACE FUNCTION get_tags_with_count(OUT tag TEXT, OUT "count" INT) RETURNS SETOF RECORD AS
 $$
-select tag_name, count(1)::INT AS "count" from
-          (select json_array_elements_text((gd_dashboard->'tags')::json) AS tag_name
-             from zzm_data.grafana_dashboard) t
-            group by 1;
-$$ LANGUAGE SQL VOLATILE SECURITY DEFINER;
+  SELECT gdt_tag tag, gdt_count "count"
+    FROM zzm_data.grafana_dashboard_tag
+   ORDER BY gdt_tag ASC;
+$$ LANGUAGE SQL STABLE SECURITY DEFINER;
 
 CREATE OR REPLACE FUNCTION star_grafana_dashboard(INOUT id TEXT, IN user_name TEXT) RETURNS SETOF TEXT AS
 $$
@@ -72,3 +97,33 @@ update zzm_data.grafana_dashboard
    and user_name =ANY(gd_starred_by)
  returning gd_id;
 $$ LANGUAGE SQL VOLATILE SECURITY DEFINER;
+
+CREATE OR REPLACE FUNCTION get_grafana_v1_dashboard_count() RETURNS BIGINT AS
+$$
+  SELECT count(1)
+    FROM zzm_data.grafana_dashboard
+   WHERE gd_grafana_version = 'v1';
+$$ LANGUAGE SQL STABLE SECURITY DEFINER;
+
+CREATE OR REPLACE FUNCTION get_grafana_v1_dashboards(IN after_id TEXT, IN s_limit INT, OUT id TEXT, OUT dashboard TEXT, OUT last_modified TIMESTAMP) RETURNS SETOF record AS
+$$
+  SELECT gd_id id, gd_dashboard::text dashboard, gd_last_modified last_modified
+    FROM zzm_data.grafana_dashboard
+   WHERE gd_grafana_version = 'v1'
+     AND (after_id IS NULL OR gd_id > after_id)
+   ORDER BY gd_id ASC
+   LIMIT s_limit;
+$$ LANGUAGE SQL STABLE SECURITY DEFINER;
+
+-- only replaces the dashboard if nobody saved it since it was read, gd_last_modified is kept as it is no user edit
+CREATE OR REPLACE FUNCTION migrate_grafana_v1_dashboard(INOUT id TEXT, IN dashboard TEXT, IN last_modified TIMESTAMP) RETURNS SETOF TEXT AS
+$$
+  UPDATE zzm_data.grafana_dashboard
+     SET gd_dashboard_v1 = gd_dashboard,
+         gd_dashboard = dashboard::jsonb,
+         gd_grafana_version = 'v2'
+   WHERE gd_id = id
+     AND gd_grafana_version = 'v1'
+     AND gd_last_modified = last_modified
+  RETURNING gd_id;
+$$ LANGUAGE SQL VOLATILE SECURITY DEFINER;
@@ -1,3 +1,4 @@
+-- entity is NULL if dashboard.version is set and the dashboard was saved by someone else since it was read
 CREATE OR REPLACE FUNCTION create_or_update_dashboard (
      IN dashboard         dashboard,
      OUT entity           dashboard,
@@ -27,8 +28,10 @@ BEGIN
                                                THEN dashboard.shared_teams
                                                ELSE d_shared_teams
                                           END,
-               d_tags                   = dashboard.tags
+               d_tags                   = dashboard.tags,
+               d_version                = d_version + 1
          WHERE d_id  = dashboard.id
+           AND (dashboard.version IS NULL OR d_version = dashboard.version)
      RETURNING d_id,
                d_name,
                d_created_by,
@@ -39,7 +42,8 @@ BEGIN
                d_view_mode,
                d_edit_option,
                d_shared_teams,
-               d_tags
+               d_tags,
+               d_version
           INTO entity.id,
                entity.name,
                entity.created_by,
@@ -50,7 +54,8 @@ BEGIN
                entity.view_mode,
                entity.edit_option,
                entity.shared_teams,
-               entity.tags;
+               entity.tags,
+               entity.version;
     ELSE
         -- if it's not there, we should create a new one
         INSERT INTO zzm_data.dashboard (
@@ -85,7 +90,8 @@ BEGIN
                d_view_mode,
                d_edit_option,
                d_shared_teams,
-               d_tags
+               d_tags,
+               d_version
           INTO entity.id,
                entity.name,
                entity.created_by,
@@ -96,7 +102,8 @@ BEGIN
                entity.view_mode,
                entity.edit_option,
                entity.shared_teams,
-               entity.tags;
+               entity.tags,
+               entity.version;
     END IF;
 
     status := 'SUCCESS';
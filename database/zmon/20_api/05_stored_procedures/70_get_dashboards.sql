@@ -14,7 +14,8 @@ BEGIN
                d_view_mode,
                d_edit_option,
                d_shared_teams,
-               d_tags
+               d_tags,
+               d_version
           FROM zzm_data.dashboard
          WHERE (d_id = ANY (dashboard_ids));
 END
@@ -1,11 +1,27 @@
+-- results are ranked: exact id first, then titles starting with the search, then by title
+
 CREATE OR REPLACE FUNCTION quick_search_alerts(IN search TEXT, IN teams TEXT[], IN maxRows INT, OUT id TEXT, OUT title TEXT, OUT team TEXT) RETURNS SETOF record
 AS $$
- SELECT ad_id::text AS "id", ad_name AS "title", ad_team AS "team"
-   FROM zzm_data.alert_definition
-  WHERE (ad_id::text ILIKE search||'%' OR ad_name ILIKE '%'||search||'%')
-    AND (teams IS NULL OR ad_team = ANY(teams))
-    LIMIT maxRows
-$$ LANGUAGE sql SECURITY DEFINER;
+ SELECT a.id, a.title, a.team
+   FROM (
+         -- alerts with their own name are searched in the tree, so its trigram indexes are used
+         SELECT adt_id::text AS "id", adt_name::text AS "title", adt_team::text AS "team"
+           FROM zzm_data.alert_definition_tree
+          WHERE adt_name IS NOT NULL
+            AND (adt_id::text ILIKE search||'%' OR adt_name ILIKE '%'||search||'%')
+            AND (teams IS NULL OR adt_team = ANY(teams))
+          UNION ALL
+         -- alerts inheriting the name of their parent, the view is only evaluated if there are any
+         SELECT ad_id::text, ad_name::text, ad_team::text
+           FROM zzm_data.alert_definition
+          WHERE EXISTS (SELECT 1 FROM zzm_data.alert_definition_tree WHERE adt_name IS NULL)
+            AND ad_id IN (SELECT adt_id FROM zzm_data.alert_definition_tree WHERE adt_name IS NULL)
+            AND (ad_id::text ILIKE search||'%' OR ad_name ILIKE '%'||search||'%')
+            AND (teams IS NULL OR ad_team = ANY(teams))
+        ) a
+  ORDER BY a.id = search DESC, a.title ILIKE search||'%' DESC, a.title ASC
+  LIMIT maxRows
+$$ LANGUAGE sql STABLE SECURITY DEFINER;
 
 CREATE OR REPLACE FUNCTION quick_search_checks(IN search TEXT, IN teams TEXT[], IN maxRows INT, OUT id TEXT, OUT title TEXT, OUT team TEXT) RETURNS SETOF record
 AS $$
@@ -13,18 +29,19 @@ AS $$
    FROM zzm_data.check_definition
   WHERE (cd_id::text ILIKE search||'%' OR cd_name ILIKE '%'||search||'%')
     AND (teams IS NULL OR cd_owning_team = ANY(teams))
-    LIMIT maxRows
-$$ LANGUAGE sql SECURITY DEFINER;
+  ORDER BY cd_id::text = search DESC, cd_name ILIKE search||'%' DESC, cd_name ASC
+  LIMIT maxRows
+$$ LANGUAGE sql STABLE SECURITY DEFINER;
 
 CREATE OR REPLACE FUNCTION quick_search_grafana_dashboards(IN search TEXT, IN teams TEXT[], IN maxRows INT, OUT id TEXT, OUT title TEXT, OUT team TEXT) RETURNS SETOF record
 AS $$
 SELECT gd_id::text AS "id", gd_title::text AS "title", ''::text AS "team"
   FROM zzm_data.grafana_dashboard
  WHERE gd_title ilike '%' || search || '%'
-   AND (teams IS NULL OR (gd_dashboard->'tags') @> to_jsonb(teams))
- ORDER BY gd_title ASC
+   AND (teams IS NULL OR gd_tags @> to_jsonb(teams))
+ ORDER BY gd_id = search DESC, gd_title ILIKE search || '%' DESC, gd_title ASC
  LIMIT maxRows
-$$ LANGUAGE sql SECURITY DEFINER;
+$$ LANGUAGE sql STABLE SECURITY DEFINER;
 
 CREATE OR REPLACE FUNCTION quick_search_dashboards(IN search TEXT, IN teams TEXT[], IN maxRows INT, OUT id TEXT, OUT title TEXT, OUT team TEXT) RETURNS SETOF record
 AS $$
@@ -32,6 +49,6 @@ SELECT d_id::text AS "id", d_name AS "title", ''::text AS "team"
   FROM zzm_data.dashboard
  WHERE d_id::text ilike search || '%'
     OR d_name ilike '%' || search || '%'
-ORDER BY d_name ASC
+ORDER BY d_id::text = search DESC, d_name ILIKE search || '%' DESC, d_name ASC
 LIMIT maxRows
-$$ LANGUAGE sql SECURITY DEFINER;
+$$ LANGUAGE sql STABLE SECURITY DEFINER;
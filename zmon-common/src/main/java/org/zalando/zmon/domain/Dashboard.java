@@ -49,6 +49,10 @@ public class Dashboard {
     @DatabaseField
     private List<String> tags;
 
+    // incremented on every save, a dashboard is only updated if it is unchanged since this version was read
+    @DatabaseField
+    private Integer version;
+
     public Integer getId() {
         return id;
     }
@@ -133,6 +137,14 @@ public class Dashboard {
         return tags;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(final Integer version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("Dashboard{");
@@ -147,6 +159,7 @@ public class Dashboard {
         sb.append(", editOption=").append(editOption);
         sb.append(", sharedTeams=").append(sharedTeams);
         sb.append(", tags=").append(tags);
+        sb.append(", version=").append(version);
         sb.append('}');
         return sb.toString();
     }
@@ -0,0 +1,13 @@
+package org.zalando.zmon.exception;
+
+/**
+ * Dashboard was saved by someone else since the version being updated was read.
+ */
+public class DashboardVersionConflictException extends ZMonException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DashboardVersionConflictException(final String message) {
+        super(message);
+    }
+}
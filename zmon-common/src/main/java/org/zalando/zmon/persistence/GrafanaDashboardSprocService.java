@@ -6,6 +6,7 @@ import de.zalando.sprocwrapper.SProcService;
 import de.zalando.typemapper.annotations.DatabaseField;
 import de.zalando.typemapper.annotations.DatabaseType;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -36,6 +37,45 @@ public interface GrafanaDashboardSprocService {
 
         @DatabaseField
         public String grafanaVersion;
+
+        @DatabaseField
+        public int version;
+    }
+
+    /**
+     * Search hit without the dashboard JSON.
+     */
+    @DatabaseType
+    class GrafanaDashboardSearchResult {
+        @DatabaseField
+        public String id;
+
+        @DatabaseField
+        public String title;
+
+        @DatabaseField
+        public String tags;
+
+        @DatabaseField
+        public boolean starred;
+
+        @DatabaseField
+        public String grafanaVersion;
+    }
+
+    /**
+     * Stored v1 dashboard waiting for the migration to v2.
+     */
+    @DatabaseType
+    class GrafanaV1Dashboard {
+        @DatabaseField
+        public String id;
+
+        @DatabaseField
+        public String dashboard;
+
+        @DatabaseField
+        public Date lastModified;
     }
 
     @DatabaseType
@@ -47,12 +87,19 @@ public interface GrafanaDashboardSprocService {
     }
 
 
+    /**
+     * @param expectedVersion version the dashboard was read with, null to overwrite any version
+     * @return the new version, empty if the dashboard was changed since the expected version
+     */
     @SProcCall
-    void createOrUpdateGrafanaDashboard(@SProcParam String id, @SProcParam String title, @SProcParam String dashboard, @SProcParam String userName, @SProcParam String version);
+    List<Integer> createOrUpdateGrafanaDashboard(@SProcParam String id, @SProcParam String title, @SProcParam String dashboard, @SProcParam String userName, @SProcParam String version, @SProcParam Integer expectedVersion);
 
     @SProcCall
     List<GrafanaDashboard> getGrafanaDashboards(@SProcParam String title, @SProcParam String tags, @SProcParam String starredBy, @SProcParam String user);
 
+    @SProcCall
+    List<GrafanaDashboardSearchResult> searchGrafanaDashboards(@SProcParam String title, @SProcParam String tags, @SProcParam String starredBy, @SProcParam String user);
+
     @SProcCall
     List<GrafanaDashboard> getGrafanaDashboard(@SProcParam String id, @SProcParam String user);
 
@@ -68,4 +115,12 @@ public interface GrafanaDashboardSprocService {
     @SProcCall
     List<String> unstarGrafanaDashboard(@SProcParam String id, @SProcParam String user);
 
+    @SProcCall
+    long getGrafanaV1DashboardCount();
+
+    @SProcCall
+    List<GrafanaV1Dashboard> getGrafanaV1Dashboards(@SProcParam String afterId, @SProcParam int limit);
+
+    @SProcCall
+    List<String> migrateGrafanaV1Dashboard(@SProcParam String id, @SProcParam String dashboard, @SProcParam Date lastModified);
 }
@@ -8,6 +8,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.zalando.zmon.controller.GrafanaController;
 import org.zalando.zmon.exception.ZMonException;
 
@@ -30,8 +31,8 @@ public class Grafana2RestAPI {
 
     @ResponseBody
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
-    public ResponseEntity<JsonNode> getDashboard(@PathVariable(value = "id") String id) throws ZMonException, IOException {
-        return grafana2UI.getDashboard(id);
+    public ResponseEntity<JsonNode> getDashboard(@PathVariable(value = "id") String id, WebRequest request) throws ZMonException, IOException {
+        return grafana2UI.getDashboard(id, request);
     }
 
     @ResponseBody
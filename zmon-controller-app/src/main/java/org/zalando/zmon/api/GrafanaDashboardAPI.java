@@ -15,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 import org.zalando.zmon.exception.ZMonException;
 import org.zalando.zmon.persistence.GrafanaDashboardSprocService;
 import org.zalando.zmon.security.permission.DefaultZMonPermissionService;
+import org.zalando.zmon.service.QuickSearchService;
 
 import java.io.IOException;
 import java.util.List;
@@ -36,6 +37,9 @@ public class GrafanaDashboardAPI {
     @Autowired
     ObjectMapper mapper;
 
+    @Autowired
+    QuickSearchService quickSearchService;
+
     private Logger log = LoggerFactory.getLogger(GrafanaDashboardAPI.class);
 
     @ResponseStatus(HttpStatus.OK)
@@ -46,7 +50,8 @@ public class GrafanaDashboardAPI {
         String dashboard = mapper.writeValueAsString(grafanaData.get("dashboard"));
 
         log.info("Saving Grafana dashboard \"{}\"..", title);
-        grafanaService.createOrUpdateGrafanaDashboard(id, title, dashboard, authService.getUserName(), "v1");
+        grafanaService.createOrUpdateGrafanaDashboard(id, title, dashboard, authService.getUserName(), "v1", null);
+        quickSearchService.reloadIndex();
     }
 
     @ResponseStatus(HttpStatus.OK)
@@ -77,7 +82,11 @@ public class GrafanaDashboardAPI {
     @ResponseBody
     @RequestMapping(value = "/{id}", method = RequestMethod.DELETE)
     public List<String> deleteDashboard(@PathVariable(value="id") String id) throws ZMonException, IOException {
-        return grafanaService.deleteGrafanaDashboard(id, authService.getUserName());
+        final List<String> deleted = grafanaService.deleteGrafanaDashboard(id, authService.getUserName());
+        if (!deleted.isEmpty()) {
+            quickSearchService.reloadIndex();
+        }
+        return deleted;
     }
 
     @ResponseStatus(HttpStatus.OK)
@@ -88,9 +97,9 @@ public class GrafanaDashboardAPI {
         ArrayNode hits = mapper.createArrayNode();
 
         JsonNode query = grafanaSearch.get("query").get("query_string").get("query");
-        List<GrafanaDashboardSprocService.GrafanaDashboard> dashboards = grafanaService.getGrafanaDashboards(query.textValue().replace("title:", "").replace("*", ""), null, null, null);
+        List<GrafanaDashboardSprocService.GrafanaDashboardSearchResult> dashboards = grafanaService.searchGrafanaDashboards(query.textValue().replace("title:", "").replace("*", ""), null, null, null);
 
-        for(GrafanaDashboardSprocService.GrafanaDashboard d : dashboards) {
+        for(GrafanaDashboardSprocService.GrafanaDashboardSearchResult d : dashboards) {
             ObjectNode hit = mapper.createObjectNode();
             hit.put("_id", d.title);
             hit.put("_type", "dashboard");
@@ -8,9 +8,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.zalando.zmon.persistence.QuickSearchResultItem;
-import org.zalando.zmon.persistence.QuickSearchSprocService;
+import org.zalando.zmon.service.QuickSearchService;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -24,7 +23,7 @@ import java.util.List;
 public class SearchAPI {
 
     @Autowired
-    QuickSearchSprocService searchService;
+    QuickSearchService searchService;
 
     public static class QuickSearchResult extends HashMap<String, List<QuickSearchResultItem>> {
     }
@@ -39,17 +38,7 @@ public class SearchAPI {
             teamList = Arrays.asList(teams.split(","));
         }
 
-        List<QuickSearchResultItem> alerts = searchService.quickSearchAlerts(search, teamList, limit);
-        result.put("alerts", alerts);
-
-        List<QuickSearchResultItem> checks = searchService.quickSearchChecks(search, teamList, limit);
-        result.put("checks", checks);
-
-        List<QuickSearchResultItem> dashboards = searchService.quickSearchDashboards(search, teamList, limit);
-        result.put("dashboards", dashboards);
-
-        List<QuickSearchResultItem> grafanaDashboards = searchService.quickSearchGrafanaDashboards(search, teamList, limit);
-        result.put("grafana_dashboards", grafanaDashboards);
+        result.putAll(searchService.search(search, teamList, limit));
 
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
@@ -31,6 +31,7 @@ public class DashboardRest {
     public List<String> tags;
     public List<String> sharedTeams;
     public List<JsonNode> widgetConfiguration;
+    public Integer version;
 
     public static DashboardRest from(Dashboard d, ObjectMapper mapper) {
         DashboardRest a = new DashboardRest();
@@ -45,6 +46,7 @@ public class DashboardRest {
         a.name = d.getName();
         a.tags = d.getTags();
         a.sharedTeams = d.getSharedTeams();
+        a.version = d.getVersion();
 
         try {
             a.widgetConfiguration = mapper.readValue(d.getWidgetConfiguration(), new TypeReference<List<JsonNode>>() {});
@@ -69,6 +71,7 @@ public class DashboardRest {
         d.setLastModified(lastModified);
         d.setLastModifiedBy(lastModifiedBy);
         d.setSharedTeams(sharedTeams);
+        d.setVersion(version);
 
         try {
             d.setWidgetConfiguration(mapper.writeValueAsString(widgetConfiguration));
@@ -94,6 +97,7 @@ public class DashboardRest {
         sb.append(", editOption=").append(editOption);
         sb.append(", sharedTeams=").append(sharedTeams);
         sb.append(", tags=").append(tags);
+        sb.append(", version=").append(version);
         sb.append('}');
         return sb.toString();
     }
@@ -1,8 +1,11 @@
 package org.zalando.zmon.config;
 
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.zalando.zmon.config.annotation.EventLog;
 import org.zalando.zmon.service.impl.NoOpEventLog;
 
 /**
@@ -14,9 +17,22 @@ import org.zalando.zmon.service.impl.NoOpEventLog;
 @EnableConfigurationProperties({EventLogProperties.class})
 public class EventLogConfiguration {
 
+    @Autowired
+    private EventLogProperties eventLogProperties;
+
     @Bean
     public NoOpEventLog noOpEventLog() {
         return new NoOpEventLog();
     }
 
+    /**
+     * Shared, pooled client for reading history from the eventlog service.
+     */
+    @Bean
+    @EventLog
+    public CloseableHttpAsyncClient eventLogHttpAsyncClient() {
+        CloseableHttpAsyncClient client = eventLogProperties.getHttpAsyncClient();
+        client.start();
+        return client;
+    }
 }
@@ -0,0 +1,51 @@
+package org.zalando.zmon.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Background migration of stored Grafana v1 dashboards to v2.
+ */
+@ConfigurationProperties(prefix = "zmon.grafana.migration")
+public class GrafanaMigrationProperties {
+
+    private boolean enabled = false;
+
+    private int chunkSize = 50;
+
+    private int initialDelaySeconds = 60; // let the application warm up first
+
+    // pause between chunks, keeps the load on the database low while serving traffic
+    private int chunkPauseMillis = 500;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getInitialDelaySeconds() {
+        return initialDelaySeconds;
+    }
+
+    public void setInitialDelaySeconds(int initialDelaySeconds) {
+        this.initialDelaySeconds = initialDelaySeconds;
+    }
+
+    public int getChunkPauseMillis() {
+        return chunkPauseMillis;
+    }
+
+    public void setChunkPauseMillis(int chunkPauseMillis) {
+        this.chunkPauseMillis = chunkPauseMillis;
+    }
+}
@@ -0,0 +1,62 @@
+package org.zalando.zmon.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Cache for alert, check and definition history of time ranges that can no longer change.
+ */
+@ConfigurationProperties(prefix = "zmon.history.cache")
+public class HistoryCacheProperties {
+
+    private boolean enabled = true;
+
+    private int maxEntries = 10000;
+
+    private int ttlMinutes = 24 * 60; // closed ranges never change, only memory bounds this
+
+    // ranges ending within this delay before now are treated as open, events may still arrive late
+    private int settleSeconds = 60;
+
+    // open ranges are split at "now" aligned down to this window, only the newest part is loaded live
+    private int headWindowSeconds = 3600;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getTtlMinutes() {
+        return ttlMinutes;
+    }
+
+    public void setTtlMinutes(int ttlMinutes) {
+        this.ttlMinutes = ttlMinutes;
+    }
+
+    public int getSettleSeconds() {
+        return settleSeconds;
+    }
+
+    public void setSettleSeconds(int settleSeconds) {
+        this.settleSeconds = settleSeconds;
+    }
+
+    public int getHeadWindowSeconds() {
+        return headWindowSeconds;
+    }
+
+    public void setHeadWindowSeconds(int headWindowSeconds) {
+        this.headWindowSeconds = headWindowSeconds;
+    }
+}
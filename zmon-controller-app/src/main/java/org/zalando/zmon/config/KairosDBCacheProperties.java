@@ -0,0 +1,139 @@
+package org.zalando.zmon.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Controller side cache for KairosDB datapoint query results.
+ */
+@ConfigurationProperties(prefix = "zmon.kairosdb.cache")
+public class KairosDBCacheProperties {
+
+    private boolean enabled = true;
+
+    private long maxBytes = 64 * 1024 * 1024; // 64 MB of response bodies
+
+    // queries ending "now" see new datapoints every minute
+    private int shortTtlSeconds = 30;
+
+    // queries that ended before the settle window are immutable
+    private int longTtlSeconds = 3600;
+
+    // datapoints may still arrive this long after their timestamp
+    private int settleSeconds = 300;
+
+    // long absolute range queries are split into chunks aligned to this size, so past chunks are cached on their own
+    private boolean splitEnabled = true;
+    private int splitChunkSeconds = 24 * 3600;
+    private int splitMaxChunks = 90;
+
+    // metric names and tag queries, served stale while refreshed in the background
+    private long metadataMaxBytes = 32 * 1024 * 1024;
+    private int metricNamesRefreshSeconds = 300;
+    private int metricNamesExpireSeconds = 3600;
+    private int tagsRefreshSeconds = 30;
+    private int tagsExpireSeconds = 300;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public int getShortTtlSeconds() {
+        return shortTtlSeconds;
+    }
+
+    public void setShortTtlSeconds(int shortTtlSeconds) {
+        this.shortTtlSeconds = shortTtlSeconds;
+    }
+
+    public int getLongTtlSeconds() {
+        return longTtlSeconds;
+    }
+
+    public void setLongTtlSeconds(int longTtlSeconds) {
+        this.longTtlSeconds = longTtlSeconds;
+    }
+
+    public int getSettleSeconds() {
+        return settleSeconds;
+    }
+
+    public void setSettleSeconds(int settleSeconds) {
+        this.settleSeconds = settleSeconds;
+    }
+
+    public boolean isSplitEnabled() {
+        return splitEnabled;
+    }
+
+    public void setSplitEnabled(boolean splitEnabled) {
+        this.splitEnabled = splitEnabled;
+    }
+
+    public int getSplitChunkSeconds() {
+        return splitChunkSeconds;
+    }
+
+    public void setSplitChunkSeconds(int splitChunkSeconds) {
+        this.splitChunkSeconds = splitChunkSeconds;
+    }
+
+    public int getSplitMaxChunks() {
+        return splitMaxChunks;
+    }
+
+    public void setSplitMaxChunks(int splitMaxChunks) {
+        this.splitMaxChunks = splitMaxChunks;
+    }
+
+    public long getMetadataMaxBytes() {
+        return metadataMaxBytes;
+    }
+
+    public void setMetadataMaxBytes(long metadataMaxBytes) {
+        this.metadataMaxBytes = metadataMaxBytes;
+    }
+
+    public int getMetricNamesRefreshSeconds() {
+        return metricNamesRefreshSeconds;
+    }
+
+    public void setMetricNamesRefreshSeconds(int metricNamesRefreshSeconds) {
+        this.metricNamesRefreshSeconds = metricNamesRefreshSeconds;
+    }
+
+    public int getMetricNamesExpireSeconds() {
+        return metricNamesExpireSeconds;
+    }
+
+    public void setMetricNamesExpireSeconds(int metricNamesExpireSeconds) {
+        this.metricNamesExpireSeconds = metricNamesExpireSeconds;
+    }
+
+    public int getTagsRefreshSeconds() {
+        return tagsRefreshSeconds;
+    }
+
+    public void setTagsRefreshSeconds(int tagsRefreshSeconds) {
+        this.tagsRefreshSeconds = tagsRefreshSeconds;
+    }
+
+    public int getTagsExpireSeconds() {
+        return tagsExpireSeconds;
+    }
+
+    public void setTagsExpireSeconds(int tagsExpireSeconds) {
+        this.tagsExpireSeconds = tagsExpireSeconds;
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
 import org.springframework.http.client.Netty4ClientHttpRequestFactory;
 import org.springframework.http.client.OkHttpClientHttpRequestFactory;
@@ -14,7 +15,7 @@ import org.springframework.web.client.AsyncRestTemplate;
  * Created by hjacobs on 1/28/16.
  */
 @Configuration
-@EnableConfigurationProperties({KairosDBProperties.class})
+@EnableConfigurationProperties({KairosDBProperties.class, KairosDBCacheProperties.class})
 public class KairosDBConfiguration {
 
     @Autowired
@@ -30,6 +31,7 @@ public class KairosDBConfiguration {
      * @see OkHttpClientHttpRequestFactory
      */
     @Bean
+    @Primary
     public AsyncRestTemplate asyncRestTemplate() {
         CloseableHttpAsyncClient client = kairosDBProperties.getHttpAsyncClient();
         return new AsyncRestTemplate(new HttpComponentsAsyncClientHttpRequestFactory(client));
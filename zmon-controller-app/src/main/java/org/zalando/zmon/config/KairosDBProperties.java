@@ -8,7 +8,9 @@ import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * FIXME: hardcoded config for Vagrant box
@@ -22,6 +24,8 @@ public class KairosDBProperties {
         private String name;
         private String url;
         private boolean oauth2=false;
+        // urls of replicas serving the same data, slow queries are hedged to them
+        private List<String> replicas = new ArrayList<>(0);
 
         public KairosDBServiceConfig() {
         }
@@ -42,6 +46,14 @@ public class KairosDBProperties {
             this.url = url;
         }
 
+        public List<String> getReplicas() {
+            return replicas;
+        }
+
+        public void setReplicas(List<String> replicas) {
+            this.replicas = replicas;
+        }
+
         public boolean isOauth2() {
             return oauth2;
         }
@@ -51,6 +63,29 @@ public class KairosDBProperties {
         }
     }
 
+    public static class RollupConfig {
+        // queries over at least this range are served from the rollup metric
+        private long minRangeSeconds;
+        // name of the rollup metric, {name} is replaced by the raw metric name, e.g. "{name}.1h"
+        private String metric;
+
+        public long getMinRangeSeconds() {
+            return minRangeSeconds;
+        }
+
+        public void setMinRangeSeconds(long minRangeSeconds) {
+            this.minRangeSeconds = minRangeSeconds;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public void setMetric(String metric) {
+            this.metric = metric;
+        }
+    }
+
     private boolean enabled;
 
     private int connectTimeout = 3000; // 3 seconds
@@ -58,8 +93,32 @@ public class KairosDBProperties {
     private int maxConnectionsPerRoute = 100;
     private int maxConnectionsTotal = 200;
 
+    // queries over these limits are rejected with 429 instead of queueing for a connection
+    private int maxInFlightQueries = 150;
+    private int maxInFlightQueriesPerCheck = 20;
+    private int minInFlightQueriesPerCheck = 2;
+    // the per check limit shrinks while its queries are slower than this, 0 keeps it fixed
+    private long targetLatencyMillis = 5000;
+
+    // a query is sent to a second replica if the first did not answer within the p95 latency of the kairosdb
+    private boolean hedgeEnabled = true;
+    private long hedgeMinDelayMillis = 50;
+    // used until enough latencies are recorded for a p95
+    private long hedgeInitialDelayMillis = 1000;
+
     private List<KairosDBServiceConfig> kairosdbs = new ArrayList<>(1);
 
+    // long range queries of check metrics are rewritten to rollup metrics, the longest matching range wins
+    private List<RollupConfig> rollups = new ArrayList<>(0);
+
+    // long range queries without aggregators get a downsampling aggregator, 0 disables it
+    private long downsampleMinRangeSeconds = 604800; // 7 days
+    private int downsampleMaxPoints = 2000;
+    private String downsampleAggregator = "avg";
+
+    // virtual kairosdb ids querying several kairosdbs at once, "all" queries every kairosdb unless configured here
+    private Map<String, List<String>> groups = new HashMap<>();
+
     public List<KairosDBServiceConfig> getKairosdbs() {
         return kairosdbs;
     }
@@ -68,6 +127,46 @@ public class KairosDBProperties {
         this.kairosdbs = kairosdbs;
     }
 
+    public List<RollupConfig> getRollups() {
+        return rollups;
+    }
+
+    public void setRollups(List<RollupConfig> rollups) {
+        this.rollups = rollups;
+    }
+
+    public long getDownsampleMinRangeSeconds() {
+        return downsampleMinRangeSeconds;
+    }
+
+    public void setDownsampleMinRangeSeconds(long downsampleMinRangeSeconds) {
+        this.downsampleMinRangeSeconds = downsampleMinRangeSeconds;
+    }
+
+    public int getDownsampleMaxPoints() {
+        return downsampleMaxPoints;
+    }
+
+    public void setDownsampleMaxPoints(int downsampleMaxPoints) {
+        this.downsampleMaxPoints = downsampleMaxPoints;
+    }
+
+    public String getDownsampleAggregator() {
+        return downsampleAggregator;
+    }
+
+    public void setDownsampleAggregator(String downsampleAggregator) {
+        this.downsampleAggregator = downsampleAggregator;
+    }
+
+    public Map<String, List<String>> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(Map<String, List<String>> groups) {
+        this.groups = groups;
+    }
+
     public int getMaxConnectionsPerRoute() {
         return maxConnectionsPerRoute;
     }
@@ -84,6 +183,62 @@ public class KairosDBProperties {
         this.maxConnectionsTotal = maxConnectionsTotal;
     }
 
+    public int getMaxInFlightQueries() {
+        return maxInFlightQueries;
+    }
+
+    public void setMaxInFlightQueries(int maxInFlightQueries) {
+        this.maxInFlightQueries = maxInFlightQueries;
+    }
+
+    public int getMaxInFlightQueriesPerCheck() {
+        return maxInFlightQueriesPerCheck;
+    }
+
+    public void setMaxInFlightQueriesPerCheck(int maxInFlightQueriesPerCheck) {
+        this.maxInFlightQueriesPerCheck = maxInFlightQueriesPerCheck;
+    }
+
+    public int getMinInFlightQueriesPerCheck() {
+        return minInFlightQueriesPerCheck;
+    }
+
+    public void setMinInFlightQueriesPerCheck(int minInFlightQueriesPerCheck) {
+        this.minInFlightQueriesPerCheck = minInFlightQueriesPerCheck;
+    }
+
+    public long getTargetLatencyMillis() {
+        return targetLatencyMillis;
+    }
+
+    public void setTargetLatencyMillis(long targetLatencyMillis) {
+        this.targetLatencyMillis = targetLatencyMillis;
+    }
+
+    public boolean isHedgeEnabled() {
+        return hedgeEnabled;
+    }
+
+    public void setHedgeEnabled(boolean hedgeEnabled) {
+        this.hedgeEnabled = hedgeEnabled;
+    }
+
+    public long getHedgeMinDelayMillis() {
+        return hedgeMinDelayMillis;
+    }
+
+    public void setHedgeMinDelayMillis(long hedgeMinDelayMillis) {
+        this.hedgeMinDelayMillis = hedgeMinDelayMillis;
+    }
+
+    public long getHedgeInitialDelayMillis() {
+        return hedgeInitialDelayMillis;
+    }
+
+    public void setHedgeInitialDelayMillis(long hedgeInitialDelayMillis) {
+        this.hedgeInitialDelayMillis = hedgeInitialDelayMillis;
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -1,5 +1,8 @@
 package org.zalando.zmon.config;
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.net.URL;
@@ -13,6 +16,19 @@ public class MetricCacheProperties {
     private URL url;
     private int nodes = 3;
 
+    // nodes are chosen by rendezvous hashing instead of hash % nodes, must match how the metric cache writers place
+    // applications, so only switch once all writers do
+    private boolean rendezvousHashing = false;
+
+    private int connectTimeout = 1000; // 1 second
+    private int socketTimeout = 5000; // 5 seconds
+    private int maxConnectionsPerRoute = 50;
+    private int maxConnectionsTotal = 50;
+
+    // responses for the same application are shared for a few seconds, 0 disables the cache
+    private int responseCacheTtlSeconds = 10;
+    private int responseCacheMaxEntries = 1000;
+
     public int getNodes() {
         return nodes;
     }
@@ -21,6 +37,14 @@ public class MetricCacheProperties {
         this.nodes = nodes;
     }
 
+    public boolean isRendezvousHashing() {
+        return rendezvousHashing;
+    }
+
+    public void setRendezvousHashing(boolean rendezvousHashing) {
+        this.rendezvousHashing = rendezvousHashing;
+    }
+
     public URL getUrl() {
         return url;
     }
@@ -28,4 +52,57 @@ public class MetricCacheProperties {
     public void setUrl(URL url) {
         this.url = url;
     }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    public int getResponseCacheTtlSeconds() {
+        return responseCacheTtlSeconds;
+    }
+
+    public void setResponseCacheTtlSeconds(int responseCacheTtlSeconds) {
+        this.responseCacheTtlSeconds = responseCacheTtlSeconds;
+    }
+
+    public int getResponseCacheMaxEntries() {
+        return responseCacheMaxEntries;
+    }
+
+    public void setResponseCacheMaxEntries(int responseCacheMaxEntries) {
+        this.responseCacheMaxEntries = responseCacheMaxEntries;
+    }
+
+    public CloseableHttpClient getHttpClient() {
+        RequestConfig config = RequestConfig.custom().setSocketTimeout(getSocketTimeout()).setConnectTimeout(getConnectTimeout()).setConnectionRequestTimeout(getConnectTimeout()).build();
+        return HttpClients.custom().setMaxConnPerRoute(maxConnectionsPerRoute).setMaxConnTotal(maxConnectionsTotal).setDefaultRequestConfig(config).build();
+    }
 }
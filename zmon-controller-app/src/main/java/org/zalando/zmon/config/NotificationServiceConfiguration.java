@@ -1,7 +1,14 @@
 package org.zalando.zmon.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.zalando.zmon.config.annotation.NotificationService;
 
 /**
  * Created by hjacobs on 2/5/16.
@@ -9,4 +16,25 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @EnableConfigurationProperties({NotificationServiceProperties.class})
 public class NotificationServiceConfiguration {
+
+    @Autowired
+    private NotificationServiceProperties notificationServiceProperties;
+
+    /**
+     * Non-blocking client for proxying UI calls to the notification service. Error responses are not turned into
+     * exceptions, they are passed through to the UI like successful ones.
+     */
+    @Bean
+    @NotificationService
+    public AsyncRestTemplate notificationServiceAsyncRestTemplate() {
+        AsyncRestTemplate template = new AsyncRestTemplate(
+                new HttpComponentsAsyncClientHttpRequestFactory(notificationServiceProperties.getHttpAsyncClient()));
+        template.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+        return template;
+    }
 }
@@ -1,12 +1,10 @@
 package org.zalando.zmon.config;
 
 import org.apache.http.client.config.RequestConfig;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
-import java.net.URL;
-
 /**
  * Created by hjacobs on 2/5/16.
  */
@@ -15,6 +13,11 @@ public class NotificationServiceProperties {
 
     public String url = "http://zmon-notification-service:8095";
 
+    private int connectTimeout = 1000; // 1 second
+    private int socketTimeout = 5000; // 5 seconds
+    private int maxConnectionsPerRoute = 50;
+    private int maxConnectionsTotal = 50;
+
     public String getUrl() {
         return url;
     }
@@ -22,4 +25,41 @@ public class NotificationServiceProperties {
     public void setUrl(String url) {
         this.url = url;
     }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    public CloseableHttpAsyncClient getHttpAsyncClient() {
+        RequestConfig config = RequestConfig.custom().setSocketTimeout(getSocketTimeout()).setConnectTimeout(getConnectTimeout()).setConnectionRequestTimeout(getConnectTimeout()).build();
+        return HttpAsyncClients.custom().setMaxConnPerRoute(maxConnectionsPerRoute).setMaxConnTotal(maxConnectionsTotal).setDefaultRequestConfig(config).build();
+    }
 }
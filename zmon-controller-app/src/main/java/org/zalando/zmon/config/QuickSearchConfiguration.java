@@ -0,0 +1,9 @@
+package org.zalando.zmon.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({QuickSearchProperties.class})
+public class QuickSearchConfiguration {
+}
@@ -0,0 +1,55 @@
+package org.zalando.zmon.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Quick search answers from an in-memory index, or runs the search of every source concurrently in the database if
+ * the index is disabled or not loaded yet.
+ */
+@ConfigurationProperties(prefix = "zmon.quicksearch")
+public class QuickSearchProperties {
+
+    // every thread holds a database connection while searching
+    private int threads = 8;
+
+    // sources not answering in time are returned without results
+    private int timeoutMillis = 500;
+
+    private boolean indexEnabled = true;
+
+    // the index is reloaded from the database in this interval, changes made by other instances are visible in search
+    // after at most this time, changes made by this instance right after they are saved
+    private int indexRefreshSeconds = 60;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public boolean isIndexEnabled() {
+        return indexEnabled;
+    }
+
+    public void setIndexEnabled(boolean indexEnabled) {
+        this.indexEnabled = indexEnabled;
+    }
+
+    public int getIndexRefreshSeconds() {
+        return indexRefreshSeconds;
+    }
+
+    public void setIndexRefreshSeconds(int indexRefreshSeconds) {
+        this.indexRefreshSeconds = indexRefreshSeconds;
+    }
+}
@@ -3,6 +3,8 @@ package org.zalando.zmon.config;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.net.URL;
@@ -20,6 +22,21 @@ public class SchedulerProperties {
     private int maxConnectionsPerRoute = 100;
     private int maxConnectionsTotal = 200;
 
+    // bulkhead: blocking calls in flight at once, callers wait at most bulkheadWaitMillis for a slot
+    private int maxConcurrentCalls = 20;
+    private int bulkheadWaitMillis = 100;
+
+    // circuit breaker: opens after this many consecutive failures and rejects calls for circuitBreakerOpenMillis
+    private int circuitBreakerFailureThreshold = 5;
+    private int circuitBreakerOpenMillis = 30000;
+
+    // try the scheduler's bulk endpoint first, falls back to one DELETE per downtime if not supported
+    // off by default as the scheduler does not provide it yet
+    private boolean downtimeBulkDelete = false;
+    private int downtimeDeleteConcurrency = 10;
+    // ids not deleted within this time are reported as failed
+    private int downtimeDeleteTimeoutMillis = 30000;
+
     public URL getUrl() {
         return url;
     }
@@ -60,12 +77,73 @@ public class SchedulerProperties {
         this.maxConnectionsTotal = maxConnectionsTotal;
     }
 
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    public int getBulkheadWaitMillis() {
+        return bulkheadWaitMillis;
+    }
+
+    public void setBulkheadWaitMillis(int bulkheadWaitMillis) {
+        this.bulkheadWaitMillis = bulkheadWaitMillis;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    public int getCircuitBreakerOpenMillis() {
+        return circuitBreakerOpenMillis;
+    }
+
+    public void setCircuitBreakerOpenMillis(int circuitBreakerOpenMillis) {
+        this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+    }
+
+    public boolean isDowntimeBulkDelete() {
+        return downtimeBulkDelete;
+    }
+
+    public void setDowntimeBulkDelete(boolean downtimeBulkDelete) {
+        this.downtimeBulkDelete = downtimeBulkDelete;
+    }
+
+    public int getDowntimeDeleteConcurrency() {
+        return downtimeDeleteConcurrency;
+    }
+
+    public void setDowntimeDeleteConcurrency(int downtimeDeleteConcurrency) {
+        this.downtimeDeleteConcurrency = downtimeDeleteConcurrency;
+    }
+
+    public int getDowntimeDeleteTimeoutMillis() {
+        return downtimeDeleteTimeoutMillis;
+    }
+
+    public void setDowntimeDeleteTimeoutMillis(int downtimeDeleteTimeoutMillis) {
+        this.downtimeDeleteTimeoutMillis = downtimeDeleteTimeoutMillis;
+    }
+
     /**
      * get HttpClient with appropriate timeouts
      * @return
      */
     public CloseableHttpClient getHttpClient() {
-        RequestConfig config = RequestConfig.custom().setSocketTimeout(getSocketTimeout()).setConnectTimeout(getConnectTimeout()).build();
+        RequestConfig config = RequestConfig.custom().setSocketTimeout(getSocketTimeout()).setConnectTimeout(getConnectTimeout()).setConnectionRequestTimeout(getConnectTimeout()).build();
         return HttpClients.custom().setMaxConnPerRoute(maxConnectionsPerRoute).setMaxConnTotal(maxConnectionsTotal).setDefaultRequestConfig(config).build();
     }
+
+    public CloseableHttpAsyncClient getHttpAsyncClient() {
+        RequestConfig config = RequestConfig.custom().setSocketTimeout(getSocketTimeout()).setConnectTimeout(getConnectTimeout()).setConnectionRequestTimeout(getConnectTimeout()).build();
+        return HttpAsyncClients.custom().setMaxConnPerRoute(maxConnectionsPerRoute).setMaxConnTotal(maxConnectionsTotal).setDefaultRequestConfig(config).build();
+    }
 }
@@ -17,8 +17,11 @@ import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.zalando.zmon.exception.DashboardVersionConflictException;
 import org.zalando.zmon.exception.ZMonAuthorizationException;
 import org.zalando.zmon.exception.ZMonException;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBOverloadedException;
+import org.zalando.zmon.service.impl.scheduler.SchedulerUnavailableException;
 
 /**
  * Abstract zmon controller that should contain common code used across all controllers like exception handlers.
@@ -92,6 +95,16 @@ public abstract class AbstractZMonController {
         return new ModelMap().addAttribute(ERROR_MESSAGE_KEY, e.getMessage());
     }
 
+    // dashboard was saved by someone else, the client has to reload it
+    @ExceptionHandler(DashboardVersionConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ResponseBody
+    public ModelMap handleDashboardVersionConflictException(final DashboardVersionConflictException e) {
+        LOG.info("Dashboard version conflict: [{}]", e.getMessage());
+
+        return new ModelMap().addAttribute(ERROR_MESSAGE_KEY, e.getMessage());
+    }
+
     // handle business errors
     @ExceptionHandler(ZMonException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
@@ -102,6 +115,24 @@ public abstract class AbstractZMonController {
         return new ModelMap().addAttribute(ERROR_MESSAGE_KEY, e.getMessage());
     }
 
+    // scheduler overloaded or down, the client should retry later
+    @ExceptionHandler(SchedulerUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ResponseBody
+    public ModelMap handleSchedulerUnavailableException(final SchedulerUnavailableException e) {
+        LOG.warn("Scheduler call rejected: [{}]", e.getMessage());
+
+        return new ModelMap().addAttribute(ERROR_MESSAGE_KEY, e.getMessage());
+    }
+
+    // too many KairosDB queries in flight, the client should back off
+    @ExceptionHandler(KairosDBOverloadedException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    @ResponseBody
+    public ModelMap handleKairosDBOverloadedException(final KairosDBOverloadedException e) {
+        return new ModelMap().addAttribute(ERROR_MESSAGE_KEY, e.getMessage());
+    }
+
     // handle all other exceptions
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -18,6 +18,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
 import org.zalando.zmon.domain.Dashboard;
 import org.zalando.zmon.domain.DashboardAuth;
 import org.zalando.zmon.domain.EditOption;
@@ -39,14 +40,24 @@ public class DashboardController extends AbstractZMonController {
     private DefaultZMonPermissionService authorityService;
 
     @RequestMapping(value = "/dashboard", method = RequestMethod.GET)
-    public ResponseEntity<DashboardAuth> getDashboard(@RequestParam(value = "id", required = true) final int id) {
+    public ResponseEntity<DashboardAuth> getDashboard(@RequestParam(value = "id", required = true) final int id,
+            final WebRequest request) {
 
         final List<Dashboard> dashboards = service.getDashboards(Lists.newArrayList(id));
         if (dashboards.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        return new ResponseEntity<>(addDashboardPermissions(dashboards.get(0)), HttpStatus.OK);
+        final DashboardAuth dashboard = addDashboardPermissions(dashboards.get(0));
+
+        // permissions of the current user are part of the response
+        final String etag = dashboard.getVersion() + "-" + dashboard.isEditable() + "-" + dashboard.isCloneable() + "-"
+                + dashboard.isEditOptionEditable();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        return new ResponseEntity<>(dashboard, HttpStatus.OK);
     }
 
     @ResponseBody
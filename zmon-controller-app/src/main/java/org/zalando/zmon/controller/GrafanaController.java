@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +12,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.zalando.zmon.config.ControllerProperties;
 import org.zalando.zmon.domain.CheckDefinition;
 import org.zalando.zmon.domain.CheckResults;
@@ -18,8 +20,11 @@ import org.zalando.zmon.exception.ZMonException;
 import org.zalando.zmon.persistence.GrafanaDashboardSprocService;
 import org.zalando.zmon.security.permission.DefaultZMonPermissionService;
 import org.zalando.zmon.service.ZMonService;
+import org.zalando.zmon.util.JsonTemplate;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -31,6 +36,12 @@ public class GrafanaController extends AbstractZMonController {
 
     private static final Logger LOG = LoggerFactory.getLogger(GrafanaController.class);
 
+    private static final String CHECK_ID = "checkId";
+
+    private static final String CHECK_NAME = "checkName";
+
+    private static final String ENTITY_ID = "entityId";
+
     ZMonService zMonService;
 
     GrafanaDashboardSprocService grafanaService;
@@ -41,6 +52,10 @@ public class GrafanaController extends AbstractZMonController {
 
     ControllerProperties controllerProperties;
 
+    private final JsonNode homeDashboard;
+
+    private final JsonTemplate dynamicDashboardTemplate;
+
     @Autowired
     public GrafanaController(
             ZMonService zMonService,
@@ -54,14 +69,27 @@ public class GrafanaController extends AbstractZMonController {
         this.authService = authService;
         this.mapper = mapper;
         this.controllerProperties = controllerProperties;
+
+        // templates are parsed once, requests only copy them
+        this.homeDashboard = readResource("/grafana/home.json");
+        this.dynamicDashboardTemplate = JsonTemplate.compile(readResource("/grafana/dynamic-dashboard.json"),
+                ImmutableSet.of(CHECK_ID, CHECK_NAME, ENTITY_ID));
+    }
+
+    private JsonNode readResource(String name) {
+        try (InputStream in = GrafanaController.class.getResourceAsStream(name)) {
+            return mapper.readTree(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read Grafana template: " + name, e);
+        }
     }
 
     // home dashboard
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
     @RequestMapping(value = "/api/dashboards/home", method = RequestMethod.GET)
-    public JsonNode getHomeDashboard() throws IOException {
-        return mapper.readTree(GrafanaController.class.getResourceAsStream("/grafana/home.json"));
+    public JsonNode getHomeDashboard() {
+        return homeDashboard.deepCopy();
     }
 
     /**
@@ -92,10 +120,10 @@ public class GrafanaController extends AbstractZMonController {
             jsonTags = mapper.writeValueAsString(tags);
         }
 
-        List<GrafanaDashboardSprocService.GrafanaDashboard> results = grafanaService.getGrafanaDashboards(query, jsonTags, starredBy, authService.getUserName());
+        List<GrafanaDashboardSprocService.GrafanaDashboardSearchResult> results = grafanaService.searchGrafanaDashboards(query, jsonTags, starredBy, authService.getUserName());
         ArrayNode resultsNode = mapper.createArrayNode();
 
-        for (GrafanaDashboardSprocService.GrafanaDashboard d : results) {
+        for (GrafanaDashboardSprocService.GrafanaDashboardSearchResult d : results) {
             ObjectNode dashboard = resultsNode.addObject();
             dashboard.put("uri", "db/" + d.id);
             dashboard.put("id", d.id);
@@ -234,29 +262,6 @@ public class GrafanaController extends AbstractZMonController {
         return StreamSupport.stream(Spliterators.spliteratorUnknownSize(node.iterator(), Spliterator.ORDERED), false);
     }
 
-    protected static void replaceVariables(ObjectNode node, String key, CheckDefinition checkDefinition, Optional<String> entityId) {
-        JsonNode value = node.get(key);
-        if (value.isTextual()) {
-            node.put(key, value.textValue()
-                    .replaceAll("\\{checkId\\}", String.valueOf(checkDefinition.getId()))
-                    .replaceAll("\\{checkName\\}", Optional.ofNullable(checkDefinition.getName()).orElse(""))
-                    .replaceAll("\\{entityId\\}", entityId.orElse("")));
-        } else {
-            replaceVariables(value, checkDefinition, entityId);
-        }
-    }
-
-    /**
-     * poor man's templating: walk through JSON tree and replace certain variables like {checkId}
-     */
-    protected static void replaceVariables(JsonNode node, CheckDefinition checkDefinition, Optional<String> entityId) {
-        if (node.isObject()) {
-            node.fields().forEachRemaining(entry -> replaceVariables((ObjectNode) node, entry.getKey(), checkDefinition, entityId));
-        } else if (node.isArray()) {
-            node.elements().forEachRemaining(elem -> replaceVariables(elem, checkDefinition, entityId));
-        }
-    }
-
     public ResponseEntity<JsonNode> serveDynamicDashboard(String id) throws IOException {
         // zmon-check-123-inst
         String[] parts = id.split("-", 4);
@@ -277,8 +282,12 @@ public class GrafanaController extends AbstractZMonController {
                 .map(GrafanaController::sanitizeEntityId)
                 .collect(Collectors.joining(","));
 
-        JsonNode node = mapper.readTree(GrafanaController.class.getResourceAsStream("/grafana/dynamic-dashboard.json"));
-        replaceVariables(node, checkDefinition, entityId);
+        Map<String, String> variables = new HashMap<>();
+        variables.put(CHECK_ID, String.valueOf(checkDefinition.getId()));
+        variables.put(CHECK_NAME, Optional.ofNullable(checkDefinition.getName()).orElse(""));
+        variables.put(ENTITY_ID, entityId.orElse(""));
+
+        JsonNode node = dynamicDashboardTemplate.render(variables);
         ((ObjectNode) node.get("dashboard").get("templating").get("list").get(0)).put("query", entityIds);
         if (entityId.isPresent()) {
             // select the right entity in the Grafana templating dropdown
@@ -288,11 +297,10 @@ public class GrafanaController extends AbstractZMonController {
         return new ResponseEntity<>(node, HttpStatus.OK);
     }
 
-    // requests a dashboard
-    @ResponseStatus(HttpStatus.OK)
+    // requests a dashboard, unchanged dashboards are answered with 304 if the client sends the ETag
     @ResponseBody
     @RequestMapping(value = "/api/dashboards/db/{id}", method = RequestMethod.GET)
-    public ResponseEntity<JsonNode> getDashboard(@PathVariable(value = "id") String id) throws ZMonException, IOException {
+    public ResponseEntity<JsonNode> getDashboard(@PathVariable(value = "id") String id, WebRequest request) throws ZMonException, IOException {
         if (null == id || "".equals(id)) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
@@ -310,6 +318,11 @@ public class GrafanaController extends AbstractZMonController {
 
         GrafanaDashboardSprocService.GrafanaDashboard dashboard = dashboards.get(0);
 
+        // starring does not change the version
+        if (request.checkNotModified(dashboard.version + (dashboard.starred ? "-starred" : ""))) {
+            return null;
+        }
+
         ObjectNode result = mapper.createObjectNode();
 
         ObjectNode meta = result.putObject("meta");
@@ -323,9 +336,11 @@ public class GrafanaController extends AbstractZMonController {
         meta.put("isHome", false);
         meta.put("slug", id);
         meta.put("isStarred", dashboard.starred);
+        meta.put("version", dashboard.version);
 
         ObjectNode model = (ObjectNode) mapper.readTree(dashboard.dashboard);
         model.put("id", id);
+        model.put("version", dashboard.version);
 
         if (model.has("refresh") && model.get("refresh") != null) {
             String refresh = model.get("refresh").textValue();
@@ -385,13 +400,27 @@ public class GrafanaController extends AbstractZMonController {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
-        LOG.info("Saving Grafana 2 dashboard title: \"{}\" id: {}", title, id);
-        grafanaService.createOrUpdateGrafanaDashboard(id, title, dashboard, authService.getUserName(), "v2");
+        // Grafana sends the version it loaded, and overwrite after the user confirmed a conflict
+        JsonNode version = grafanaData.get("dashboard").get("version");
+        Integer expectedVersion = null;
+        if (!grafanaData.path("overwrite").asBoolean(false) && version != null && version.isInt()) {
+            expectedVersion = version.intValue();
+        }
+
+        LOG.info("Saving Grafana 2 dashboard title: \"{}\" id: {} version: {}", title, id, expectedVersion);
+        List<Integer> versions = grafanaService.createOrUpdateGrafanaDashboard(id, title, dashboard, authService.getUserName(), "v2", expectedVersion);
 
         ObjectNode result = mapper.createObjectNode();
+        if (versions.isEmpty()) {
+            LOG.info("Grafana 2 dashboard was changed by someone else: id: {} version: {}", id, expectedVersion);
+            result.put("status", "version-mismatch");
+            result.put("message", "The dashboard has been changed by someone else");
+            return new ResponseEntity<>(result, HttpStatus.PRECONDITION_FAILED);
+        }
+
         result.put("slug", id);
         result.put("status", "success");
-        result.put("version", 0);
+        result.put("version", versions.get(0));
 
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
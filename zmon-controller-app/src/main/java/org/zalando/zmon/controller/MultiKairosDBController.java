@@ -3,20 +3,43 @@ package org.zalando.zmon.controller;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureAdapter;
 import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.AsyncRestTemplate;
 import org.zalando.stups.tokens.AccessTokens;
 import org.zalando.zmon.config.KairosDBProperties;
-
+import org.zalando.zmon.service.impl.kairosdb.EncodedBody;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBFederation;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBHedging;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBMetadataCache;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBOverloadedException;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBQueryCache;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBQueryLimiter;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBQueryRewriter;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBQuerySplitter;
+import org.zalando.zmon.service.impl.kairosdb.SingleFlight;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 
@@ -39,28 +62,80 @@ public class MultiKairosDBController extends AbstractZMonController {
 
     private static final String QUERY_SUFFIX = "/api/v1/datapoints/query";
 
+    private static final String ALL_KAIROSDBS = "all";
+
     private static final String METRIC_NAMES_SUFFIX = "/api/v1/metricnames";
 
     private static final String BEARER = "Bearer ";
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private final MetricRegistry metricRegistry;
 
     private final AsyncRestTemplate asyncRestTemplate;
 
     private final AccessTokens accessTokens;
 
+    private final KairosDBQueryCache queryCache;
+
+    private final KairosDBQuerySplitter querySplitter;
+
+    private final KairosDBMetadataCache metadataCache;
+
+    private final KairosDBQueryLimiter queryLimiter;
+
+    private final KairosDBHedging hedging;
+
+    private final KairosDBQueryRewriter queryRewriter;
+
+    private final SingleFlight<KairosDBQueryCache.Key, EncodedBody> inFlightQueries = new SingleFlight<>();
+
     private final Map<String, KairosDBProperties.KairosDBServiceConfig> kairosdbServices = new HashMap<>();
 
+    private final Map<String, List<String>> kairosdbGroups = new HashMap<>();
+
     @Autowired
     public MultiKairosDBController(KairosDBProperties kairosDBProperties, MetricRegistry metricRegistry,
-                                   AsyncRestTemplate asyncRestTemplate, AccessTokens accessTokens) {
+                                   AsyncRestTemplate asyncRestTemplate, AccessTokens accessTokens,
+                                   KairosDBQueryCache queryCache, KairosDBQuerySplitter querySplitter,
+                                   KairosDBMetadataCache metadataCache, KairosDBQueryLimiter queryLimiter,
+                                   KairosDBHedging hedging, KairosDBQueryRewriter queryRewriter) {
         this.metricRegistry = metricRegistry;
         this.asyncRestTemplate = asyncRestTemplate;
         this.accessTokens = accessTokens;
+        this.queryCache = queryCache;
+        this.querySplitter = querySplitter;
+        this.metadataCache = metadataCache;
+        this.queryLimiter = queryLimiter;
+        this.hedging = hedging;
+        this.queryRewriter = queryRewriter;
 
         for (KairosDBProperties.KairosDBServiceConfig c : kairosDBProperties.getKairosdbs()) {
             kairosdbServices.put(c.getName(), c);
-            log.info("Registering: name={} url={} oauth={}", c.getName(), c.getUrl(), c.isOauth2());
+            log.info("Registering: name={} url={} replicas={} oauth={}", c.getName(), c.getUrl(), c.getReplicas(), c.isOauth2());
+        }
+
+        if (!kairosdbServices.containsKey(ALL_KAIROSDBS)) {
+            kairosdbGroups.put(ALL_KAIROSDBS, new ArrayList<>(new TreeSet<>(kairosdbServices.keySet())));
+        }
+
+        for (Map.Entry<String, List<String>> group : kairosDBProperties.getGroups().entrySet()) {
+            if (kairosdbServices.containsKey(group.getKey())) {
+                log.warn("Ignoring group with the name of a kairosdb: name={}", group.getKey());
+                continue;
+            }
+
+            List<String> members = new ArrayList<>();
+            for (String member : group.getValue()) {
+                if (kairosdbServices.containsKey(member)) {
+                    members.add(member);
+                } else {
+                    log.warn("Ignoring unknown kairosdb in group: name={} kairosdb={}", group.getKey(), member);
+                }
+            }
+
+            kairosdbGroups.put(group.getKey(), members);
+            log.info("Registering group: name={} kairosdbs={}", group.getKey(), members);
         }
     }
 
@@ -69,14 +144,14 @@ public class MultiKairosDBController extends AbstractZMonController {
      * URLs too
      */
     @RequestMapping(value = "{kairosdbId}/api/v1/datapoints/query", method = RequestMethod.POST, produces = "application/json")
-    public ListenableFuture<ResponseEntity<JsonNode>> kairosDBPost(@RequestBody(required = true) final JsonNode node, @PathVariable(value = "kairosdbId") String kairosDB) {
+    public ListenableFuture<ResponseEntity<byte[]>> kairosDBPost(@RequestBody(required = true) final JsonNode node, @PathVariable(value = "kairosdbId") String kairosDB,
+                                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
 
-        if (!kairosdbServices.containsKey(kairosDB)) {
+        if (!kairosdbServices.containsKey(kairosDB) && !kairosdbGroups.containsKey(kairosDB)) {
             return null;
         }
 
         final String checkId = node.get("metrics").get(0).get("name").textValue().replace("zmon.check.", "");
-        Timer.Context timer = metricRegistry.timer("kairosdb.check.query." + checkId).time();
 
         // align all queries to full minutes
         if (node instanceof ObjectNode) {
@@ -89,55 +164,295 @@ public class MultiKairosDBController extends AbstractZMonController {
             }
         }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.add("X-ZMON-CHECK-ID", checkId);
+        // long ranges are served from rollups or downsampled instead of scanning raw datapoints
+        queryRewriter.rewrite(node, checkId);
 
-        if (kairosdbServices.get(kairosDB).isOauth2()) {
-            headers.add(AUTHORIZATION, BEARER + accessTokens.get(KAIROSDB_TOKEN_ID));
+        if (kairosdbServices.containsKey(kairosDB)) {
+            return respond(datapoints(kairosDB, node, checkId), acceptEncoding);
+        }
+
+        // a group sends the query to all its kairosdbs, every series is tagged with the kairosdb it came from
+        final List<String> members = kairosdbGroups.get(kairosDB);
+        final List<ListenableFuture<EncodedBody>> futures = new ArrayList<>(members.size());
+        for (String member : members) {
+            futures.add(datapoints(member, node, checkId));
+        }
+
+        return respond(join(members, futures, bodies -> KairosDBFederation.mergeQueries(members, bodies)), acceptEncoding);
+    }
+
+    /**
+     * Never throws, failures are returned as a failed future so a group can leave the kairosdb out of its response.
+     */
+    private ListenableFuture<EncodedBody> datapoints(String kairosDB, JsonNode node, String checkId) {
+        try {
+            // long ranges are fetched in chunks, only chunks that are not cached yet go to KairosDB
+            final List<ObjectNode> chunks = querySplitter.split(node);
+            if (chunks.isEmpty()) {
+                return fetch(kairosDB, node, checkId);
+            }
+
+            metricRegistry.histogram("kairosdb.check.chunks." + checkId).update(chunks.size());
+
+            // every chunk sent to KairosDB counts against the in-flight limits, cached chunks do not. If a chunk is
+            // shed the query fails, the chunks fetched until then are cached for the next attempt
+            final List<ListenableFuture<EncodedBody>> futures = new ArrayList<>(chunks.size());
+            for (ObjectNode chunk : chunks) {
+                futures.add(fetch(kairosDB, chunk, checkId));
+            }
+
+            return mergeChunks(futures);
+        } catch (RuntimeException e) {
+            final SettableListenableFuture<EncodedBody> failed = new SettableListenableFuture<>();
+            failed.setException(e);
+            return failed;
+        }
+    }
+
+    private ListenableFuture<EncodedBody> fetch(String kairosDB, JsonNode node, String checkId) {
+        // identical panels of many Grafana users are only queried once
+        final KairosDBQueryCache.Key cacheKey = KairosDBQueryCache.key(kairosDB, node);
+        final EncodedBody cached = queryCache.get(cacheKey, checkId);
+        if (cached != null) {
+            SettableListenableFuture<EncodedBody> hit = new SettableListenableFuture<>();
+            hit.set(cached);
+            return hit;
+        }
+
+        // concurrent identical queries share one KairosDB call
+        return inFlightQueries.execute(cacheKey, () -> query(kairosDB, node, checkId, cacheKey),
+                () -> metricRegistry.meter("kairosdb.check.coalesced." + checkId).mark());
+    }
+
+    private static ListenableFuture<EncodedBody> mergeChunks(List<ListenableFuture<EncodedBody>> futures) {
+        final SettableListenableFuture<EncodedBody> merged = new SettableListenableFuture<>();
+        final EncodedBody[] bodies = new EncodedBody[futures.size()];
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+
+        for (int i = 0; i < futures.size(); i++) {
+            final int index = i;
+            futures.get(i).addCallback(body -> {
+                bodies[index] = body;
+                if (remaining.decrementAndGet() == 0) {
+                    try {
+                        List<JsonNode> responses = new ArrayList<>(bodies.length);
+                        for (EncodedBody chunk : bodies) {
+                            try (InputStream in = chunk.decodedStream()) {
+                                responses.add(MAPPER.readTree(in));
+                            }
+                        }
+                        merged.set(new EncodedBody(MAPPER.writeValueAsBytes(KairosDBQuerySplitter.merge(responses)), false));
+                    } catch (IOException | RuntimeException e) {
+                        merged.setException(e);
+                    }
+                }
+            }, merged::setException);
         }
 
+        return merged;
+    }
+
+    private ListenableFuture<EncodedBody> query(String kairosDB, JsonNode node, String checkId, KairosDBQueryCache.Key cacheKey) {
+        final KairosDBQueryLimiter.Permit permit = queryLimiter.acquire(checkId);
+        Timer.Context timer = metricRegistry.timer("kairosdb.check.query." + checkId).time();
+
+        HttpHeaders headers = kairosDBHeaders(kairosDB);
+        headers.add("X-ZMON-CHECK-ID", checkId);
+
         HttpEntity<String> httpEntity = new HttpEntity<>(node.toString(), headers);
 
-        ListenableFuture<ResponseEntity<JsonNode>> lf = asyncRestTemplate.exchange(kairosdbServices.get(kairosDB).getUrl() + QUERY_SUFFIX, HttpMethod.POST,
-                httpEntity, JsonNode.class);
+        // a second replica is only asked if the first one is slow or fails
+        List<Supplier<ListenableFuture<ResponseEntity<byte[]>>>> replicas = new ArrayList<>();
+        for (String url : urls(kairosDB)) {
+            replicas.add(() -> asyncRestTemplate.exchange(url + QUERY_SUFFIX, HttpMethod.POST, httpEntity, byte[].class));
+        }
+
+        ListenableFuture<ResponseEntity<byte[]>> lf = hedging.execute(kairosDB, replicas);
         lf.addCallback(new StopTimerCallback(timer));
+        lf.addCallback(response -> permit.release(), ex -> permit.release());
+
+        return new ListenableFutureAdapter<EncodedBody, ResponseEntity<byte[]>>(lf) {
+            @Override
+            protected EncodedBody adapt(ResponseEntity<byte[]> response) {
+                EncodedBody body = EncodedBody.of(response);
+                if (response.getStatusCode() == HttpStatus.OK) {
+                    queryCache.put(cacheKey, node, body);
+                }
+                return body;
+            }
+        };
+    }
+
+    private List<String> urls(String kairosDB) {
+        KairosDBProperties.KairosDBServiceConfig config = kairosdbServices.get(kairosDB);
+        List<String> urls = new ArrayList<>(1 + config.getReplicas().size());
+        urls.add(config.getUrl());
+        urls.addAll(config.getReplicas());
+        return urls;
+    }
+
+    /**
+     * Waits for the responses of all kairosdbs of a group. Failed kairosdbs are left out of the merge, the request
+     * only fails if all of them failed.
+     */
+    private ListenableFuture<EncodedBody> join(List<String> members, List<ListenableFuture<EncodedBody>> futures,
+                                               BodyMerger merger) {
+        final SettableListenableFuture<EncodedBody> merged = new SettableListenableFuture<>();
+        final EncodedBody[] bodies = new EncodedBody[futures.size()];
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        final AtomicInteger failed = new AtomicInteger();
+
+        if (futures.isEmpty()) {
+            merged.setException(new IllegalStateException("No kairosdb configured"));
+            return merged;
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            final int index = i;
+            futures.get(i).addCallback(new ListenableFutureCallback<EncodedBody>() {
+                @Override
+                public void onSuccess(EncodedBody body) {
+                    bodies[index] = body;
+                    complete();
+                }
+
+                @Override
+                public void onFailure(Throwable ex) {
+                    metricRegistry.meter("kairosdb.federated.failed." + members.get(index)).mark();
+                    log.warn("Leaving kairosdb out of federated response: kairosdb={} error={}", members.get(index), ex.getMessage());
+                    if (failed.incrementAndGet() == futures.size()) {
+                        merged.setException(ex);
+                    }
+                    complete();
+                }
+
+                private void complete() {
+                    if (remaining.decrementAndGet() == 0 && failed.get() < futures.size()) {
+                        try {
+                            merged.set(merger.merge(Arrays.asList(bodies)));
+                        } catch (IOException | RuntimeException e) {
+                            merged.setException(e);
+                        }
+                    }
+                }
+            });
+        }
 
-        return lf;
+        return merged;
+    }
+
+    @FunctionalInterface
+    private interface BodyMerger {
+        EncodedBody merge(List<EncodedBody> bodies) throws IOException;
     }
 
     @RequestMapping(value = "{kairosdbId}/api/v1/datapoints/query/tags", method = RequestMethod.POST, produces = "application/json")
-    public ListenableFuture<ResponseEntity<JsonNode>> kairosDBtags(@RequestBody(required = true) final JsonNode node, @PathVariable(value = "kairosdbId") String kairosDB) {
-        if (!kairosdbServices.containsKey(kairosDB)) {
+    public ListenableFuture<ResponseEntity<byte[]>> kairosDBtags(@RequestBody(required = true) final String body, @PathVariable(value = "kairosdbId") String kairosDB,
+                                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (!kairosdbServices.containsKey(kairosDB) && !kairosdbGroups.containsKey(kairosDB)) {
             return null;
         }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        if (kairosdbServices.get(kairosDB).isOauth2()) {
-            headers.add(AUTHORIZATION, BEARER + accessTokens.get(KAIROSDB_TOKEN_ID));
+        JsonNode query;
+        try {
+            query = MAPPER.readTree(body);
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Invalid tags query", e);
         }
 
-        HttpEntity<String> httpEntity = new HttpEntity<>(node.toString(), headers);
+        if (kairosdbServices.containsKey(kairosDB)) {
+            return respond(tags(kairosDB, query, body), acceptEncoding);
+        }
 
-        return asyncRestTemplate.exchange(kairosdbServices.get(kairosDB).getUrl() + TAGS_QUERY_SUFFIX, HttpMethod.POST, httpEntity, JsonNode.class);
+        final List<String> members = kairosdbGroups.get(kairosDB);
+        final List<ListenableFuture<EncodedBody>> futures = new ArrayList<>(members.size());
+        for (String member : members) {
+            futures.add(tags(member, query, body));
+        }
+
+        return respond(join(members, futures, KairosDBFederation::mergeTags), acceptEncoding);
+    }
+
+    private ListenableFuture<EncodedBody> tags(String kairosDB, JsonNode query, String body) {
+        HttpEntity<String> httpEntity = new HttpEntity<>(body, kairosDBHeaders(kairosDB));
+
+        return metadataCache.getTags(KairosDBQueryCache.key(kairosDB, query),
+                () -> exchange(kairosdbServices.get(kairosDB).getUrl() + TAGS_QUERY_SUFFIX, HttpMethod.POST, httpEntity));
     }
 
     @RequestMapping(value = "{kairosdbId}/api/v1/metricnames", method = RequestMethod.GET, produces = "application/json")
-    public ListenableFuture<ResponseEntity<JsonNode>> kairosDBmetrics(@PathVariable(value = "kairosdbId") String kairosDB) {
-        if (!kairosdbServices.containsKey(kairosDB)) {
+    public ListenableFuture<ResponseEntity<byte[]>> kairosDBmetrics(@PathVariable(value = "kairosdbId") String kairosDB,
+                                                                    @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (kairosdbServices.containsKey(kairosDB)) {
+            return respond(metricNames(kairosDB), acceptEncoding);
+        }
+
+        if (!kairosdbGroups.containsKey(kairosDB)) {
             return null;
         }
 
+        final List<String> members = kairosdbGroups.get(kairosDB);
+        final List<ListenableFuture<EncodedBody>> futures = new ArrayList<>(members.size());
+        for (String member : members) {
+            futures.add(metricNames(member));
+        }
+
+        return respond(join(members, futures, KairosDBFederation::mergeMetricNames), acceptEncoding);
+    }
+
+    private ListenableFuture<EncodedBody> metricNames(String kairosDB) {
+        HttpEntity<String> httpEntity = new HttpEntity<>(kairosDBHeaders(kairosDB));
+
+        return metadataCache.getMetricNames(kairosDB,
+                () -> exchange(kairosdbServices.get(kairosDB).getUrl() + METRIC_NAMES_SUFFIX, HttpMethod.GET, httpEntity));
+    }
+
+    private HttpHeaders kairosDBHeaders(String kairosDB) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
+        // the async client does not decompress, compressed responses are passed through as they are
+        headers.set(HttpHeaders.ACCEPT_ENCODING, EncodedBody.GZIP);
         if (kairosdbServices.get(kairosDB).isOauth2()) {
             headers.add(AUTHORIZATION, BEARER + accessTokens.get(KAIROSDB_TOKEN_ID));
         }
+        return headers;
+    }
 
-        HttpEntity<String> httpEntity = new HttpEntity<>(headers);
+    private ListenableFuture<EncodedBody> exchange(String url, HttpMethod method, HttpEntity<String> httpEntity) {
+        return new ListenableFutureAdapter<EncodedBody, ResponseEntity<byte[]>>(asyncRestTemplate.exchange(url, method, httpEntity, byte[].class)) {
+            @Override
+            protected EncodedBody adapt(ResponseEntity<byte[]> response) {
+                return EncodedBody.of(response);
+            }
+        };
+    }
 
-        return asyncRestTemplate.exchange(kairosdbServices.get(kairosDB).getUrl() + METRIC_NAMES_SUFFIX, HttpMethod.GET, httpEntity, JsonNode.class);
+    /**
+     * Writes the KairosDB response bytes without parsing them. Compressed bodies are only decompressed for clients
+     * that do not accept gzip.
+     */
+    private static ListenableFuture<ResponseEntity<byte[]>> respond(ListenableFuture<EncodedBody> body, String acceptEncoding) {
+        final boolean acceptsGzip = EncodedBody.acceptsGzip(acceptEncoding);
+
+        return new ListenableFutureAdapter<ResponseEntity<byte[]>, EncodedBody>(body) {
+            @Override
+            protected ResponseEntity<byte[]> adapt(EncodedBody encoded) throws ExecutionException {
+                HttpHeaders headers = new HttpHeaders();
+                headers.setContentType(MediaType.APPLICATION_JSON);
+                headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+                if (encoded.isGzip() && acceptsGzip) {
+                    headers.set(HttpHeaders.CONTENT_ENCODING, EncodedBody.GZIP);
+                    return new ResponseEntity<>(encoded.getBytes(), headers, HttpStatus.OK);
+                }
+
+                try {
+                    return new ResponseEntity<>(encoded.decoded(), headers, HttpStatus.OK);
+                } catch (IOException e) {
+                    throw new ExecutionException(e);
+                }
+            }
+        };
     }
 
     static class StopTimerCallback implements ListenableFutureCallback<Object> {
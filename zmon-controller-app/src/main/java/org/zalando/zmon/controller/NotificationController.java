@@ -1,27 +1,31 @@
 package org.zalando.zmon.controller;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.http.HttpEntity;
-import org.apache.http.client.fluent.Executor;
-import org.apache.http.client.fluent.Request;
-import org.apache.http.client.fluent.Response;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.StringEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureAdapter;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 import org.zalando.stups.tokens.AccessTokens;
 import org.zalando.zmon.config.NotificationServiceProperties;
+import org.zalando.zmon.config.annotation.NotificationService;
 import org.zalando.zmon.security.permission.DefaultZMonPermissionService;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.URISyntaxException;
+
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 
 /**
  * Created by jmussler on 09.11.16.
@@ -33,20 +37,33 @@ public class NotificationController {
 
     private final Logger log = LoggerFactory.getLogger(NotificationController.class);
 
-    @Autowired
-    private DefaultZMonPermissionService authorityService;
+    private static final String TOKEN_ID = "notification-service";
 
-    @Autowired
-    NotificationServiceProperties config;
+    private static final String BEARER = "Bearer ";
 
-    @Autowired
-    AccessTokens accessTokens;
+    private final DefaultZMonPermissionService authorityService;
 
-    @Autowired
-    ObjectMapper mapper;
+    private final NotificationServiceProperties config;
+
+    private final AccessTokens accessTokens;
+
+    private final ObjectMapper mapper;
 
-    public NotificationController() {
+    private final AsyncRestTemplate asyncRestTemplate;
 
+    private final MetricRegistry metricRegistry;
+
+    @Autowired
+    public NotificationController(DefaultZMonPermissionService authorityService, NotificationServiceProperties config,
+                                  AccessTokens accessTokens, ObjectMapper mapper,
+                                  @NotificationService AsyncRestTemplate asyncRestTemplate,
+                                  MetricRegistry metricRegistry) {
+        this.authorityService = authorityService;
+        this.config = config;
+        this.accessTokens = accessTokens;
+        this.mapper = mapper;
+        this.asyncRestTemplate = asyncRestTemplate;
+        this.metricRegistry = metricRegistry;
     }
 
     public static class DeviceRegistrationBody {
@@ -65,95 +82,107 @@ public class NotificationController {
         public int priority;
     }
 
-    @ResponseBody
     @RequestMapping(path="/devices", method=RequestMethod.POST)
-    public void registerDevice(@RequestBody DeviceRegistrationBody body) throws IOException {
+    public ListenableFuture<ResponseEntity<byte[]>> registerDevice(@RequestBody DeviceRegistrationBody body) throws IOException {
         log.info("Registering device for user: registrationToken={} user={}", body.registrationToken.substring(0, 5), authorityService.getUserName());
 
-        final String url = config.getUrl() + "/api/v1/users/" + authorityService.getUserName() + "/devices";
-        HttpEntity entity = new StringEntity(mapper.writeValueAsString(body), "UTF-8");
-        Request request = Request.Post(url).body(entity).addHeader("Authorization", "Bearer " + accessTokens.get("notification-service")).addHeader("Content-Type", "application/json");
-        Response r = Executor.newInstance().execute(request);
+        return proxy("register-device", HttpMethod.POST, userPath("/devices").build().toUri(), body);
     }
 
-    @ResponseBody
     @RequestMapping(path="/devices", method=RequestMethod.DELETE)
-    public void unregisterDevice(@RequestParam(name="registration_token") String registrationToken) throws IOException {
-        final String url = config.getUrl() + "/api/v1/device/" + registrationToken;
-        Request request = Request.Delete(url).addHeader("Authorization", "Bearer " + accessTokens.get("notification-service")).addHeader("Content-Type", "application/json");
-        Executor.newInstance().execute(request);
+    public ListenableFuture<ResponseEntity<byte[]>> unregisterDevice(@RequestParam(name="registration_token") String registrationToken) throws IOException {
+        final URI uri = UriComponentsBuilder.fromHttpUrl(config.getUrl()).path("/api/v1/device/").path(registrationToken).build().toUri();
+        return proxy("unregister-device", HttpMethod.DELETE, uri, null);
     }
 
-    @ResponseBody
     @RequestMapping(path="/teams", method=RequestMethod.POST)
-    public void subscribeToTeam(@RequestBody TeamRegistrationBody body) throws IOException {
-        final String url = config.getUrl() + "/api/v1/users/" + authorityService.getUserName() + "/teams";
-        HttpEntity entity = new StringEntity(mapper.writeValueAsString(body), "UTF-8");
-        Request request = Request.Post(url).body(entity).addHeader("Authorization", "Bearer " + accessTokens.get("notification-service")).addHeader("Content-Type", "application/json");
-        Executor.newInstance().execute(request);
+    public ListenableFuture<ResponseEntity<byte[]>> subscribeToTeam(@RequestBody TeamRegistrationBody body) throws IOException {
+        return proxy("subscribe-team", HttpMethod.POST, userPath("/teams").build().toUri(), body);
     }
 
-    @ResponseBody
     @RequestMapping(path="/teams", method=RequestMethod.GET)
-    public ResponseEntity<JsonNode> getSubscribedTeams() throws IOException {
-        final String url = config.getUrl() + "/api/v1/users/" + authorityService.getUserName() + "/teams";
-        Request request = Request.Get(url).addHeader("Authorization", "Bearer " + accessTokens.get("notification-service"));
-        Response r = Executor.newInstance().execute(request);
-        return new ResponseEntity<>(mapper.readTree(r.returnContent().asString()), HttpStatus.OK);
+    public ListenableFuture<ResponseEntity<byte[]>> getSubscribedTeams() throws IOException {
+        return proxy("get-teams", HttpMethod.GET, userPath("/teams").build().toUri(), null);
     }
 
-    @ResponseBody
     @RequestMapping(path="/teams", method=RequestMethod.DELETE)
-    public void unsubscribeTeam(@RequestParam(name="team") String team) throws IOException, URISyntaxException {
-        final String url = config.getUrl() + "/api/v1/users/" + authorityService.getUserName() + "/teams";
-        URI uri = new URIBuilder(url).addParameter("team", team).build();
-        Request request = Request.Delete(uri).addHeader("Authorization", "Bearer " + accessTokens.get("notification-service")).addHeader("Content-Type", "application/json");
-        Executor.newInstance().execute(request);
+    public ListenableFuture<ResponseEntity<byte[]>> unsubscribeTeam(@RequestParam(name="team") String team) throws IOException {
+        return proxy("unsubscribe-team", HttpMethod.DELETE, userPath("/teams").queryParam("team", team).build().encode().toUri(), null);
     }
 
-    @ResponseBody
     @RequestMapping(path="/alerts", method=RequestMethod.GET)
-    public ResponseEntity<JsonNode> getSubscribedAlerts() throws IOException {
-        final String url = config.getUrl() + "/api/v1/users/" + authorityService.getUserName() + "/alerts";
-        Request request = Request.Get(url).addHeader("Authorization", "Bearer " + accessTokens.get("notification-service"));
-        Response r = Executor.newInstance().execute(request);
-        return new ResponseEntity<>(mapper.readTree(r.returnContent().asString()), HttpStatus.OK);
+    public ListenableFuture<ResponseEntity<byte[]>> getSubscribedAlerts() throws IOException {
+        return proxy("get-alerts", HttpMethod.GET, userPath("/alerts").build().toUri(), null);
     }
 
-    @ResponseBody
     @RequestMapping(path="/priority", method=RequestMethod.GET)
-    public ResponseEntity<JsonNode> getPriority() throws IOException {
-        final String url = config.getUrl() + "/api/v1/users/" + authorityService.getUserName() + "/priority";
-        Request request = Request.Get(url).addHeader("Authorization", "Bearer " + accessTokens.get("notification-service"));
-        Response r = Executor.newInstance().execute(request);
-        return new ResponseEntity<>(mapper.readTree(r.returnContent().asString()), HttpStatus.OK);
+    public ListenableFuture<ResponseEntity<byte[]>> getPriority() throws IOException {
+        return proxy("get-priority", HttpMethod.GET, userPath("/priority").build().toUri(), null);
     }
 
-    @ResponseBody
     @RequestMapping(path="/priority", method=RequestMethod.POST)
-    public void setPriority(@RequestBody PriorityBody body) throws IOException {
-        final String url = config.getUrl() + "/api/v1/users/" + authorityService.getUserName() + "/priority";
-        HttpEntity entity = new StringEntity(mapper.writeValueAsString(body), "UTF-8");
-        Request request = Request.Post(url).body(entity).addHeader("Authorization", "Bearer " + accessTokens.get("notification-service")).addHeader("Content-Type", "application/json");
-        Executor.newInstance().execute(request);
+    public ListenableFuture<ResponseEntity<byte[]>> setPriority(@RequestBody PriorityBody body) throws IOException {
+        return proxy("set-priority", HttpMethod.POST, userPath("/priority").build().toUri(), body);
     }
 
-    @ResponseBody
     @RequestMapping(path="/alerts", method=RequestMethod.POST)
-    public void subscribeToAlert(@RequestBody AlertRegistrationBody body) throws IOException {
-        final String url = config.getUrl() + "/api/v1/users/" + authorityService.getUserName() + "/alerts";
-        final String alertBody = mapper.writeValueAsString(body);
-        HttpEntity entity = new StringEntity(alertBody, "UTF-8");
-        Request request = Request.Post(url).body(entity).addHeader("Authorization", "Bearer " + accessTokens.get("notification-service")).addHeader("Content-Type", "application/json");
-        Executor.newInstance().execute(request);
+    public ListenableFuture<ResponseEntity<byte[]>> subscribeToAlert(@RequestBody AlertRegistrationBody body) throws IOException {
+        return proxy("subscribe-alert", HttpMethod.POST, userPath("/alerts").build().toUri(), body);
     }
 
-    @ResponseBody
     @RequestMapping(path="/alerts", method=RequestMethod.DELETE)
-    public void unsubscribeTeam(@RequestParam(name="alert_id") int alertId) throws IOException, URISyntaxException {
-        final String url = config.getUrl() + "/api/v1/users/" + authorityService.getUserName() + "/alerts";
-        URI uri = new URIBuilder(url).addParameter("alertId", "" + alertId).build();
-        Request request = Request.Delete(uri).addHeader("Authorization", "Bearer " + accessTokens.get("notification-service")).addHeader("Content-Type", "application/json");
-        Executor.newInstance().execute(request);
+    public ListenableFuture<ResponseEntity<byte[]>> unsubscribeTeam(@RequestParam(name="alert_id") int alertId) throws IOException {
+        return proxy("unsubscribe-alert", HttpMethod.DELETE, userPath("/alerts").queryParam("alertId", alertId).build().toUri(), null);
+    }
+
+    private UriComponentsBuilder userPath(final String suffix) {
+        return UriComponentsBuilder.fromHttpUrl(config.getUrl()).path("/api/v1/users/").path(authorityService.getUserName()).path(suffix);
+    }
+
+    /**
+     * Sends the request without blocking the servlet thread and passes status, content type and body of the
+     * notification service response through unchanged.
+     * <p>
+     * The body is buffered, not streamed: the async client reads the whole response before any callback runs, and
+     * writing to the servlet response from its I/O thread would stall every other call on a slow browser. The
+     * notification service only answers with small JSON documents.
+     */
+    private ListenableFuture<ResponseEntity<byte[]>> proxy(final String route, final HttpMethod method, final URI uri,
+                                                           final Object body) throws IOException {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.add(AUTHORIZATION, BEARER + accessTokens.get(TOKEN_ID));
+
+        byte[] content = null;
+        if (body != null) {
+            headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+            content = mapper.writeValueAsBytes(body);
+        }
+
+        final Timer.Context timer = metricRegistry.timer("notification-service." + route).time();
+        final ListenableFuture<ResponseEntity<byte[]>> response = asyncRestTemplate.exchange(uri, method,
+                new HttpEntity<>(content, headers), byte[].class);
+
+        response.addCallback(result -> {
+            timer.stop();
+            if (result.getStatusCode().value() >= 400) {
+                metricRegistry.meter("notification-service." + route + ".errors").mark();
+            }
+        }, ex -> {
+            timer.stop();
+            metricRegistry.meter("notification-service." + route + ".errors").mark();
+            log.error("Notification service call failed: route={} error={}", route, ex.getMessage());
+        });
+
+        return new ListenableFutureAdapter<ResponseEntity<byte[]>, ResponseEntity<byte[]>>(response) {
+            @Override
+            protected ResponseEntity<byte[]> adapt(ResponseEntity<byte[]> upstream) {
+                // only pass the content type, hop-by-hop headers like Transfer-Encoding must not be copied
+                final HttpHeaders responseHeaders = new HttpHeaders();
+                if (upstream.getHeaders().getContentType() != null) {
+                    responseHeaders.setContentType(upstream.getHeaders().getContentType());
+                }
+                return new ResponseEntity<>(upstream.getBody(), responseHeaders, upstream.getStatusCode());
+            }
+        };
     }
 }
@@ -4,8 +4,6 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
-import org.apache.http.client.fluent.Executor;
-import org.apache.http.client.fluent.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,7 +16,6 @@ import org.zalando.zmon.api.SearchAPI;
 import org.zalando.zmon.api.domain.EntityFilterRequest;
 import org.zalando.zmon.api.domain.EntityFilterResponse;
 import org.zalando.zmon.api.domain.EntityObject;
-import org.zalando.zmon.config.MetricCacheProperties;
 import org.zalando.zmon.domain.CheckDefinition;
 import org.zalando.zmon.domain.CheckDefinitionImport;
 import org.zalando.zmon.domain.CheckResults;
@@ -29,10 +26,10 @@ import org.zalando.zmon.api.domain.CheckChartResult;
 import org.zalando.zmon.persistence.CheckDefinitionImportResult;
 import org.zalando.zmon.security.permission.DefaultZMonPermissionService;
 import org.zalando.zmon.service.ZMonService;
+import org.zalando.zmon.service.impl.MetricCacheClient;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.Writer;
 import java.util.List;
 import java.util.Set;
 
@@ -46,7 +43,7 @@ public class ZMonRestService extends AbstractZMonController {
     private ZMonService service;
 
     @Autowired
-    private MetricCacheProperties metricCacheProperties;
+    private MetricCacheClient metricCacheClient;
 
     @Autowired
     private EntityApi entityApi;
@@ -153,18 +150,9 @@ public class ZMonRestService extends AbstractZMonController {
 
     @ResponseBody
     @RequestMapping(value = "cloud-view-endpoints", produces = "application/json")
-    public void cloudViewEndpoints(@RequestParam(value = "application_id") String applicationId, final Writer writer,
+    public void cloudViewEndpoints(@RequestParam(value = "application_id") String applicationId,
                                    final HttpServletResponse response) throws IOException {
-
-        final Executor executor = Executor.newInstance();
-
-        final String dataServiceQuery = metricCacheProperties.getUrl() + "/api/v1/rest-api-metrics/kairosdb-format?application_id=" + applicationId;
-
-        int nodeId = Math.abs(applicationId.hashCode() % metricCacheProperties.getNodes());
-        final String r = executor.execute(Request.Get(dataServiceQuery).addHeader("Cookie", "metric_cache=" + nodeId)).returnContent().asString();
-
-        response.setContentType("application/json");
-        writer.write(r);
+        metricCacheClient.writeCloudViewEndpoints(applicationId, response);
     }
 
     @ResponseStatus(HttpStatus.OK)
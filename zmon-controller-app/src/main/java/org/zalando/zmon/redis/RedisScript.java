@@ -0,0 +1,60 @@
+package org.zalando.zmon.redis;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.io.Resources;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Lua script that is loaded once per server with SCRIPT LOAD and afterwards only invoked by its SHA1 (EVALSHA).
+ * The script is transparently reloaded if the server lost it (restart, SCRIPT FLUSH, failover).
+ */
+public final class RedisScript {
+
+    private static final String NOSCRIPT = "NOSCRIPT";
+
+    private final String source;
+
+    private volatile String sha;
+
+    private RedisScript(final String source) {
+        this.source = Preconditions.checkNotNull(source, "source");
+    }
+
+    public static RedisScript fromClasspath(final String path) {
+        try {
+            return new RedisScript(Resources.toString(Resources.getResource(path), Charsets.UTF_8));
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not read redis script: " + path, e);
+        }
+    }
+
+    public Object evalSha(final Jedis jedis, final List<String> keys, final List<String> args) {
+        String currentSha = sha;
+        if (currentSha == null) {
+            currentSha = load(jedis);
+        }
+
+        try {
+            return jedis.evalsha(currentSha, keys, args);
+        } catch (final JedisDataException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith(NOSCRIPT)) {
+                throw e;
+            }
+
+            return jedis.evalsha(load(jedis), keys, args);
+        }
+    }
+
+    private String load(final Jedis jedis) {
+        final String loadedSha = jedis.scriptLoad(source);
+        sha = loadedSha;
+        return loadedSha;
+    }
+}
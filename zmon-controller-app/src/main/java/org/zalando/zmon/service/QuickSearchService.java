@@ -0,0 +1,29 @@
+package org.zalando.zmon.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.zalando.zmon.persistence.QuickSearchResultItem;
+
+public interface QuickSearchService {
+
+    String ALERTS = "alerts";
+
+    String CHECKS = "checks";
+
+    String DASHBOARDS = "dashboards";
+
+    String GRAFANA_DASHBOARDS = "grafana_dashboards";
+
+    /**
+     * @param teams null to search all teams
+     * @return results per source, a source without results in time has an empty list
+     */
+    Map<String, List<QuickSearchResultItem>> search(String search, List<String> teams, int limit);
+
+    /**
+     * Reloads the index after this instance changed alerts, checks or dashboards, once the current transaction is
+     * committed. Changes made by other instances are picked up by the periodic reload.
+     */
+    void reloadIndex();
+}
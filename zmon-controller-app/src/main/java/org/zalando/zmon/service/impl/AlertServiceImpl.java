@@ -7,14 +7,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.zalando.zmon.config.SchedulerProperties;
 import org.zalando.zmon.config.annotation.RedisWrite;
 import org.zalando.zmon.diff.AlertDefinitionsDiffFactory;
 import org.zalando.zmon.domain.*;
@@ -27,6 +25,8 @@ import org.zalando.zmon.redis.RedisPattern;
 import org.zalando.zmon.redis.ResponseHolder;
 import org.zalando.zmon.security.permission.DefaultZMonPermissionService;
 import org.zalando.zmon.service.AlertService;
+import org.zalando.zmon.service.QuickSearchService;
+import org.zalando.zmon.service.impl.scheduler.SchedulerClient;
 import org.zalando.zmon.util.DBUtil;
 import org.zalando.zmon.util.NamedMessageFormatter;
 import redis.clients.jedis.Jedis;
@@ -73,7 +73,10 @@ public class AlertServiceImpl implements AlertService {
     private ObjectMapper mapper;
 
     @Autowired
-    private SchedulerProperties schedulerProperties;
+    private SchedulerClient schedulerClient;
+
+    @Autowired
+    private QuickSearchService quickSearchService;
 
     @Override
     public AlertDefinition createOrUpdateAlertDefinition(final AlertDefinition alertDefinition) throws ZMonException {
@@ -87,6 +90,7 @@ public class AlertServiceImpl implements AlertService {
         eventLog.log(alertDefinition.getId() == null ? ZMonEventType.ALERT_DEFINITION_CREATED
                         : ZMonEventType.ALERT_DEFINITION_UPDATED, result.getId(),
                 result.getEntities(), result.getCondition(), result.getLastModifiedBy());
+        quickSearchService.reloadIndex();
 
         return result;
     }
@@ -102,6 +106,7 @@ public class AlertServiceImpl implements AlertService {
         if (alertDefinition != null) {
             eventLog.log(ZMonEventType.ALERT_DEFINITION_DELETED, alertDefinition.getId(),
                     alertDefinition.getEntities(), alertDefinition.getCondition(), authorityService.getUserName());
+            quickSearchService.reloadIndex();
         }
 
         return alertDefinition;
@@ -347,11 +352,9 @@ public class AlertServiceImpl implements AlertService {
 
         // TODO, use ForceAlertEvaluation
 
-        final Executor executor = Executor.newInstance(schedulerProperties.getHttpClient());
-
-        final String url = schedulerProperties.getUrl().toString() + "/api/v1/alerts/" + alertDefinitionId + "/instant-eval";
+        final String url = schedulerClient.url("/api/v1/alerts/" + alertDefinitionId + "/instant-eval");
 
-        executor.execute(Request.Post(url)).returnContent().asString();
+        schedulerClient.execute("instant-eval", Request.Post(url));
 
         eventLog.log(ZMonEventType.INSTANTANEOUS_ALERT_EVALUATION_SCHEDULED, alertDefinitionId,
                 authorityService.getUserName());
@@ -11,10 +11,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.zalando.zmon.domain.Dashboard;
 import org.zalando.zmon.event.ZMonEventType;
+import org.zalando.zmon.exception.DashboardVersionConflictException;
 import org.zalando.zmon.exception.ZMonException;
 import org.zalando.zmon.persistence.DashboardOperationResult;
 import org.zalando.zmon.persistence.DashboardSProcService;
 import org.zalando.zmon.service.DashboardService;
+import org.zalando.zmon.service.QuickSearchService;
 
 import com.google.common.base.Preconditions;
 import com.google.common.primitives.Ints;
@@ -31,10 +33,14 @@ public class DashboardServiceImpl implements DashboardService {
 
     private final DashboardSProcService dashboardSProc;
 
+    private final QuickSearchService quickSearchService;
+
     @Autowired
-    public DashboardServiceImpl(NoOpEventLog eventLog, DashboardSProcService dashboardSProc) {
+    public DashboardServiceImpl(NoOpEventLog eventLog, DashboardSProcService dashboardSProc,
+                                QuickSearchService quickSearchService) {
         this.eventLog = eventLog;
         this.dashboardSProc = dashboardSProc;
+        this.quickSearchService = quickSearchService;
     }
 
     @Override
@@ -61,10 +67,15 @@ public class DashboardServiceImpl implements DashboardService {
         final DashboardOperationResult result = dashboardSProc.createOrUpdateDashboard(dashboard)
                                                               .throwExceptionOnFailure();
         final Dashboard entity = result.getEntity();
+        if (entity == null || entity.getId() == null) {
+            throw new DashboardVersionConflictException("Dashboard " + dashboard.getId()
+                    + " was changed by someone else since version " + dashboard.getVersion());
+        }
 
         eventLog.log(dashboard.getId() == null ? ZMonEventType.DASHBOARD_CREATED : ZMonEventType.DASHBOARD_UPDATED,
             entity.getId(), entity.getName(), entity.getWidgetConfiguration(), entity.getAlertTeams(),
             entity.getViewMode(), entity.getEditOption(), entity.getSharedTeams(), entity.getLastModifiedBy());
+        quickSearchService.reloadIndex();
 
         return entity;
     }
@@ -75,5 +86,6 @@ public class DashboardServiceImpl implements DashboardService {
         log.info("Delete dashboard '{}' request from user '{}'", dashboardId);
 
         dashboardSProc.deleteDashboard(dashboardId);
+        quickSearchService.reloadIndex();
     }
 }
@@ -1,12 +1,18 @@
 package org.zalando.zmon.service.impl;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import org.apache.http.client.fluent.Executor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.fluent.Request;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,16 +29,25 @@ import org.zalando.zmon.domain.DowntimeRequest;
 import org.zalando.zmon.exception.SerializationException;
 import org.zalando.zmon.persistence.AlertDefinitionSProcService;
 import org.zalando.zmon.redis.RedisPattern;
+import org.zalando.zmon.redis.RedisScript;
 import org.zalando.zmon.redis.ResponseHolder;
 import org.zalando.zmon.service.DowntimeService;
 import org.zalando.zmon.service.impl.downtimes.DowntimeAPIRequest;
+import org.zalando.zmon.service.impl.scheduler.SchedulerClient;
+import org.zalando.zmon.service.impl.scheduler.SchedulerUnavailableException;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -50,7 +65,26 @@ public class DowntimeServiceImpl implements DowntimeService {
     @Autowired
     private SchedulerProperties schedulerProperties;
 
+    @Autowired
+    private SchedulerClient schedulerClient;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    private static final RedisScript DOWNTIME_DETAILS_SCRIPT = RedisScript.fromClasspath("redis/downtime-details.lua");
+
+    // how long the pipelined lookup is used once redis refused to run scripts (scripting disabled or not supported)
+    private static final long SCRIPTING_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private volatile long scriptingDisabledUntil = 0;
+
+    // how long downtimes are deleted one by one once the scheduler said it does not know the bulk endpoint
+    private static final long BULK_DELETE_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private volatile long bulkDeleteDisabledUntil = 0;
+
     private static final String SCHEDULER_DOWNTIMES_PATH = "/api/v1/downtimes";
+    private static final String SCHEDULER_DOWNTIMES_BULK_DELETE_PATH = "/api/v1/downtimes/delete";
     private static final String SCHEDULER_DOWNTIME_GROUPS_PATH = "/api/v1/downtime-groups";
 
     @Autowired
@@ -144,14 +178,15 @@ public class DowntimeServiceImpl implements DowntimeService {
         Preconditions.checkNotNull(request, "request");
         Preconditions.checkNotNull(groupId, "groupId");
 
-        final Executor executor = Executor.newInstance(schedulerProperties.getHttpClient());
-        final String url = schedulerProperties.getUrl().toString() + SCHEDULER_DOWNTIMES_PATH;
+        final String url = schedulerClient.url(SCHEDULER_DOWNTIMES_PATH);
 
         final DowntimeAPIRequest apiRequest = DowntimeAPIRequest.convert(groupId, request);
         try {
             final Request httpRequest = Request.Post(url).bodyString(mapper.writeValueAsString(apiRequest),
                     ContentType.APPLICATION_JSON);
-            executor.execute(httpRequest).returnContent().asString();
+            schedulerClient.execute("schedule-downtime", httpRequest);
+        } catch (SchedulerUnavailableException e) {
+            throw e;
         } catch (Throwable t) {
             LOG.error("Creating downtime failed", t.getMessage());
             throw new RuntimeException(t);
@@ -162,6 +197,60 @@ public class DowntimeServiceImpl implements DowntimeService {
 
     @Override
     public List<DowntimeDetails> getDowntimes(final Set<Integer> alertDefinitionIds) {
+        if (System.currentTimeMillis() >= scriptingDisabledUntil) {
+            try {
+                return getDowntimesWithScript(alertDefinitionIds);
+            } catch (final JedisDataException e) {
+                if (isScriptingUnsupported(e)) {
+                    LOG.warn("Redis does not support downtime lookup script, falling back to pipelining for {} minutes: {}",
+                            TimeUnit.MILLISECONDS.toMinutes(SCRIPTING_RETRY_MILLIS), e.getMessage());
+                    scriptingDisabledUntil = System.currentTimeMillis() + SCRIPTING_RETRY_MILLIS;
+                } else {
+                    // BUSY, OOM, failover, ... only this lookup falls back
+                    LOG.warn("Downtime lookup script failed, falling back to pipelining: {}", e.getMessage());
+                }
+            }
+        }
+
+        return getDowntimesPipelined(alertDefinitionIds);
+    }
+
+    /**
+     * Redis or a proxy in front of it does not know the scripting commands, or a cluster refuses the keys of the
+     * script.
+     */
+    static boolean isScriptingUnsupported(final JedisDataException e) {
+        final String message = Strings.nullToEmpty(e.getMessage()).toLowerCase(Locale.ROOT);
+        return message.contains("unknown command") || message.contains("crossslot")
+                || message.contains("non local key");
+    }
+
+    /**
+     * Resolves alerts in downtime, their entities and the downtime details on the server in one round trip.
+     */
+    @SuppressWarnings("unchecked")
+    private List<DowntimeDetails> getDowntimesWithScript(final Set<Integer> alertDefinitionIds) {
+        if (alertDefinitionIds.isEmpty()) {
+            return new LinkedList<>();
+        }
+
+        final List<String> keys = new ArrayList<>(alertDefinitionIds.size() + 1);
+        final List<String> args = new ArrayList<>(alertDefinitionIds.size());
+        keys.add(RedisPattern.downtimeAlertIds());
+        for (final Integer alertDefinitionId : alertDefinitionIds) {
+            keys.add(RedisPattern.downtimeEntities(alertDefinitionId));
+            args.add(String.valueOf(alertDefinitionId));
+        }
+
+        final List<String> downtimes;
+        try (Jedis jedis = redisPool.getResource()) {
+            downtimes = (List<String>) DOWNTIME_DETAILS_SCRIPT.evalSha(jedis, keys, args);
+        }
+
+        return readDowntimes(downtimes);
+    }
+
+    private List<DowntimeDetails> getDowntimesPipelined(final Set<Integer> alertDefinitionIds) {
 
         final List<Response<Map<String, String>>> asyncDowntimeResults = new LinkedList<>();
 
@@ -193,12 +282,20 @@ public class DowntimeServiceImpl implements DowntimeService {
 
         final List<DowntimeDetails> results = new LinkedList<>();
         for (final Response<Map<String, String>> response : downtimeResults) {
-            for (final String entityResults : response.get().values()) {
-                try {
-                    results.add(mapper.readValue(entityResults, DowntimeDetails.class));
-                } catch (final IOException e) {
-                    throw new SerializationException("Could not read JSON: " + entityResults, e);
-                }
+            results.addAll(readDowntimes(response.get().values()));
+        }
+
+        return results;
+    }
+
+    private List<DowntimeDetails> readDowntimes(final Collection<String> downtimes) {
+
+        final List<DowntimeDetails> results = new LinkedList<>();
+        for (final String entityResults : downtimes) {
+            try {
+                results.add(mapper.readValue(entityResults, DowntimeDetails.class));
+            } catch (final IOException e) {
+                throw new SerializationException("Could not read JSON: " + entityResults, e);
             }
         }
 
@@ -209,11 +306,12 @@ public class DowntimeServiceImpl implements DowntimeService {
     public DowntimeGroup deleteDowntimeGroup(final String groupId) {
         Preconditions.checkNotNull(groupId, "groupId");
 
-        final Executor executor = Executor.newInstance(schedulerProperties.getHttpClient());
-        final String url = schedulerProperties.getUrl().toString() + SCHEDULER_DOWNTIME_GROUPS_PATH + "/" + groupId;
+        final String url = schedulerClient.url(SCHEDULER_DOWNTIME_GROUPS_PATH + "/" + groupId);
 
         try {
-            executor.execute(Request.Delete(url)).returnContent().asString();
+            schedulerClient.execute("delete-downtime-group", Request.Delete(url));
+        } catch (SchedulerUnavailableException e) {
+            throw e;
         } catch (Throwable t) {
             LOG.error("Deleting downtime group failed: group={}", groupId, t.getMessage());
             throw new RuntimeException(t);
@@ -226,23 +324,145 @@ public class DowntimeServiceImpl implements DowntimeService {
     public void deleteDowntimes(final Set<String> downtimeIds) {
         Preconditions.checkNotNull(downtimeIds);
 
-        final Executor executor = Executor.newInstance(schedulerProperties.getHttpClient());
-        List<String> errorIds = new ArrayList<>();
+        if (downtimeIds.isEmpty()) {
+            return;
+        }
 
-        for (String downtimeId : downtimeIds) {
-            String url = schedulerProperties.getUrl().toString() + SCHEDULER_DOWNTIMES_PATH + "/" + downtimeId;
+        metricRegistry.histogram("downtime-service.delete-downtimes.batch-size").update(downtimeIds.size());
+        final Timer.Context timer = metricRegistry.timer("downtime-service.delete-downtimes").time();
 
-            try {
-                executor.execute(Request.Delete(url)).returnContent().asString();
-            } catch (Throwable t) {
-                LOG.error("Deleting downtime failed: id={}", downtimeId, t.getMessage());
-                errorIds.add(downtimeId);
+        final Collection<String> errorIds;
+        try {
+            if (schedulerProperties.isDowntimeBulkDelete() && System.currentTimeMillis() >= bulkDeleteDisabledUntil
+                    && bulkDeleteDowntimes(downtimeIds)) {
+                errorIds = Collections.emptyList();
+            } else {
+                errorIds = deleteDowntimesConcurrently(downtimeIds);
             }
+        } finally {
+            final long elapsed = timer.stop();
+            LOG.info("Deleted downtimes: count={} duration={}ms", downtimeIds.size(), elapsed / 1_000_000);
         }
 
         if (!errorIds.isEmpty()) {
-            throw new RuntimeException("Delete failed for " + errorIds.size() + " downtimes");
+            throw new RuntimeException("Delete failed for " + errorIds.size() + " downtimes: " + errorIds);
+        }
+    }
+
+    /**
+     * Sends all ids in one request.
+     *
+     * @return false if the scheduler could not handle the batch and the ids still need to be deleted one by one
+     */
+    private boolean bulkDeleteDowntimes(final Set<String> downtimeIds) {
+        final String url = schedulerClient.url(SCHEDULER_DOWNTIMES_BULK_DELETE_PATH);
+
+        try {
+            final Request httpRequest = Request.Post(url).bodyString(mapper.writeValueAsString(downtimeIds),
+                    ContentType.APPLICATION_JSON);
+            final int status = schedulerClient.execute("bulk-delete-downtimes", httpRequest,
+                    response -> response.getStatusLine().getStatusCode());
+            if (status < HttpStatus.SC_MULTIPLE_CHOICES) {
+                return true;
+            }
+
+            if (status == HttpStatus.SC_NOT_FOUND || status == HttpStatus.SC_METHOD_NOT_ALLOWED
+                    || status == HttpStatus.SC_NOT_IMPLEMENTED) {
+                LOG.info("Scheduler does not support bulk downtime deletion (status={}), deleting one by one for {} minutes",
+                        status, TimeUnit.MILLISECONDS.toMinutes(BULK_DELETE_RETRY_MILLIS));
+                bulkDeleteDisabledUntil = System.currentTimeMillis() + BULK_DELETE_RETRY_MILLIS;
+            } else {
+                LOG.warn("Bulk downtime deletion failed: status={} count={}", status, downtimeIds.size());
+            }
+        } catch (SchedulerUnavailableException e) {
+            throw e;
+        } catch (Throwable t) {
+            LOG.warn("Bulk downtime deletion failed: count={}", downtimeIds.size(), t);
+        }
+
+        return false;
+    }
+
+    /**
+     * Issues one DELETE per id on the scheduler's non-blocking client, with at most
+     * {@link SchedulerProperties#getDowntimeDeleteConcurrency()} requests in flight.
+     *
+     * @return ids that could not be deleted, or were not deleted within
+     * {@link SchedulerProperties#getDowntimeDeleteTimeoutMillis()}
+     */
+    private Collection<String> deleteDowntimesConcurrently(final Set<String> downtimeIds) {
+        final String baseUrl = schedulerClient.url(SCHEDULER_DOWNTIMES_PATH + "/");
+        final long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(schedulerProperties.getDowntimeDeleteTimeoutMillis());
+        final Semaphore inFlight = new Semaphore(Math.max(1, schedulerProperties.getDowntimeDeleteConcurrency()));
+        final CountDownLatch done = new CountDownLatch(downtimeIds.size());
+        final Queue<String> errorIds = new ConcurrentLinkedQueue<>();
+        final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        pending.addAll(downtimeIds);
+
+        try {
+            for (final String downtimeId : downtimeIds) {
+                if (!inFlight.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+                final FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+                    @Override
+                    public void completed(final HttpResponse response) {
+                        final int status = response.getStatusLine().getStatusCode();
+                        if (status >= HttpStatus.SC_MULTIPLE_CHOICES) {
+                            LOG.error("Deleting downtime failed: id={} status={}", downtimeId, status);
+                            errorIds.add(downtimeId);
+                        }
+                        finish();
+                    }
+
+                    @Override
+                    public void failed(final Exception ex) {
+                        LOG.error("Deleting downtime failed: id={} error={}", downtimeId, ex.getMessage());
+                        errorIds.add(downtimeId);
+                        finish();
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        errorIds.add(downtimeId);
+                        finish();
+                    }
+
+                    private void finish() {
+                        pending.remove(downtimeId);
+                        inFlight.release();
+                        done.countDown();
+                    }
+                };
+
+                try {
+                    schedulerClient.executeAsync("delete-downtime", new HttpDelete(baseUrl + downtimeId), callback);
+                } catch (SchedulerUnavailableException e) {
+                    // requests already sent finish in the background
+                    throw e;
+                } catch (RuntimeException e) {
+                    callback.failed(e);
+                }
+            }
+
+            // does not rely on every callback firing
+            done.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while deleting downtimes", e);
+        }
+
+        if (!pending.isEmpty()) {
+            LOG.error("Deleting downtimes timed out: count={} timeoutMillis={}", pending.size(),
+                    schedulerProperties.getDowntimeDeleteTimeoutMillis());
+            // a late callback may add an id of the snapshot again
+            final Set<String> result = new LinkedHashSet<>(errorIds);
+            result.addAll(pending);
+            return result;
         }
+
+        return errorIds;
     }
 
     private List<ResponseHolder<Integer, Set<String>>> fetchEntities(final Jedis jedis,
@@ -0,0 +1,137 @@
+package org.zalando.zmon.service.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zalando.zmon.config.GrafanaMigrationProperties;
+import org.zalando.zmon.controller.GrafanaController;
+import org.zalando.zmon.persistence.GrafanaDashboardSprocService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Converts stored Grafana v1 dashboards to v2 once, so they are no longer migrated on every load. The v1 JSON is kept
+ * in the database for rollback.
+ *
+ * <p>Dashboards are processed in chunks with a pause in between. A dashboard is only replaced if it was not saved
+ * since it was read, so the job can run while users edit dashboards and on several instances at the same time.
+ */
+@Component
+public class GrafanaDashboardMigration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GrafanaDashboardMigration.class);
+
+    private final GrafanaMigrationProperties properties;
+
+    private final GrafanaDashboardSprocService grafanaService;
+
+    private final ObjectMapper mapper;
+
+    private final MetricRegistry metricRegistry;
+
+    private final AtomicLong remaining = new AtomicLong();
+
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public GrafanaDashboardMigration(final GrafanaMigrationProperties properties,
+                                     final GrafanaDashboardSprocService grafanaService, final ObjectMapper mapper,
+                                     final MetricRegistry metricRegistry) {
+        this.properties = Preconditions.checkNotNull(properties, "properties");
+        this.grafanaService = Preconditions.checkNotNull(grafanaService, "grafanaService");
+        this.mapper = Preconditions.checkNotNull(mapper, "mapper");
+        this.metricRegistry = Preconditions.checkNotNull(metricRegistry, "metricRegistry");
+
+        metricRegistry.register("grafana.migration.remaining", (Gauge<Long>) remaining::get);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("grafana-migration-%d").setDaemon(true).build());
+        executor.schedule(this::run, properties.getInitialDelaySeconds(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    void run() {
+        try {
+            remaining.set(grafanaService.getGrafanaV1DashboardCount());
+            LOG.info("Starting Grafana v1 dashboard migration: dashboards={}", remaining.get());
+
+            String afterId = null;
+            while (!Thread.currentThread().isInterrupted()) {
+                final List<GrafanaDashboardSprocService.GrafanaV1Dashboard> chunk =
+                        grafanaService.getGrafanaV1Dashboards(afterId, properties.getChunkSize());
+
+                for (GrafanaDashboardSprocService.GrafanaV1Dashboard dashboard : chunk) {
+                    migrate(dashboard);
+                    remaining.decrementAndGet();
+                }
+
+                metricRegistry.meter("grafana.migration.chunks").mark();
+                LOG.info("Migrated chunk of Grafana v1 dashboards: size={} remaining={}", chunk.size(), remaining.get());
+
+                if (chunk.size() < properties.getChunkSize()) {
+                    break;
+                }
+
+                afterId = chunk.get(chunk.size() - 1).id;
+                TimeUnit.MILLISECONDS.sleep(properties.getChunkPauseMillis());
+            }
+
+            LOG.info("Finished Grafana v1 dashboard migration: migrated={} skipped={} failed={}",
+                    metricRegistry.meter("grafana.migration.migrated").getCount(),
+                    metricRegistry.meter("grafana.migration.skipped").getCount(),
+                    metricRegistry.meter("grafana.migration.failed").getCount());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.error("Grafana v1 dashboard migration aborted", e);
+        }
+    }
+
+    private void migrate(final GrafanaDashboardSprocService.GrafanaV1Dashboard dashboard) {
+        final String migrated;
+        try {
+            final JsonNode model = mapper.readTree(dashboard.dashboard);
+            GrafanaController.migrateV1((ObjectNode) model);
+            migrated = mapper.writeValueAsString(model);
+        } catch (IOException | RuntimeException e) {
+            metricRegistry.meter("grafana.migration.failed").mark();
+            LOG.warn("Could not migrate Grafana v1 dashboard: id={}", dashboard.id, e);
+            return;
+        }
+
+        if (grafanaService.migrateGrafanaV1Dashboard(dashboard.id, migrated, dashboard.lastModified).isEmpty()) {
+            // saved or migrated by someone else in the meantime
+            metricRegistry.meter("grafana.migration.skipped").mark();
+        } else {
+            metricRegistry.meter("grafana.migration.migrated").mark();
+        }
+    }
+}
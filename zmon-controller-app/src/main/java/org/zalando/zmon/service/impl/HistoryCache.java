@@ -0,0 +1,173 @@
+package org.zalando.zmon.service.impl;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zalando.zmon.config.HistoryCacheProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * History of a time range that ended in the past never changes. Such ranges are cached as a whole; open ranges are
+ * split at an aligned boundary so that the older part is served from the cache and only the newest "head" window is
+ * loaded live and put on top.
+ *
+ * <p>All loaded lists must be ordered newest first, which is what eventlog and the history sprocs return.
+ */
+@Component
+public class HistoryCache {
+
+    private final HistoryCacheProperties properties;
+
+    private final Cache<Key, List<?>> cache;
+
+    private final LongSupplier clock;
+
+    @Autowired
+    public HistoryCache(final HistoryCacheProperties properties) {
+        this(properties, System::currentTimeMillis);
+    }
+
+    HistoryCache(final HistoryCacheProperties properties, final LongSupplier clock) {
+        this.properties = Preconditions.checkNotNull(properties, "properties");
+        this.clock = Preconditions.checkNotNull(clock, "clock");
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumSize(properties.getMaxEntries())
+                                 .expireAfterWrite(properties.getTtlMinutes(), TimeUnit.MINUTES)
+                                 .build();
+    }
+
+    /**
+     * Loads a page of history.
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+
+        /**
+         * @param fromMillis inclusive lower bound or {@code null}
+         * @param toMillis   inclusive upper bound or {@code null}
+         * @param limit      maximum number of entries or {@code null}
+         */
+        Loaded<T> load(Long fromMillis, Long toMillis, Integer limit);
+    }
+
+    /**
+     * Result of a {@link Loader}. Incomplete results (e.g. a backend was not reachable) are returned but not cached.
+     */
+    public static final class Loaded<T> {
+        private final List<T> entries;
+        private final boolean complete;
+
+        private Loaded(final List<T> entries, final boolean complete) {
+            this.entries = Preconditions.checkNotNull(entries, "entries");
+            this.complete = complete;
+        }
+
+        public static <T> Loaded<T> complete(final List<T> entries) {
+            return new Loaded<>(entries, true);
+        }
+
+        public static <T> Loaded<T> incomplete(final List<T> entries) {
+            return new Loaded<>(entries, false);
+        }
+    }
+
+    public <T> List<T> get(final String type, final int id, final Integer limit, final Long fromMillis,
+                           final Long toMillis, final Loader<T> loader) {
+        if (!properties.isEnabled()) {
+            return loader.load(fromMillis, toMillis, limit).entries;
+        }
+
+        final long settled = clock.getAsLong() - TimeUnit.SECONDS.toMillis(properties.getSettleSeconds());
+
+        // closed range
+        if (toMillis != null && toMillis <= settled) {
+            return getCached(new Key(type, id, fromMillis, toMillis, limit), loader);
+        }
+
+        final long headWindow = TimeUnit.SECONDS.toMillis(properties.getHeadWindowSeconds());
+        final long boundary = settled - (settled % headWindow);
+        if (fromMillis != null && fromMillis >= boundary) {
+            return loader.load(fromMillis, toMillis, limit).entries;
+        }
+
+        final List<T> head = loader.load(boundary, toMillis, limit).entries;
+        if (limit != null && head.size() >= limit) {
+            return head;
+        }
+
+        final List<T> tail = getCached(new Key(type, id, fromMillis, boundary - 1, limit), loader);
+
+        final int size = head.size() + tail.size();
+        final List<T> result = new ArrayList<>(limit == null ? size : Math.min(limit, size));
+        result.addAll(head);
+        result.addAll(limit == null ? tail : tail.subList(0, Math.min(tail.size(), limit - head.size())));
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> getCached(final Key key, final Loader<T> loader) {
+        final List<T> cached = (List<T>) cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final Loaded<T> loaded = loader.load(key.fromMillis, key.toMillis, key.limit);
+        if (!loaded.complete) {
+            return loaded.entries;
+        }
+
+        final List<T> entries = Collections.unmodifiableList(new ArrayList<>(loaded.entries));
+        cache.put(key, entries);
+
+        return entries;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static final class Key {
+        private final String type;
+        private final int id;
+        private final Long fromMillis;
+        private final Long toMillis;
+        private final Integer limit;
+
+        private Key(final String type, final int id, final Long fromMillis, final Long toMillis, final Integer limit) {
+            this.type = Preconditions.checkNotNull(type, "type");
+            this.id = id;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key other = (Key) o;
+            return id == other.id && type.equals(other.type) && Objects.equal(fromMillis, other.fromMillis)
+                    && Objects.equal(toMillis, other.toMillis) && Objects.equal(limit, other.limit);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(type, id, fromMillis, toMillis, limit);
+        }
+    }
+}
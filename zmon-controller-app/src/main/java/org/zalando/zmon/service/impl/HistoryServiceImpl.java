@@ -1,19 +1,27 @@
 package org.zalando.zmon.service.impl;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.primitives.Longs;
-import org.apache.http.client.fluent.Executor;
-import org.apache.http.client.fluent.Request;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.zalando.zmon.config.EventLogProperties;
+import org.zalando.zmon.config.annotation.EventLog;
 import org.zalando.zmon.domain.*;
 import org.zalando.zmon.event.Event;
 import org.zalando.zmon.event.EventlogEvent;
@@ -22,10 +30,14 @@ import org.zalando.zmon.persistence.AlertDefinitionSProcService;
 import org.zalando.zmon.persistence.CheckDefinitionSProcService;
 import org.zalando.zmon.service.HistoryService;
 import org.zalando.zmon.util.HistoryUtils;
+import org.zalando.zmon.util.MergeUtils;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 @Service
 @Transactional
@@ -33,7 +45,9 @@ public class HistoryServiceImpl implements HistoryService {
 
     private static final int DEFAULT_HISTORY_LIMIT = 50;
 
-    private final static List<Event> EMPTY_LIST = new ArrayList<>(0);
+    private static final String ALERT_EVENT_TYPES = "212993,212994,212995,212996,212997,212998,213252,213253,213504,213505,213506,213514,213515,213520";
+
+    private static final String CHECK_EVENT_TYPES = "213254,213255,213256,213257";
 
     private static final Comparator<Activity> ACTIVITY_TIME_COMPARATOR = (o1, o2) -> Longs.compare(o2.getTime(), o1.getTime());
 
@@ -48,6 +62,16 @@ public class HistoryServiceImpl implements HistoryService {
     @Autowired
     private EventLogProperties eventLogProperties;
 
+    @Autowired
+    @EventLog
+    private CloseableHttpAsyncClient eventLogClient;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Autowired
+    private HistoryCache historyCache;
+
     private ObjectMapper mapper = new ObjectMapper();
 
     public Event convert(EventlogEvent in) {
@@ -71,59 +95,111 @@ public class HistoryServiceImpl implements HistoryService {
 
     @Override
     public List<Activity> getHistory(final int alertDefinitionId, final Integer limit, final Long from, final Long to) {
-        final Integer realLimit = resolveLimit(limit, from, to);
+        final List<AlertDefinition> definitions = alertDefinitionSProc.getAlertDefinitions(null,
+                Collections.singletonList(alertDefinitionId));
 
-        final Long fromMillis = from == null ? null : from * 1000;
-        final Long toMillis = to == null ? null : to * 1000;
+        if (definitions.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-        List<Activity> history = Collections.emptyList();
+        final int checkDefinitionId = definitions.get(0).getCheckDefinitionId();
+        return historyCache.get("alert", alertDefinitionId, resolveLimit(limit, from, to), secondsToMillis(from),
+                secondsToMillis(to), (f, t, l) -> loadHistory(alertDefinitionId, checkDefinitionId, l, f, t));
+    }
 
-        final List<AlertDefinition> definitions = alertDefinitionSProc.getAlertDefinitions(null,
-                Collections.singletonList(alertDefinitionId));
+    private HistoryCache.Loaded<Activity> loadHistory(final int alertDefinitionId, final int checkDefinitionId,
+                                                      final Integer limit, final Long fromMillis,
+                                                      final Long toMillis) {
+        final String eventLogService = eventLogProperties.getUrl().toString();
+
+        String baseQuery = "?";
+        if (limit != null) {
+            baseQuery += "&limit=" + limit;
+        }
+        if (fromMillis != null) {
+            baseQuery += "&from=" + fromMillis;
+        }
+        if (toMillis != null) {
+            baseQuery += "&to=" + toMillis;
+        }
 
-        if (!definitions.isEmpty()) {
-            final Executor executor = Executor.newInstance();
+        // both queries run concurrently on the shared client
+        final Future<HttpResponse> alertResponse = fetchEvents(eventLogService + baseQuery + "&types="
+                + ALERT_EVENT_TYPES + "&key=alertId&value=" + alertDefinitionId, "alert");
+        final Future<HttpResponse> checkResponse = fetchEvents(eventLogService + baseQuery + "&types="
+                + CHECK_EVENT_TYPES + "&key=checkId&value=" + checkDefinitionId, "check");
 
-            final String eventLogService = eventLogProperties.getUrl().toString();
+        final AtomicBoolean failed = new AtomicBoolean();
+        final Iterator<Activity> activitiesByAlertId = readActivities(alertResponse, EventlogEvent.class,
+                this::convert, "alertId", failed);
+        final Iterator<Activity> activitiesByCheckId = readActivities(checkResponse, Event.class,
+                Function.identity(), "checkId", failed);
 
-            List<Event> eventsByAlertId = EMPTY_LIST;
-            List<Event> eventsByCheckId = EMPTY_LIST;
+        // eventlog returns newest first, so only the first "limit" events of each response are ever parsed
+        final List<Activity> history = MergeUtils.mergeSorted(Arrays.asList(activitiesByCheckId, activitiesByAlertId),
+                ACTIVITY_TIME_COMPARATOR, limit);
 
-            String baseQuery = "?";
-            if (limit != null) {
-                baseQuery += "&limit=" + realLimit;
-            }
-            if (fromMillis != null) {
-                baseQuery += "&from=" + fromMillis;
+        return failed.get() ? HistoryCache.Loaded.incomplete(history) : HistoryCache.Loaded.complete(history);
+    }
+
+    private Future<HttpResponse> fetchEvents(final String url, final String scope) {
+        final Timer.Context timer = metricRegistry.timer("history-service.eventlog." + scope).time();
+
+        return eventLogClient.execute(new HttpGet(url), new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(final HttpResponse result) {
+                timer.stop();
             }
-            if (toMillis != null) {
-                baseQuery += "&to=" + toMillis;
+
+            @Override
+            public void failed(final Exception ex) {
+                timer.stop();
             }
 
-            try {
-                String query = baseQuery + "&types=212993,212994,212995,212996,212997,212998,213252,213253,213504,213505,213506,213514,213515,213520&key=alertId&value=" + alertDefinitionId;
-                final String r = executor.execute(Request.Get(eventLogService + query)).returnContent().asString();
-                List<EventlogEvent> tempEvents = mapper.readValue(r, new TypeReference<List<EventlogEvent>>() {
-                });
-
-                eventsByAlertId = tempEvents.stream().map(x->convert(x)).collect(Collectors.toList());
-            } catch (IOException e) {
-                LOG.error("Failed to load events by alertId from {}", eventLogService, e);
+            @Override
+            public void cancelled() {
+                timer.stop();
             }
+        });
+    }
 
-            try {
-                String query = baseQuery + "&types=213254,213255,213256,213257&key=checkId&value=" + definitions.get(0).getCheckDefinitionId();
-                final String r = executor.execute(Request.Get(eventLogService + query)).returnContent().asString();
-                eventsByCheckId = mapper.readValue(r, new TypeReference<List<Event>>() {
-                });
-            } catch (IOException e) {
-                LOG.error("Failed to load events by checkId {}", eventLogService, e);
+    /**
+     * Lazily parses the event array of an eventlog response. Failures are logged and result in no events.
+     */
+    private <T> Iterator<Activity> readActivities(final Future<HttpResponse> response, final Class<T> type,
+                                                  final Function<T, Event> converter, final String key,
+                                                  final AtomicBoolean failed) {
+        try {
+            final HttpResponse httpResponse = response.get();
+            final int status = httpResponse.getStatusLine().getStatusCode();
+            if (status >= HttpStatus.SC_MULTIPLE_CHOICES) {
+                LOG.error("Failed to load events by {} from {}: status={}", key, eventLogProperties.getUrl(), status);
+                failed.set(true);
+                return Collections.emptyIterator();
             }
 
-            history = mergeEvents(realLimit, eventsByCheckId, eventsByAlertId);
+            final MappingIterator<T> events = mapper.readerFor(type).readValues(httpResponse.getEntity().getContent());
+            return new AbstractIterator<Activity>() {
+                @Override
+                protected Activity computeNext() {
+                    try {
+                        return events.hasNext() ? createActivity(converter.apply(events.next())) : endOfData();
+                    } catch (RuntimeException e) {
+                        LOG.error("Failed to read events by {} from {}", key, eventLogProperties.getUrl(), e);
+                        failed.set(true);
+                        return endOfData();
+                    }
+                }
+            };
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            LOG.error("Failed to load events by {} from {}", key, eventLogProperties.getUrl(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while loading events by {}", key);
         }
 
-        return history;
+        failed.set(true);
+        return Collections.emptyIterator();
     }
 
     private Activity createActivity(final Event event) {
@@ -135,40 +211,18 @@ public class HistoryServiceImpl implements HistoryService {
         return activity;
     }
 
-    private List<Activity> mergeEvents(final Integer limit, final List<Event> eventsByCheckId,
-                                       final List<Event> eventsByAlertId) {
-
-        List<Activity> history = Collections.emptyList();
-
-        final int size = (eventsByCheckId == null ? 0 : eventsByCheckId.size())
-                + (eventsByAlertId == null ? 0 : eventsByAlertId.size());
-
-        if (size > 0) {
-            final List<Activity> activities = new ArrayList<>(size);
-            if (eventsByCheckId != null && !eventsByCheckId.isEmpty()) {
-                for (final Event event : eventsByCheckId) {
-                    activities.add(createActivity(event));
-                }
-            }
-
-            if (eventsByAlertId != null && !eventsByAlertId.isEmpty()) {
-                for (final Event event : eventsByAlertId) {
-                    activities.add(createActivity(event));
-                }
-            }
-
-            Collections.sort(activities, ACTIVITY_TIME_COMPARATOR);
-            history = limit == null ? activities : activities.subList(0, limit);
-        }
-
-        return history;
-    }
-
     @Override
     public List<ActivityDiff> getCheckDefinitionHistory(final int checkDefinitionId, final Integer limit,
                                                         final Long from, final Long to) {
+        return historyCache.get("check-definition", checkDefinitionId, resolveLimit(limit, from, to),
+                secondsToMillis(from), secondsToMillis(to),
+                (f, t, l) -> HistoryCache.Loaded.complete(loadCheckDefinitionHistory(checkDefinitionId, l, f, t)));
+    }
+
+    private List<ActivityDiff> loadCheckDefinitionHistory(final int checkDefinitionId, final Integer limit,
+                                                          final Long fromMillis, final Long toMillis) {
         final List<HistoryEntry> databaseHistory = checkDefinitionSProc.getCheckDefinitionHistory(checkDefinitionId,
-                resolveLimit(limit, from, to), secondsToDate(from), secondsToDate(to));
+                limit, millisToDate(fromMillis), millisToDate(toMillis));
 
         final List<ActivityDiff> history = new LinkedList<>();
         for (final HistoryEntry entry : databaseHistory) {
@@ -181,8 +235,15 @@ public class HistoryServiceImpl implements HistoryService {
     @Override
     public List<ActivityDiff> getAlertDefinitionHistory(final int alertDefinitionId, final Integer limit,
                                                         final Long from, final Long to) {
+        return historyCache.get("alert-definition", alertDefinitionId, resolveLimit(limit, from, to),
+                secondsToMillis(from), secondsToMillis(to),
+                (f, t, l) -> HistoryCache.Loaded.complete(loadAlertDefinitionHistory(alertDefinitionId, l, f, t)));
+    }
+
+    private List<ActivityDiff> loadAlertDefinitionHistory(final int alertDefinitionId, final Integer limit,
+                                                          final Long fromMillis, final Long toMillis) {
         final List<HistoryEntry> databaseHistory = alertDefinitionSProc.getAlertDefinitionHistory(alertDefinitionId,
-                resolveLimit(limit, from, to), secondsToDate(from), secondsToDate(to));
+                limit, millisToDate(fromMillis), millisToDate(toMillis));
 
         final List<ActivityDiff> history = new LinkedList<>();
         for (final HistoryEntry entry : databaseHistory) {
@@ -196,8 +257,12 @@ public class HistoryServiceImpl implements HistoryService {
         return limit != null ? limit : from == null && to == null ? DEFAULT_HISTORY_LIMIT : null;
     }
 
-    private Date secondsToDate(final Long time) {
-        return time == null ? null : new Date(time * 1000);
+    private Long secondsToMillis(final Long time) {
+        return time == null ? null : time * 1000;
+    }
+
+    private Date millisToDate(final Long time) {
+        return time == null ? null : new Date(time);
     }
 
     private long dateToSeconds(final Date date) {
@@ -0,0 +1,160 @@
+package org.zalando.zmon.service.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zalando.zmon.config.MetricCacheProperties;
+import org.zalando.zmon.util.RendezvousHashing;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client for the metric cache. Every application is pinned to one metric cache node via the {@code metric_cache}
+ * cookie. The node is {@code hash % nodes} like in the metric cache writers, or, once the writers switched too,
+ * chosen by rendezvous hashing so that changing the number of nodes keeps most applications on their node.
+ *
+ * <p>Successful responses are kept for a few seconds per application, concurrent requests for the same application
+ * wait for a single upstream call. With the cache disabled the body is streamed through unchanged.
+ */
+@Component
+public class MetricCacheClient {
+
+    private static final String CONTENT_TYPE = "application/json";
+
+    private final MetricCacheProperties properties;
+
+    private final MetricRegistry metricRegistry;
+
+    private final CloseableHttpClient httpClient;
+
+    private final Executor executor;
+
+    private final Cache<String, CachedResponse> cache;
+
+    @Autowired
+    public MetricCacheClient(final MetricCacheProperties properties, final MetricRegistry metricRegistry) {
+        this.properties = Preconditions.checkNotNull(properties, "properties");
+        this.metricRegistry = Preconditions.checkNotNull(metricRegistry, "metricRegistry");
+
+        this.httpClient = properties.getHttpClient();
+        this.executor = Executor.newInstance(httpClient);
+        this.cache = properties.getResponseCacheTtlSeconds() <= 0 ? null
+                : CacheBuilder.newBuilder()
+                              .maximumSize(properties.getResponseCacheMaxEntries())
+                              .expireAfterWrite(properties.getResponseCacheTtlSeconds(), TimeUnit.SECONDS)
+                              .build();
+    }
+
+    public void writeCloudViewEndpoints(final String applicationId, final HttpServletResponse response)
+            throws IOException {
+        final Request request = cloudViewEndpointsRequest(applicationId);
+
+        if (cache == null) {
+            execute(request, upstream -> {
+                response.setStatus(upstream.getStatusLine().getStatusCode());
+                response.setContentType(CONTENT_TYPE);
+                final HttpEntity entity = upstream.getEntity();
+                if (entity != null) {
+                    entity.writeTo(response.getOutputStream());
+                }
+                return null;
+            });
+            return;
+        }
+
+        final CachedResponse cached = getCached(applicationId, request);
+        response.setStatus(cached.status);
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLength(cached.body.length);
+        response.getOutputStream().write(cached.body);
+    }
+
+    private CachedResponse getCached(final String applicationId, final Request request) throws IOException {
+        final boolean[] loaded = {false};
+        final CachedResponse cached;
+        try {
+            cached = cache.get(applicationId, () -> {
+                loaded[0] = true;
+                return execute(request, upstream -> new CachedResponse(upstream.getStatusLine().getStatusCode(),
+                        upstream.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(upstream.getEntity())));
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not load cloud view endpoints", e.getCause());
+        }
+
+        metricRegistry.meter("metric-cache.cloud-view-endpoints." + (loaded[0] ? "miss" : "hit")).mark();
+
+        // errors are handed to all waiting requests, but must not be served to later ones
+        if (cached.status != HttpStatus.SC_OK) {
+            cache.asMap().remove(applicationId, cached);
+        }
+
+        return cached;
+    }
+
+    private <T> T execute(final Request request, final ResponseHandler<T> handler) throws IOException {
+        final Timer.Context timer = metricRegistry.timer("metric-cache.cloud-view-endpoints").time();
+        try {
+            return executor.execute(request).handleResponse(handler);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private Request cloudViewEndpointsRequest(final String applicationId) {
+        final URI uri;
+        try {
+            uri = new URIBuilder(properties.getUrl() + "/api/v1/rest-api-metrics/kairosdb-format")
+                    .addParameter("application_id", applicationId)
+                    .build();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Invalid metric cache url: " + properties.getUrl(), e);
+        }
+
+        return Request.Get(uri).addHeader("Cookie", "metric_cache=" + selectNode(applicationId));
+    }
+
+    int selectNode(final String applicationId) {
+        if (properties.isRendezvousHashing()) {
+            return RendezvousHashing.selectNode(applicationId, properties.getNodes());
+        }
+        return Math.abs(applicationId.hashCode() % properties.getNodes());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private static final class CachedResponse {
+        private final int status;
+        private final byte[] body;
+
+        private CachedResponse(final int status, final byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
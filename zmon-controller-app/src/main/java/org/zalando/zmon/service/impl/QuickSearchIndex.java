@@ -0,0 +1,263 @@
+package org.zalando.zmon.service.impl;
+
+import org.zalando.zmon.persistence.QuickSearchResultItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory index of one quick search source. Matches like the quick search sprocs: the id starts with the
+ * search or the title contains it, ignoring case. Titles and ids are indexed by sorted posting lists of entry positions,
+ * so the index grows with the number of trigrams in all titles rather than trigrams times entries, and teams by one
+ * bitset per team. A search only looks at the entries having every trigram of the search and one of the teams.
+ */
+final class QuickSearchIndex {
+
+    /**
+     * How the teams of a search restrict the results, the same as in the quick search sprocs.
+     */
+    enum TeamFilter {
+        // teams are ignored
+        NONE,
+        // entries of any of the teams
+        ANY,
+        // entries having all of the teams, used for Grafana dashboard tags
+        ALL
+    }
+
+    static final class Entry {
+        private final String id;
+        private final String title;
+        private final String team;
+        private final Collection<String> teams;
+
+        Entry(final String id, final String title, final String team, final Collection<String> teams) {
+            this.id = id == null ? "" : id;
+            this.title = title == null ? "" : title;
+            this.team = team;
+            this.teams = teams;
+        }
+    }
+
+    private static final int GRAM = 3;
+
+    private static final int[] NONE = new int[0];
+
+    private static final Comparator<Entry> TITLE_ORDER = Comparator
+            .comparing((Entry e) -> e.title, String.CASE_INSENSITIVE_ORDER).thenComparing(e -> e.id);
+
+    private final TeamFilter teamFilter;
+
+    // sorted by title, positions are the values of all posting lists and the bits of all bitsets
+    private final Entry[] entries;
+
+    private final String[] lowerIds;
+
+    private final String[] lowerTitles;
+
+    private final Map<String, int[]> grams = new HashMap<>();
+
+    private final NavigableMap<String, int[]> ids = new TreeMap<>();
+
+    private final Map<String, BitSet> teams = new HashMap<>();
+
+    QuickSearchIndex(final List<Entry> entries, final TeamFilter teamFilter) {
+        this.teamFilter = teamFilter;
+        this.entries = entries.toArray(new Entry[entries.size()]);
+        Arrays.sort(this.entries, TITLE_ORDER);
+
+        lowerIds = new String[this.entries.length];
+        lowerTitles = new String[this.entries.length];
+
+        final Map<String, Postings> gramPostings = new HashMap<>();
+        final Map<String, Postings> idPostings = new HashMap<>();
+        for (int i = 0; i < this.entries.length; i++) {
+            final Entry entry = this.entries[i];
+            lowerIds[i] = entry.id.toLowerCase(Locale.ROOT);
+            lowerTitles[i] = entry.title.toLowerCase(Locale.ROOT);
+
+            for (int j = 0; j + GRAM <= lowerTitles[i].length(); j++) {
+                gramPostings.computeIfAbsent(lowerTitles[i].substring(j, j + GRAM), g -> new Postings()).add(i);
+            }
+            idPostings.computeIfAbsent(lowerIds[i], id -> new Postings()).add(i);
+            for (final String team : entry.teams) {
+                teams.computeIfAbsent(team, t -> new BitSet()).set(i);
+            }
+        }
+
+        gramPostings.forEach((gram, postings) -> grams.put(gram, postings.toArray()));
+        idPostings.forEach((id, postings) -> ids.put(id, postings.toArray()));
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    /**
+     * @param teams null to search all teams
+     * @return exact id first, then titles starting with the search, then by title
+     */
+    List<QuickSearchResultItem> search(final String search, final List<String> teams, final int limit) {
+        final String term = search == null ? "" : search.toLowerCase(Locale.ROOT);
+
+        final BitSet candidates = candidates(term);
+        final BitSet allowed = allowed(teams);
+        if (allowed != null) {
+            candidates.and(allowed);
+        }
+
+        final List<Integer> exact = new ArrayList<>(1);
+        final List<Integer> prefix = new ArrayList<>();
+        final List<Integer> other = new ArrayList<>();
+
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (lowerIds[i].equals(term)) {
+                exact.add(i);
+            } else if (lowerTitles[i].startsWith(term)) {
+                prefix.add(i);
+            } else if (other.size() < limit && (lowerTitles[i].contains(term) || lowerIds[i].startsWith(term))) {
+                // in title order, so later ones are never needed
+                other.add(i);
+            }
+        }
+
+        final List<QuickSearchResultItem> result = new ArrayList<>(Math.min(limit, exact.size() + prefix.size() + other.size()));
+        for (final List<Integer> rank : Arrays.asList(exact, prefix, other)) {
+            for (final int i : rank) {
+                if (result.size() >= limit) {
+                    return result;
+                }
+                result.add(item(entries[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Superset of the matching entries: every entry for short searches, otherwise entries whose title has all
+     * trigrams of the search or whose id starts with it.
+     */
+    private BitSet candidates(final String term) {
+        final BitSet result = new BitSet(entries.length);
+        if (term.length() < GRAM) {
+            result.set(0, entries.length);
+            return result;
+        }
+
+        final List<int[]> postings = new ArrayList<>(term.length() - GRAM + 1);
+        for (int j = 0; j + GRAM <= term.length(); j++) {
+            postings.add(grams.getOrDefault(term.substring(j, j + GRAM), NONE));
+        }
+        // the shortest list bounds the work of every intersection
+        postings.sort(Comparator.comparingInt(p -> p.length));
+
+        int[] matches = postings.get(0);
+        for (int k = 1; k < postings.size() && matches.length > 0; k++) {
+            matches = intersect(matches, postings.get(k));
+        }
+        for (final int i : matches) {
+            result.set(i);
+        }
+
+        for (final int[] id : ids.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+            for (final int i : id) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    static int[] intersect(final int[] a, final int[] b) {
+        final int[] result = new int[Math.min(a.length, b.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @return null if all entries are allowed
+     */
+    private BitSet allowed(final List<String> searchTeams) {
+        if (searchTeams == null || teamFilter == TeamFilter.NONE) {
+            return null;
+        }
+
+        if (teamFilter == TeamFilter.ANY) {
+            final BitSet result = new BitSet(entries.length);
+            for (final String team : searchTeams) {
+                final BitSet bits = teams.get(team);
+                if (bits != null) {
+                    result.or(bits);
+                }
+            }
+            return result;
+        }
+
+        BitSet result = null;
+        for (final String team : searchTeams) {
+            final BitSet bits = teams.getOrDefault(team, new BitSet());
+            if (result == null) {
+                result = (BitSet) bits.clone();
+            } else {
+                result.and(bits);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ascending entry positions, appended while the entries are indexed in order.
+     */
+    private static final class Postings {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(final int position) {
+            // a title can have the same trigram more than once
+            if (size > 0 && values[size - 1] == position) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static QuickSearchResultItem item(final Entry entry) {
+        final QuickSearchResultItem item = new QuickSearchResultItem();
+        item.id = entry.id;
+        item.title = entry.title;
+        item.team = entry.team;
+        return item;
+    }
+
+    static Entry entry(final QuickSearchResultItem item, final boolean withTeam) {
+        return new Entry(item.id, item.title, item.team,
+                withTeam && item.team != null ? Collections.singleton(item.team) : Collections.emptySet());
+    }
+}
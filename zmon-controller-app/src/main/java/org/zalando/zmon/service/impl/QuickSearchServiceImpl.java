@@ -0,0 +1,269 @@
+package org.zalando.zmon.service.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.zalando.zmon.config.QuickSearchProperties;
+import org.zalando.zmon.persistence.GrafanaDashboardSprocService;
+import org.zalando.zmon.persistence.QuickSearchResultItem;
+import org.zalando.zmon.persistence.QuickSearchSprocService;
+import org.zalando.zmon.service.QuickSearchService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Answers quick searches from an in-memory index of all sources, which is reloaded periodically and after local
+ * writes. Until the index is loaded, or if it is disabled, all sources are searched concurrently in the database, so
+ * a search takes as long as the slowest source instead of the sum of all. A source not answering within the timeout
+ * is returned without results.
+ */
+@Service
+public class QuickSearchServiceImpl implements QuickSearchService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QuickSearchServiceImpl.class);
+
+    private static final TypeReference<List<String>> TAGS = new TypeReference<List<String>>() {
+    };
+
+    @FunctionalInterface
+    interface Source {
+        List<QuickSearchResultItem> search(String search, List<String> teams, int limit);
+    }
+
+    private final QuickSearchProperties properties;
+
+    private final QuickSearchSprocService searchService;
+
+    private final GrafanaDashboardSprocService grafanaService;
+
+    private final ObjectMapper mapper;
+
+    private final MetricRegistry metricRegistry;
+
+    private final Map<String, Source> sources = new LinkedHashMap<>();
+
+    private final ExecutorService executor;
+
+    // replaced as a whole by every reload, empty until the first load
+    private volatile Map<String, QuickSearchIndex> indexes = Collections.emptyMap();
+
+    private volatile ScheduledExecutorService indexLoader;
+
+    // writes while a reload is queued are covered by it
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+
+    @Autowired
+    public QuickSearchServiceImpl(final QuickSearchProperties properties, final QuickSearchSprocService searchService,
+                                  final GrafanaDashboardSprocService grafanaService, final ObjectMapper mapper,
+                                  final MetricRegistry metricRegistry) {
+        this.properties = Preconditions.checkNotNull(properties, "properties");
+        this.searchService = Preconditions.checkNotNull(searchService, "searchService");
+        this.grafanaService = Preconditions.checkNotNull(grafanaService, "grafanaService");
+        this.mapper = Preconditions.checkNotNull(mapper, "mapper");
+        this.metricRegistry = Preconditions.checkNotNull(metricRegistry, "metricRegistry");
+
+        sources.put(ALERTS, searchService::quickSearchAlerts);
+        sources.put(CHECKS, searchService::quickSearchChecks);
+        sources.put(DASHBOARDS, searchService::quickSearchDashboards);
+        sources.put(GRAFANA_DASHBOARDS, searchService::quickSearchGrafanaDashboards);
+
+        this.executor = Executors.newFixedThreadPool(properties.getThreads(),
+                new ThreadFactoryBuilder().setNameFormat("quick-search-%d").setDaemon(true).build());
+
+        metricRegistry.register("quicksearch.index.size",
+                (Gauge<Integer>) () -> indexes.values().stream().mapToInt(QuickSearchIndex::size).sum());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isIndexEnabled()) {
+            return;
+        }
+
+        indexLoader = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("quick-search-index-%d").setDaemon(true).build());
+        indexLoader.scheduleWithFixedDelay(this::loadIndexes, 0, properties.getIndexRefreshSeconds(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (indexLoader != null) {
+            indexLoader.shutdownNow();
+        }
+        executor.shutdownNow();
+    }
+
+    @Override
+    public Map<String, List<QuickSearchResultItem>> search(final String search, final List<String> teams,
+                                                           final int limit) {
+        final Map<String, QuickSearchIndex> current = indexes;
+        if (current.isEmpty()) {
+            return searchDatabase(search, teams, limit);
+        }
+
+        final Timer.Context timer = metricRegistry.timer("quicksearch.index").time();
+        try {
+            final Map<String, List<QuickSearchResultItem>> results = new LinkedHashMap<>();
+            for (final Map.Entry<String, QuickSearchIndex> index : current.entrySet()) {
+                results.put(index.getKey(), index.getValue().search(search, teams, limit));
+            }
+            return results;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Override
+    public void reloadIndex() {
+        if (indexLoader == null) {
+            return;
+        }
+
+        // a reload before the commit would not see the change
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    queueReload();
+                }
+            });
+        } else {
+            queueReload();
+        }
+    }
+
+    private void queueReload() {
+        if (!reloadQueued.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            indexLoader.execute(() -> {
+                reloadQueued.set(false);
+                loadIndexes();
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            reloadQueued.set(false);
+        }
+    }
+
+    void loadIndexes() {
+        try {
+            final Timer.Context timer = metricRegistry.timer("quicksearch.index.load").time();
+
+            final Map<String, QuickSearchIndex> loaded = new LinkedHashMap<>();
+            loaded.put(ALERTS, index(searchService.quickSearchAlerts("", null, Integer.MAX_VALUE), QuickSearchIndex.TeamFilter.ANY));
+            loaded.put(CHECKS, index(searchService.quickSearchChecks("", null, Integer.MAX_VALUE), QuickSearchIndex.TeamFilter.ANY));
+            loaded.put(DASHBOARDS, index(searchService.quickSearchDashboards("", null, Integer.MAX_VALUE), QuickSearchIndex.TeamFilter.NONE));
+            loaded.put(GRAFANA_DASHBOARDS, grafanaIndex());
+            indexes = loaded;
+
+            LOG.info("Loaded quick search index: entries={} millis={}", loaded.values().stream().mapToInt(QuickSearchIndex::size).sum(),
+                    TimeUnit.NANOSECONDS.toMillis(timer.stop()));
+        } catch (RuntimeException e) {
+            // keep searching the previous index
+            metricRegistry.meter("quicksearch.index.failed").mark();
+            LOG.error("Could not load quick search index", e);
+        }
+    }
+
+    private static QuickSearchIndex index(final List<QuickSearchResultItem> items, final QuickSearchIndex.TeamFilter teamFilter) {
+        final List<QuickSearchIndex.Entry> entries = new ArrayList<>(items.size());
+        for (final QuickSearchResultItem item : items) {
+            entries.add(QuickSearchIndex.entry(item, teamFilter != QuickSearchIndex.TeamFilter.NONE));
+        }
+        return new QuickSearchIndex(entries, teamFilter);
+    }
+
+    // Grafana dashboards are filtered by their tags
+    private QuickSearchIndex grafanaIndex() {
+        final List<GrafanaDashboardSprocService.GrafanaDashboardSearchResult> dashboards =
+                grafanaService.searchGrafanaDashboards("", null, null, null);
+
+        final List<QuickSearchIndex.Entry> entries = new ArrayList<>(dashboards.size());
+        for (final GrafanaDashboardSprocService.GrafanaDashboardSearchResult dashboard : dashboards) {
+            List<String> tags = Collections.emptyList();
+            try {
+                if (dashboard.tags != null) {
+                    tags = mapper.readValue(dashboard.tags, TAGS);
+                }
+            } catch (IOException e) {
+                LOG.warn("Invalid Grafana dashboard tags: id={}", dashboard.id);
+            }
+            entries.add(new QuickSearchIndex.Entry(dashboard.id, dashboard.title, "", tags));
+        }
+        return new QuickSearchIndex(entries, QuickSearchIndex.TeamFilter.ALL);
+    }
+
+    private Map<String, List<QuickSearchResultItem>> searchDatabase(final String search, final List<String> teams,
+                                                                    final int limit) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMillis());
+
+        final Map<String, Future<List<QuickSearchResultItem>>> futures = new LinkedHashMap<>();
+        for (final Map.Entry<String, Source> source : sources.entrySet()) {
+            futures.put(source.getKey(), executor.submit(() -> timed(source.getKey(), source.getValue(), search, teams, limit)));
+        }
+
+        final Map<String, List<QuickSearchResultItem>> results = new LinkedHashMap<>();
+        for (final Map.Entry<String, Future<List<QuickSearchResultItem>>> future : futures.entrySet()) {
+            results.put(future.getKey(), get(future.getKey(), future.getValue(), deadline));
+        }
+        return results;
+    }
+
+    private List<QuickSearchResultItem> timed(final String name, final Source source, final String search,
+                                              final List<String> teams, final int limit) {
+        final Timer.Context timer = metricRegistry.timer("quicksearch." + name).time();
+        try {
+            return source.search(search, teams, limit);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private List<QuickSearchResultItem> get(final String name, final Future<List<QuickSearchResultItem>> future,
+                                            final long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // a running query keeps its connection until it is done, a queued one is not started any more
+            future.cancel(false);
+            metricRegistry.meter("quicksearch.timeout." + name).mark();
+            LOG.warn("Quick search timed out: source={} timeoutMillis={}", name, properties.getTimeoutMillis());
+        } catch (ExecutionException e) {
+            metricRegistry.meter("quicksearch.failed." + name).mark();
+            LOG.error("Quick search failed: source={}", name, e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+        }
+        return Collections.emptyList();
+    }
+}
@@ -6,18 +6,17 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
-import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.entity.ContentType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.zalando.zmon.config.SchedulerProperties;
 import org.zalando.zmon.domain.TrialRunRequest;
 import org.zalando.zmon.domain.TrialRunResults;
 import org.zalando.zmon.event.ZMonEventType;
 import org.zalando.zmon.exception.SerializationException;
 import org.zalando.zmon.redis.RedisPattern;
 import org.zalando.zmon.service.TrialRunService;
+import org.zalando.zmon.service.impl.scheduler.SchedulerClient;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -37,7 +36,7 @@ public class TrialRunServiceImpl implements TrialRunService {
     private JedisPool redisPool;
 
     @Autowired
-    private SchedulerProperties schedulerProperties;
+    private SchedulerClient schedulerClient;
 
     @Autowired
     private ObjectMapper mapper;
@@ -54,12 +53,10 @@ public class TrialRunServiceImpl implements TrialRunService {
         final String id = UUID.randomUUID().toString();
         request.setId(id);
 
-        final Executor executor = Executor.newInstance(schedulerProperties.getHttpClient());
+        final String url = schedulerClient.url(SCHEDULER_TRIAL_RUN_PATH);
 
-        final String url = schedulerProperties.getUrl().toString() + SCHEDULER_TRIAL_RUN_PATH;
-
-        executor.execute(Request.Post(url).bodyString(mapper.writeValueAsString(request),
-                ContentType.APPLICATION_JSON)).returnContent().asString();
+        schedulerClient.execute("trial-run", Request.Post(url).bodyString(mapper.writeValueAsString(request),
+                ContentType.APPLICATION_JSON));
 
         eventLog.log(ZMonEventType.TRIAL_RUN_SCHEDULED, request.getCheckCommand(), request.getAlertCondition(),
             request.getEntities(), request.getPeriod(), request.getCreatedBy());
@@ -9,8 +9,6 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.ContentType;
@@ -24,7 +22,6 @@ import org.zalando.zmon.api.domain.CheckChartResult;
 import org.zalando.zmon.api.domain.EntityFilterRequest;
 import org.zalando.zmon.api.domain.EntityFilterResponse;
 import org.zalando.zmon.config.ControllerProperties;
-import org.zalando.zmon.config.SchedulerProperties;
 import org.zalando.zmon.diff.CheckDefinitionsDiffFactory;
 import org.zalando.zmon.domain.*;
 import org.zalando.zmon.event.ZMonEventType;
@@ -35,7 +32,9 @@ import org.zalando.zmon.persistence.CheckDefinitionSProcService;
 import org.zalando.zmon.persistence.ZMonSProcService;
 import org.zalando.zmon.redis.RedisPattern;
 import org.zalando.zmon.redis.ResponseHolder;
+import org.zalando.zmon.service.QuickSearchService;
 import org.zalando.zmon.service.ZMonService;
+import org.zalando.zmon.service.impl.scheduler.SchedulerClient;
 import org.zalando.zmon.util.DBUtil;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
@@ -95,6 +94,9 @@ public class ZMonServiceImpl implements ZMonService {
     @Autowired
     private ControllerProperties config;
 
+    @Autowired
+    private QuickSearchService quickSearchService;
+
     @Override
     public ExecutionStatus getStatus() {
 
@@ -207,7 +209,11 @@ public class ZMonServiceImpl implements ZMonService {
 
         checkDefinition.setLastModifiedBy(userName);
 
-        return checkDefinitionSProc.createOrUpdateCheckDefinition(checkDefinition, userName, teams, isAdmin);
+        final CheckDefinitionImportResult result = checkDefinitionSProc.createOrUpdateCheckDefinition(checkDefinition,
+                userName, teams, isAdmin);
+        quickSearchService.reloadIndex();
+
+        return result;
     }
 
     @Override
@@ -228,6 +234,7 @@ public class ZMonServiceImpl implements ZMonService {
         if (checkDefinition != null) {
             eventLog.log(ZMonEventType.CHECK_DEFINITION_DELETED, checkDefinition.getId(), checkDefinition.getEntities(),
                     checkDefinition.getCommand(), userName);
+            quickSearchService.reloadIndex();
         }
     }
 
@@ -242,6 +249,7 @@ public class ZMonServiceImpl implements ZMonService {
             for (final CheckDefinition checkDefinition : deletedChecks) {
                 checkIds.add(checkDefinition.getId());
             }
+            quickSearchService.reloadIndex();
         }
 
         log.info("Detached check definitions: {}", checkIds);
@@ -500,19 +508,23 @@ public class ZMonServiceImpl implements ZMonService {
 
     @Override
     public List<Integer> deleteUnusedCheckDef(int id, Collection<String> teams) {
-        return checkDefinitionSProc.deleteUnusedCheckDefinition(id, Lists.newArrayList(teams));
+        final List<Integer> deleted = checkDefinitionSProc.deleteUnusedCheckDefinition(id, Lists.newArrayList(teams));
+        if (!deleted.isEmpty()) {
+            quickSearchService.reloadIndex();
+        }
+
+        return deleted;
     }
 
     @Autowired
-    SchedulerProperties schedulerProperties;
+    SchedulerClient schedulerClient;
 
     @Override
     public JsonNode getAlertCoverage(final JsonNode filter) {
-        final Executor executor = Executor.newInstance(schedulerProperties.getHttpClient());
-        final String schedulerUrl = schedulerProperties.getUrl() + "/api/v1/alert-coverage";
+        final String schedulerUrl = schedulerClient.url("/api/v1/alert-coverage");
 
         try {
-            final String r = executor.execute(Request.Post(schedulerUrl).bodyString(mapper.writeValueAsString(filter), ContentType.APPLICATION_JSON)).returnContent().asString();
+            final String r = schedulerClient.execute("alert-coverage", Request.Post(schedulerUrl).bodyString(mapper.writeValueAsString(filter), ContentType.APPLICATION_JSON));
             final JsonNode node = mapper.readTree(r);
             return node;
         } catch (IOException ex) {
@@ -523,20 +535,19 @@ public class ZMonServiceImpl implements ZMonService {
 
     @Override
     public EntityFilterResponse getEntitiesMatchingFilters(EntityFilterRequest request) {
-        final Executor executor = Executor.newInstance(schedulerProperties.getHttpClient());
-        final String schedulerUrl = schedulerProperties.getUrl() + "/api/v2/entities";
+        final String schedulerUrl = schedulerClient.url("/api/v2/entities");
 
         try {
             URI uri = new URIBuilder(schedulerUrl).addParameter("include_filters", mapper.writeValueAsString(request.includeFilters))
                     .addParameter("exclude_filters", mapper.writeValueAsString(request.excludeFilters))
                     .addParameter("local", "" + request.local).build();
 
-            HttpResponse r = executor.execute(Request.Head(uri)).returnResponse();
-            int count = Integer.parseInt(r.getHeaders("entity-count")[0].getValue());
+            int count = schedulerClient.execute("entities-count", Request.Head(uri),
+                    r -> Integer.parseInt(r.getHeaders("entity-count")[0].getValue()));
 
             if(count <= 25) {
                 EntityFilterResponse response = new EntityFilterResponse(count);
-                final String entitiesString = executor.execute(Request.Get(uri)).returnContent().asString();
+                final String entitiesString = schedulerClient.execute("entities", Request.Get(uri));
                 final JsonNode node = mapper.readTree(entitiesString);
                 final ArrayNode arrayNode = (ArrayNode) node;
 
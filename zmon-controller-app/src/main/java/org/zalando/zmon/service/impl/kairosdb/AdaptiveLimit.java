@@ -0,0 +1,44 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Concurrency limit adjusted by additive increase / multiplicative decrease on observed latency: every query faster
+ * than the target raises the limit by about one per limit's worth of queries, every slower query cuts it by a fifth.
+ */
+final class AdaptiveLimit {
+
+    private static final double BACKOFF = 0.8;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long targetLatencyMillis;
+
+    private double limit;
+
+    AdaptiveLimit(final int minLimit, final int maxLimit, final long targetLatencyMillis) {
+        Preconditions.checkArgument(minLimit > 0 && minLimit <= maxLimit, "invalid limits: %s..%s", minLimit, maxLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.limit = maxLimit;
+    }
+
+    synchronized int get() {
+        return (int) limit;
+    }
+
+    synchronized void onSample(final long latencyMillis) {
+        if (targetLatencyMillis <= 0) {
+            return;
+        }
+
+        if (latencyMillis > targetLatencyMillis) {
+            limit = Math.max(minLimit, limit * BACKOFF);
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Response body of KairosDB as it came over the wire, either plain or gzip compressed. It is only decompressed if a
+ * client cannot take it compressed or the content is needed.
+ */
+public final class EncodedBody {
+
+    public static final String GZIP = "gzip";
+
+    private final byte[] bytes;
+
+    private final boolean gzip;
+
+    public EncodedBody(final byte[] bytes, final boolean gzip) {
+        this.bytes = Preconditions.checkNotNull(bytes, "bytes");
+        this.gzip = gzip;
+    }
+
+    public static EncodedBody of(final ResponseEntity<byte[]> response) {
+        final byte[] body = response.getBody() == null ? new byte[0] : response.getBody();
+        return new EncodedBody(body, GZIP.equalsIgnoreCase(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)));
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public int size() {
+        return bytes.length;
+    }
+
+    public InputStream decodedStream() throws IOException {
+        final InputStream in = new ByteArrayInputStream(bytes);
+        return gzip ? new GZIPInputStream(in) : in;
+    }
+
+    public byte[] decoded() throws IOException {
+        if (!gzip) {
+            return bytes;
+        }
+
+        try (InputStream in = decodedStream()) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    public static boolean acceptsGzip(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (final String coding : acceptEncoding.split(",")) {
+            final String[] parts = coding.trim().split(";");
+            if (GZIP.equalsIgnoreCase(parts[0].trim())) {
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,225 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Preconditions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Merges the responses of several KairosDB backends that were sent the same request. Failed backends are passed as
+ * {@code null} and skipped.
+ */
+public final class KairosDBFederation {
+
+    /**
+     * Tag added to every series of a federated datapoint query, naming the KairosDB it came from.
+     */
+    public static final String SOURCE_TAG = "kairosdb";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    private KairosDBFederation() { }
+
+    /**
+     * Concatenates the series of every query of all backends and tags each series with its backend. The responses
+     * are read incrementally: only one series at a time is materialized, never a whole response tree.
+     */
+    public static EncodedBody mergeQueries(final List<String> sources, final List<EncodedBody> bodies)
+            throws IOException {
+        Preconditions.checkArgument(sources.size() == bodies.size(), "sources and bodies differ in size");
+
+        final List<String> names = new ArrayList<>();
+        final List<JsonParser> parsers = new ArrayList<>();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            for (int i = 0; i < bodies.size(); i++) {
+                if (bodies.get(i) != null) {
+                    final JsonParser parser = FACTORY.createParser(bodies.get(i).decodedStream());
+                    if (moveToQueries(parser)) {
+                        names.add(sources.get(i));
+                        parsers.add(parser);
+                    } else {
+                        parser.close();
+                    }
+                }
+            }
+
+            try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("queries");
+
+                while (true) {
+                    final List<Integer> current = new ArrayList<>(parsers.size());
+                    for (int i = 0; i < parsers.size(); i++) {
+                        if (!parsers.get(i).isClosed() && parsers.get(i).nextToken() == JsonToken.START_OBJECT) {
+                            current.add(i);
+                        } else {
+                            parsers.get(i).close();
+                        }
+                    }
+
+                    if (current.isEmpty()) {
+                        break;
+                    }
+
+                    long sampleSize = 0;
+                    generator.writeStartObject();
+                    generator.writeArrayFieldStart("results");
+                    for (final int i : current) {
+                        sampleSize += copyQuery(parsers.get(i), names.get(i), generator);
+                    }
+                    generator.writeEndArray();
+                    generator.writeNumberField("sample_size", sampleSize);
+                    generator.writeEndObject();
+                }
+
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        } finally {
+            for (final JsonParser parser : parsers) {
+                parser.close();
+            }
+        }
+
+        return new EncodedBody(out.toByteArray(), false);
+    }
+
+    /**
+     * Positions the parser inside the {@code queries} array.
+     */
+    private static boolean moveToQueries(final JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if ("queries".equals(field) && value == JsonToken.START_ARRAY) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+
+        return false;
+    }
+
+    /**
+     * Copies the series of the query object the parser is positioned at.
+     *
+     * @return the sample size of the query
+     */
+    private static long copyQuery(final JsonParser parser, final String source, final JsonGenerator generator)
+            throws IOException {
+        long sampleSize = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+
+            if ("sample_size".equals(field)) {
+                sampleSize = parser.getValueAsLong();
+            } else if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    final ObjectNode series = MAPPER.readTree(parser);
+                    series.with("tags").putArray(SOURCE_TAG).add(source);
+                    generator.writeTree(series);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return sampleSize;
+    }
+
+    /**
+     * Unites the metric names of all backends.
+     */
+    public static EncodedBody mergeMetricNames(final List<EncodedBody> bodies) throws IOException {
+        final Set<String> names = new TreeSet<>();
+        for (final JsonNode response : parse(bodies)) {
+            response.path("results").forEach(name -> names.add(name.asText()));
+        }
+
+        final ObjectNode merged = MAPPER.createObjectNode();
+        final ArrayNode results = merged.putArray("results");
+        names.forEach(results::add);
+
+        return new EncodedBody(MAPPER.writeValueAsBytes(merged), false);
+    }
+
+    /**
+     * Unites the tag names and values per metric of all backends.
+     */
+    public static EncodedBody mergeTags(final List<EncodedBody> bodies) throws IOException {
+        final List<Map<String, Map<String, Set<String>>>> queries = new ArrayList<>();
+
+        for (final JsonNode response : parse(bodies)) {
+            int i = 0;
+            for (final JsonNode query : response.path("queries")) {
+                if (queries.size() <= i) {
+                    queries.add(new LinkedHashMap<>());
+                }
+
+                for (final JsonNode result : query.path("results")) {
+                    final Map<String, Set<String>> tags = queries.get(i)
+                            .computeIfAbsent(result.path("name").asText(), name -> new LinkedHashMap<>());
+                    for (final Iterator<Map.Entry<String, JsonNode>> it = result.path("tags").fields(); it.hasNext(); ) {
+                        final Map.Entry<String, JsonNode> tag = it.next();
+                        final Set<String> values = tags.computeIfAbsent(tag.getKey(), key -> new TreeSet<>());
+                        tag.getValue().forEach(v -> values.add(v.asText()));
+                    }
+                }
+                i++;
+            }
+        }
+
+        final ObjectNode merged = MAPPER.createObjectNode();
+        final ArrayNode mergedQueries = merged.putArray("queries");
+        for (final Map<String, Map<String, Set<String>>> query : queries) {
+            final ArrayNode results = mergedQueries.addObject().putArray("results");
+            for (final Map.Entry<String, Map<String, Set<String>>> metric : query.entrySet()) {
+                final ObjectNode result = results.addObject();
+                result.put("name", metric.getKey());
+                final ObjectNode tags = result.putObject("tags");
+                for (final Map.Entry<String, Set<String>> tag : metric.getValue().entrySet()) {
+                    final ArrayNode values = tags.putArray(tag.getKey());
+                    tag.getValue().forEach(values::add);
+                }
+            }
+        }
+
+        return new EncodedBody(MAPPER.writeValueAsBytes(merged), false);
+    }
+
+    private static List<JsonNode> parse(final List<EncodedBody> bodies) throws IOException {
+        final List<JsonNode> result = new ArrayList<>(bodies.size());
+        for (final EncodedBody body : bodies) {
+            if (body != null) {
+                try (InputStream in = body.decodedStream()) {
+                    result.add(MAPPER.readTree(in));
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,190 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+import org.springframework.web.client.HttpClientErrorException;
+import org.zalando.zmon.config.KairosDBProperties;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends a query to one replica of a KairosDB and, if it did not answer within the p95 latency of that KairosDB, a
+ * second time to another replica. Whichever answers first wins, the other request is cancelled.
+ * <p>
+ * Metrics per KairosDB: {@code kairosdb.hedge.requests.<name>}, {@code kairosdb.hedge.sent.<name>} and
+ * {@code kairosdb.hedge.won.<name>} give the hedge rate and the win rate of hedged requests.
+ */
+@Component
+public class KairosDBHedging {
+
+    // below this many recorded latencies the p95 is not trusted yet
+    private static final int MIN_SAMPLES = 20;
+
+    private final KairosDBProperties properties;
+
+    private final MetricRegistry metricRegistry;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Autowired
+    public KairosDBHedging(final KairosDBProperties properties, final MetricRegistry metricRegistry) {
+        this.properties = Preconditions.checkNotNull(properties, "properties");
+        this.metricRegistry = Preconditions.checkNotNull(metricRegistry, "metricRegistry");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("kairosdb-hedging-%d").setDaemon(true).build());
+    }
+
+    /**
+     * @param kairosDB name of the KairosDB the replicas belong to
+     * @param replicas sends the request to one replica each
+     */
+    public <T> ListenableFuture<T> execute(final String kairosDB, final List<Supplier<ListenableFuture<T>>> replicas) {
+        Preconditions.checkArgument(!replicas.isEmpty(), "no replicas");
+
+        final Timer latency = metricRegistry.timer("kairosdb.query." + kairosDB);
+        if (replicas.size() == 1 || !properties.isHedgeEnabled()) {
+            return new Hedge<>(kairosDB, latency, replicas.get(0), null).start();
+        }
+
+        // spread the first requests over all replicas
+        final int first = Math.floorMod(next.getAndIncrement(), replicas.size());
+        final Hedge<T> hedge = new Hedge<>(kairosDB, latency, replicas.get(first),
+                replicas.get((first + 1) % replicas.size()));
+        metricRegistry.meter("kairosdb.hedge.requests." + kairosDB).mark();
+
+        final ListenableFuture<T> result = hedge.start();
+        scheduler.schedule(hedge::hedge, delayMillis(latency), TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    long delayMillis(final Timer latency) {
+        if (latency.getCount() < MIN_SAMPLES) {
+            return properties.getHedgeInitialDelayMillis();
+        }
+
+        final long p95 = TimeUnit.NANOSECONDS.toMillis((long) latency.getSnapshot().get95thPercentile());
+        return Math.max(properties.getHedgeMinDelayMillis(), p95);
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private final class Hedge<T> {
+        private final String kairosDB;
+        private final Timer latency;
+        private final Supplier<ListenableFuture<T>> primary;
+        private final Supplier<ListenableFuture<T>> secondary;
+        private final SettableListenableFuture<T> result = new SettableListenableFuture<>();
+        private final List<ListenableFuture<T>> requests = new ArrayList<>(2);
+        private boolean hedged;
+        // of the requests that were sent, a replica failing to send does not count
+        private int failures;
+
+        private Hedge(final String kairosDB, final Timer latency, final Supplier<ListenableFuture<T>> primary,
+                      final Supplier<ListenableFuture<T>> secondary) {
+            this.kairosDB = kairosDB;
+            this.latency = latency;
+            this.primary = primary;
+            this.secondary = secondary;
+        }
+
+        private ListenableFuture<T> start() {
+            send(primary, false);
+            return result;
+        }
+
+        private synchronized void hedge() {
+            if (hedged || secondary == null || result.isDone()) {
+                return;
+            }
+
+            hedged = true;
+            metricRegistry.meter("kairosdb.hedge.sent." + kairosDB).mark();
+            send(secondary, true);
+        }
+
+        private synchronized void send(final Supplier<ListenableFuture<T>> replica, final boolean isHedge) {
+            final Timer.Context timer = latency.time();
+            final ListenableFuture<T> request;
+            try {
+                request = replica.get();
+            } catch (RuntimeException e) {
+                onFailure(e, false);
+                return;
+            }
+
+            requests.add(request);
+            request.addCallback(new ListenableFutureCallback<T>() {
+                @Override
+                public void onSuccess(final T value) {
+                    timer.stop();
+                    onResult(value, isHedge);
+                }
+
+                @Override
+                public void onFailure(final Throwable ex) {
+                    if (!(ex instanceof CancellationException)) {
+                        Hedge.this.onFailure(ex, true);
+                    }
+                }
+            });
+        }
+
+        private synchronized void onResult(final T value, final boolean isHedge) {
+            if (result.set(value)) {
+                if (isHedge) {
+                    metricRegistry.meter("kairosdb.hedge.won." + kairosDB).mark();
+                }
+                cancelRequests();
+            }
+        }
+
+        /**
+         * @param sent false if the replica could not even be asked, then only the requests in flight can still answer
+         */
+        private synchronized void onFailure(final Throwable ex, final boolean sent) {
+            if (sent) {
+                failures++;
+            }
+
+            // a bad query fails on every replica, otherwise the other replica is asked right away
+            if (!(ex instanceof HttpClientErrorException) && !hedged && secondary != null) {
+                hedge();
+                return;
+            }
+
+            if (failures >= requests.size() || ex instanceof HttpClientErrorException) {
+                if (result.setException(ex)) {
+                    cancelRequests();
+                }
+            }
+        }
+
+        private void cancelRequests() {
+            for (final ListenableFuture<T> request : requests) {
+                if (!request.isDone()) {
+                    request.cancel(true);
+                }
+            }
+        }
+    }
+}
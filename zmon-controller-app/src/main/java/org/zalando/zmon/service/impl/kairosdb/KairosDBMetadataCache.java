@@ -0,0 +1,59 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.zalando.zmon.config.KairosDBCacheProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Caches the slowly changing metadata Grafana asks for on every editor autocomplete and template variable refresh:
+ * metric names per KairosDB and tag queries per (KairosDB, query). Stale values are served while they are refreshed.
+ */
+@Component
+public class KairosDBMetadataCache {
+
+    private final KairosDBCacheProperties properties;
+
+    private final RefreshAheadCache<String> metricNames;
+
+    private final RefreshAheadCache<KairosDBQueryCache.Key> tags;
+
+    @Autowired
+    public KairosDBMetadataCache(final KairosDBCacheProperties properties, final MetricRegistry metricRegistry) {
+        this(properties, metricRegistry, System::currentTimeMillis);
+    }
+
+    KairosDBMetadataCache(final KairosDBCacheProperties properties, final MetricRegistry metricRegistry,
+                          final LongSupplier clock) {
+        this.properties = Preconditions.checkNotNull(properties, "properties");
+
+        final long maxBytes = properties.getMetadataMaxBytes() / 2;
+        this.metricNames = new RefreshAheadCache<>("kairosdb.metricnames.cache",
+                TimeUnit.SECONDS.toMillis(properties.getMetricNamesRefreshSeconds()),
+                TimeUnit.SECONDS.toMillis(properties.getMetricNamesExpireSeconds()), maxBytes, metricRegistry, clock);
+        this.tags = new RefreshAheadCache<>("kairosdb.tags.cache",
+                TimeUnit.SECONDS.toMillis(properties.getTagsRefreshSeconds()),
+                TimeUnit.SECONDS.toMillis(properties.getTagsExpireSeconds()), maxBytes, metricRegistry, clock);
+    }
+
+    public ListenableFuture<EncodedBody> getMetricNames(final String kairosDB,
+                                                        final Supplier<ListenableFuture<EncodedBody>> loader) {
+        return properties.isEnabled() ? metricNames.get(kairosDB, loader) : loader.get();
+    }
+
+    public ListenableFuture<EncodedBody> getTags(final KairosDBQueryCache.Key key,
+                                                 final Supplier<ListenableFuture<EncodedBody>> loader) {
+        return properties.isEnabled() ? tags.get(key, loader) : loader.get();
+    }
+
+    public void invalidateAll() {
+        metricNames.invalidateAll();
+        tags.invalidateAll();
+    }
+}
@@ -0,0 +1,13 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+/**
+ * The query was not sent to KairosDB because too many queries (of the check or in total) are in flight.
+ */
+public class KairosDBOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public KairosDBOverloadedException(final String message) {
+        super(message);
+    }
+}
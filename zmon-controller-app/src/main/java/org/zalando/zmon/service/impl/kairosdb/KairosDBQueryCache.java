@@ -0,0 +1,176 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zalando.zmon.config.KairosDBCacheProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches KairosDB datapoint query responses per (KairosDB, query). Queries are compared on their canonical JSON, so
+ * the order of object fields does not matter. The cache is bounded by the size of the cached response bodies, which
+ * are kept compressed if KairosDB sent them compressed.
+ *
+ * <p>Queries over a time range that ended before the settle window cannot change anymore and are kept for the long
+ * TTL, every other query (relative, or ending "now") only for the short TTL.
+ */
+@Component
+public class KairosDBQueryCache {
+
+    private final KairosDBCacheProperties properties;
+
+    private final MetricRegistry metricRegistry;
+
+    private final LongSupplier clock;
+
+    private final Cache<Key, Entry> cache;
+
+    @Autowired
+    public KairosDBQueryCache(final KairosDBCacheProperties properties, final MetricRegistry metricRegistry) {
+        this(properties, metricRegistry, System::currentTimeMillis);
+    }
+
+    KairosDBQueryCache(final KairosDBCacheProperties properties, final MetricRegistry metricRegistry,
+                       final LongSupplier clock) {
+        this.properties = Preconditions.checkNotNull(properties, "properties");
+        this.metricRegistry = Preconditions.checkNotNull(metricRegistry, "metricRegistry");
+        this.clock = Preconditions.checkNotNull(clock, "clock");
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumWeight(properties.getMaxBytes())
+                                 .weigher((Key key, Entry entry) -> key.query.length() + entry.body.size())
+                                 .expireAfterWrite(Math.max(properties.getShortTtlSeconds(),
+                                         properties.getLongTtlSeconds()), TimeUnit.SECONDS)
+                                 .build();
+    }
+
+    public static Key key(final String kairosDB, final JsonNode query) {
+        final StringBuilder canonical = new StringBuilder();
+        appendCanonical(query, canonical);
+        return new Key(kairosDB, canonical.toString());
+    }
+
+    /**
+     * @return the cached response body or {@code null}
+     */
+    public EncodedBody get(final Key key, final String checkId) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+
+        final Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.expiresAt > clock.getAsLong()) {
+            metricRegistry.meter("kairosdb.check.cache.hit." + checkId).mark();
+            return entry.body;
+        }
+
+        if (entry != null) {
+            cache.asMap().remove(key, entry);
+        }
+
+        metricRegistry.meter("kairosdb.check.cache.miss." + checkId).mark();
+        return null;
+    }
+
+    public void put(final Key key, final JsonNode query, final EncodedBody body) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        cache.put(key, new Entry(body, clock.getAsLong() + TimeUnit.SECONDS.toMillis(ttlSeconds(query))));
+    }
+
+    int ttlSeconds(final JsonNode query) {
+        final JsonNode end = query.get("end_absolute");
+        if (query.has("start_relative") || end == null || !end.canConvertToLong()) {
+            return properties.getShortTtlSeconds();
+        }
+
+        final long settled = clock.getAsLong() - TimeUnit.SECONDS.toMillis(properties.getSettleSeconds());
+        return end.asLong() <= settled ? properties.getLongTtlSeconds() : properties.getShortTtlSeconds();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static void appendCanonical(final JsonNode node, final StringBuilder out) {
+        if (node.isObject()) {
+            final List<String> names = new ArrayList<>(node.size());
+            for (final Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
+                names.add(it.next());
+            }
+            Collections.sort(names);
+
+            out.append('{');
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append('"').append(JsonStringEncoder.getInstance().quoteAsString(names.get(i))).append("\":");
+                appendCanonical(node.get(names.get(i)), out);
+            }
+            out.append('}');
+        } else if (node.isArray()) {
+            out.append('[');
+            for (int i = 0; i < node.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendCanonical(node.get(i), out);
+            }
+            out.append(']');
+        } else {
+            out.append(node.toString());
+        }
+    }
+
+    public static final class Key {
+        private final String kairosDB;
+        private final String query;
+
+        private Key(final String kairosDB, final String query) {
+            this.kairosDB = Preconditions.checkNotNull(kairosDB, "kairosDB");
+            this.query = Preconditions.checkNotNull(query, "query");
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key other = (Key) o;
+            return kairosDB.equals(other.kairosDB) && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kairosDB.hashCode() + query.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        private final EncodedBody body;
+        private final long expiresAt;
+
+        private Entry(final EncodedBody body, final long expiresAt) {
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
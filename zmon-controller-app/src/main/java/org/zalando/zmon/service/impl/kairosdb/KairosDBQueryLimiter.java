@@ -0,0 +1,126 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zalando.zmon.config.KairosDBProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds the number of queries in flight to KairosDB, in total and per check. The per check limit adapts to the
+ * latency of the check's queries, so a slow high cardinality check gets fewer concurrent queries. Queries over a
+ * limit are rejected right away instead of being queued.
+ */
+@Component
+public class KairosDBQueryLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KairosDBQueryLimiter.class);
+
+    private final KairosDBProperties properties;
+
+    private final MetricRegistry metricRegistry;
+
+    private final LongSupplier clock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LoadingCache<String, CheckState> checks;
+
+    @Autowired
+    public KairosDBQueryLimiter(final KairosDBProperties properties, final MetricRegistry metricRegistry) {
+        this(properties, metricRegistry, System::currentTimeMillis);
+    }
+
+    KairosDBQueryLimiter(final KairosDBProperties properties, final MetricRegistry metricRegistry,
+                         final LongSupplier clock) {
+        this.properties = Preconditions.checkNotNull(properties, "properties");
+        this.metricRegistry = Preconditions.checkNotNull(metricRegistry, "metricRegistry");
+        this.clock = Preconditions.checkNotNull(clock, "clock");
+
+        // checks that are not queried anymore are forgotten, permits keep a reference to their state
+        this.checks = CacheBuilder.newBuilder()
+                                  .expireAfterAccess(1, TimeUnit.HOURS)
+                                  .build(new CacheLoader<String, CheckState>() {
+                                      @Override
+                                      public CheckState load(final String checkId) {
+                                          return new CheckState(new AdaptiveLimit(
+                                                  properties.getMinInFlightQueriesPerCheck(),
+                                                  properties.getMaxInFlightQueriesPerCheck(),
+                                                  properties.getTargetLatencyMillis()));
+                                      }
+                                  });
+    }
+
+    /**
+     * @return a permit that must be released once the query completed
+     * @throws KairosDBOverloadedException if a limit is reached
+     */
+    public Permit acquire(final String checkId) {
+        if (inFlight.incrementAndGet() > properties.getMaxInFlightQueries()) {
+            inFlight.decrementAndGet();
+            throw shed(checkId, "too many queries in flight");
+        }
+
+        final CheckState check = checks.getUnchecked(checkId);
+        if (check.inFlight.incrementAndGet() > check.limit.get()) {
+            check.inFlight.decrementAndGet();
+            inFlight.decrementAndGet();
+            throw shed(checkId, "too many queries of check in flight");
+        }
+
+        return new Permit(check, clock.getAsLong());
+    }
+
+    private KairosDBOverloadedException shed(final String checkId, final String reason) {
+        metricRegistry.meter("kairosdb.shed").mark();
+        metricRegistry.meter("kairosdb.check.shed." + checkId).mark();
+        LOG.warn("Rejected KairosDB query: checkId={} reason={}", checkId, reason);
+        return new KairosDBOverloadedException("KairosDB overloaded: " + reason);
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int limit(final String checkId) {
+        return checks.getUnchecked(checkId).limit.get();
+    }
+
+    public final class Permit {
+        private final CheckState check;
+        private final long startedAt;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(final CheckState check, final long startedAt) {
+            this.check = check;
+            this.startedAt = startedAt;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                check.limit.onSample(clock.getAsLong() - startedAt);
+                check.inFlight.decrementAndGet();
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class CheckState {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AdaptiveLimit limit;
+
+        private CheckState(final AdaptiveLimit limit) {
+            this.limit = limit;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zalando.zmon.config.KairosDBProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites long range datapoint queries of check metrics so KairosDB does not scan every raw datapoint: the metric
+ * is replaced by the configured rollup metric for the range, and metrics without aggregators get a downsampling
+ * aggregator limiting the number of returned points. The absolute start of downsampled queries is moved back to the
+ * sampling grid.
+ */
+@Component
+public class KairosDBQueryRewriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KairosDBQueryRewriter.class);
+
+    // only raw check metrics are rewritten, never a rollup metric itself
+    private static final Pattern CHECK_METRIC = Pattern.compile("zmon\\.check\\.\\d+");
+
+    private static final long MONTH_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    private static final long YEAR_MILLIS = TimeUnit.DAYS.toMillis(365);
+
+    private static final long DAY_MINUTES = TimeUnit.DAYS.toMinutes(1);
+
+    private final KairosDBProperties properties;
+
+    private final MetricRegistry metricRegistry;
+
+    private final LongSupplier clock;
+
+    @Autowired
+    public KairosDBQueryRewriter(final KairosDBProperties properties, final MetricRegistry metricRegistry) {
+        this(properties, metricRegistry, System::currentTimeMillis);
+    }
+
+    KairosDBQueryRewriter(final KairosDBProperties properties, final MetricRegistry metricRegistry,
+                          final LongSupplier clock) {
+        this.properties = Preconditions.checkNotNull(properties, "properties");
+        this.metricRegistry = Preconditions.checkNotNull(metricRegistry, "metricRegistry");
+        this.clock = Preconditions.checkNotNull(clock, "clock");
+    }
+
+    /**
+     * Rewrites the query in place.
+     *
+     * @return true if the query was changed
+     */
+    public boolean rewrite(final JsonNode query, final String checkId) {
+        if (!query.isObject() || !query.path("metrics").isArray()) {
+            return false;
+        }
+
+        final long rangeMillis = rangeMillis(query);
+        if (rangeMillis <= 0) {
+            return false;
+        }
+
+        final KairosDBProperties.RollupConfig rollup = rollup(rangeMillis);
+        final long downsampleMillis = TimeUnit.SECONDS.toMillis(properties.getDownsampleMinRangeSeconds());
+        final boolean downsample = downsampleMillis > 0 && rangeMillis >= downsampleMillis;
+
+        boolean rewritten = false;
+        long samplingMillis = 0;
+        for (final JsonNode metric : query.get("metrics")) {
+            if (!metric.isObject()) {
+                continue;
+            }
+
+            final ObjectNode m = (ObjectNode) metric;
+            final String name = m.path("name").asText();
+
+            if (rollup != null && CHECK_METRIC.matcher(name).matches()) {
+                final String rollupName = rollup.getMetric().replace("{name}", name);
+                m.put("name", rollupName);
+                rewritten = true;
+
+                metricRegistry.meter("kairosdb.rewrite.rollup").mark();
+                metricRegistry.meter("kairosdb.check.rewrite.rollup." + checkId).mark();
+                LOG.info("Rewrote KairosDB query to rollup: checkId={} rangeMinutes={} metric={} rollup={}", checkId,
+                        TimeUnit.MILLISECONDS.toMinutes(rangeMillis), name, rollupName);
+            }
+
+            if (downsample && m.path("aggregators").size() == 0) {
+                final long samplingMinutes = samplingMinutes(rangeMillis);
+                final ObjectNode aggregator = m.putArray("aggregators").addObject();
+                aggregator.put("name", properties.getDownsampleAggregator());
+                aggregator.put("align_sampling", true);
+                aggregator.putObject("sampling").put("value", samplingMinutes).put("unit", "minutes");
+                samplingMillis = TimeUnit.MINUTES.toMillis(samplingMinutes);
+                rewritten = true;
+
+                metricRegistry.meter("kairosdb.rewrite.downsample").mark();
+                metricRegistry.meter("kairosdb.check.rewrite.downsample." + checkId).mark();
+                LOG.info("Added downsampling to KairosDB query: checkId={} rangeMinutes={} metric={} samplingMinutes={}",
+                        checkId, TimeUnit.MILLISECONDS.toMinutes(rangeMillis), m.path("name").asText(), samplingMinutes);
+            }
+        }
+
+        // align_sampling only aligns to minutes, starting on the sampling grid gives the same buckets for every range
+        // and lets the splitter cut the query into chunks
+        if (samplingMillis > 0 && query.has("start_absolute")) {
+            final long start = query.get("start_absolute").asLong();
+            ((ObjectNode) query).put("start_absolute", start - start % samplingMillis);
+        }
+
+        return rewritten;
+    }
+
+    private KairosDBProperties.RollupConfig rollup(final long rangeMillis) {
+        KairosDBProperties.RollupConfig result = null;
+        for (final KairosDBProperties.RollupConfig rollup : properties.getRollups()) {
+            if (rollup.getMetric() != null && rangeMillis >= TimeUnit.SECONDS.toMillis(rollup.getMinRangeSeconds())
+                    && (result == null || rollup.getMinRangeSeconds() > result.getMinRangeSeconds())) {
+                result = rollup;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The smallest sampling giving at most {@code downsampleMaxPoints} points. Up to a day it evenly divides a day,
+     * so downsampled queries can still be split into cacheable chunks.
+     */
+    long samplingMinutes(final long rangeMillis) {
+        final long minutes = Math.max(1, (long) Math.ceil(
+                (double) TimeUnit.MILLISECONDS.toMinutes(rangeMillis) / Math.max(1, properties.getDownsampleMaxPoints())));
+
+        if (minutes >= DAY_MINUTES) {
+            return (minutes + DAY_MINUTES - 1) / DAY_MINUTES * DAY_MINUTES;
+        }
+
+        long sampling = minutes;
+        while (DAY_MINUTES % sampling != 0) {
+            sampling++;
+        }
+        return sampling;
+    }
+
+    /**
+     * @return the range of the query, or 0 if it has no valid start
+     */
+    long rangeMillis(final JsonNode query) {
+        final long now = clock.getAsLong();
+
+        final long start;
+        if (query.has("start_absolute")) {
+            start = query.get("start_absolute").asLong();
+        } else if (query.has("start_relative")) {
+            start = now - relativeMillis(query.get("start_relative"));
+        } else {
+            return 0;
+        }
+
+        final long end;
+        if (query.has("end_absolute")) {
+            end = query.get("end_absolute").asLong();
+        } else if (query.has("end_relative")) {
+            end = now - relativeMillis(query.get("end_relative"));
+        } else {
+            end = now;
+        }
+
+        return Math.max(0, end - start);
+    }
+
+    private static long relativeMillis(final JsonNode relative) {
+        final String unit = relative.path("unit").asText();
+        final long value = relative.path("value").asLong();
+
+        final Long unitMillis = KairosDBQuerySplitter.UNIT_MILLIS.get(unit);
+        if (unitMillis != null) {
+            return value * unitMillis;
+        } else if ("months".equals(unit)) {
+            return value * MONTH_MILLIS;
+        } else if ("years".equals(unit)) {
+            return value * YEAR_MILLIS;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,213 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zalando.zmon.config.KairosDBCacheProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Splits long absolute range datapoint queries into chunks aligned to {@code splitChunkSeconds}, so every chunk that
+ * lies in the past can be cached on its own, and merges the chunk responses back into one response.
+ *
+ * <p>Only queries whose result does not depend on where the range is cut are split: aggregators must sample in
+ * aligned buckets that evenly divide a chunk and start at the start of the range, and aggregators looking across buckets (rate, diff, ...) as well as
+ * {@code limit} and {@code order} prevent splitting.
+ */
+@Component
+public class KairosDBQuerySplitter {
+
+    private static final Set<String> CROSS_BUCKET_AGGREGATORS = ImmutableSet.of("rate", "sampler", "diff", "trim",
+            "save_as");
+
+    static final Map<String, Long> UNIT_MILLIS = ImmutableMap.<String, Long>builder()
+            .put("milliseconds", 1L)
+            .put("seconds", TimeUnit.SECONDS.toMillis(1))
+            .put("minutes", TimeUnit.MINUTES.toMillis(1))
+            .put("hours", TimeUnit.HOURS.toMillis(1))
+            .put("days", TimeUnit.DAYS.toMillis(1))
+            .put("weeks", TimeUnit.DAYS.toMillis(7))
+            .build();
+
+    private final KairosDBCacheProperties properties;
+
+    private final LongSupplier clock;
+
+    @Autowired
+    public KairosDBQuerySplitter(final KairosDBCacheProperties properties) {
+        this(properties, System::currentTimeMillis);
+    }
+
+    KairosDBQuerySplitter(final KairosDBCacheProperties properties, final LongSupplier clock) {
+        this.properties = Preconditions.checkNotNull(properties, "properties");
+        this.clock = Preconditions.checkNotNull(clock, "clock");
+    }
+
+    /**
+     * @return the chunk queries in ascending time order, or an empty list if the query should not be split
+     */
+    public List<ObjectNode> split(final JsonNode query) {
+        if (!properties.isSplitEnabled() || !query.isObject() || !query.has("start_absolute")
+                || query.has("end_relative")) {
+            return Collections.emptyList();
+        }
+
+        final long chunkMillis = TimeUnit.SECONDS.toMillis(properties.getSplitChunkSeconds());
+        final long start = query.get("start_absolute").asLong();
+        if (chunkMillis <= 0 || !isSplittable(query, start, chunkMillis)) {
+            return Collections.emptyList();
+        }
+
+        final boolean open = !query.has("end_absolute");
+        final long end = open ? clock.getAsLong() : query.get("end_absolute").asLong();
+
+        final long chunks = (end - end % chunkMillis - (start - start % chunkMillis)) / chunkMillis + 1;
+        if (chunks < 2 || chunks > properties.getSplitMaxChunks()) {
+            return Collections.emptyList();
+        }
+
+        final List<ObjectNode> result = new ArrayList<>((int) chunks);
+        for (long from = start; from <= end; ) {
+            final long next = from - from % chunkMillis + chunkMillis;
+
+            final ObjectNode chunk = ((ObjectNode) query).deepCopy();
+            chunk.put("start_absolute", from);
+            if (next > end && open) {
+                // the newest chunk stays open so its cache key does not change with every request
+                chunk.remove("end_absolute");
+            } else {
+                chunk.put("end_absolute", Math.min(next - 1, end));
+            }
+            result.add(chunk);
+
+            from = next;
+        }
+
+        return result;
+    }
+
+    private static boolean isSplittable(final JsonNode query, final long start, final long chunkMillis) {
+        final JsonNode metrics = query.get("metrics");
+        if (metrics == null || !metrics.isArray()) {
+            return false;
+        }
+
+        for (final JsonNode metric : metrics) {
+            if (metric.has("limit") || metric.has("order")) {
+                return false;
+            }
+
+            for (final JsonNode aggregator : metric.path("aggregators")) {
+                if (CROSS_BUCKET_AGGREGATORS.contains(aggregator.path("name").asText())) {
+                    return false;
+                }
+
+                final JsonNode sampling = aggregator.get("sampling");
+                if (sampling == null) {
+                    continue;
+                }
+
+                // align_sampling only aligns to the sampling unit, so the chunks only have the buckets of the whole
+                // range if its start is on the sampling grid
+                final boolean aligned = aggregator.path("align_sampling").asBoolean(false)
+                        && !aggregator.path("align_end_time").asBoolean(false);
+                final Long unitMillis = UNIT_MILLIS.get(sampling.path("unit").asText());
+                final long samplingMillis = unitMillis == null ? 0 : unitMillis * sampling.path("value").asLong();
+                if (!aligned || samplingMillis <= 0 || chunkMillis % samplingMillis != 0 || start % samplingMillis != 0) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Merges chunk responses (ascending time order) into one response. Series are matched by name and group, their
+     * values are concatenated and tags are united.
+     */
+    public static ObjectNode merge(final List<JsonNode> responses) {
+        Preconditions.checkArgument(!responses.isEmpty(), "responses must not be empty");
+
+        final ObjectNode merged = JsonNodeFactory.instance.objectNode();
+        final ArrayNode queries = merged.putArray("queries");
+
+        final int queryCount = responses.get(0).path("queries").size();
+        for (int i = 0; i < queryCount; i++) {
+            long sampleSize = 0;
+            final Map<String, ObjectNode> series = new LinkedHashMap<>();
+
+            for (final JsonNode response : responses) {
+                final JsonNode chunkQuery = response.path("queries").path(i);
+                sampleSize += chunkQuery.path("sample_size").asLong();
+
+                for (final JsonNode result : chunkQuery.path("results")) {
+                    final String key = result.path("name").asText() + result.path("group_by").toString();
+                    final ObjectNode existing = series.get(key);
+                    if (existing == null) {
+                        series.put(key, ((ObjectNode) result).deepCopy());
+                    } else {
+                        existing.withArray("values").addAll((ArrayNode) result.withArray("values"));
+                        mergeTags(existing.with("tags"), result.path("tags"));
+                    }
+                }
+            }
+
+            final ObjectNode mergedQuery = queries.addObject();
+            mergedQuery.put("sample_size", sampleSize);
+            mergedQuery.putArray("results").addAll(withoutEmptySeries(series.values()));
+        }
+
+        return merged;
+    }
+
+    private static void mergeTags(final ObjectNode target, final JsonNode tags) {
+        for (final Iterator<Map.Entry<String, JsonNode>> it = tags.fields(); it.hasNext(); ) {
+            final Map.Entry<String, JsonNode> tag = it.next();
+
+            final Set<String> values = new LinkedHashSet<>();
+            target.path(tag.getKey()).forEach(v -> values.add(v.asText()));
+            tag.getValue().forEach(v -> values.add(v.asText()));
+
+            final ArrayNode array = target.putArray(tag.getKey());
+            values.forEach(array::add);
+        }
+    }
+
+    /**
+     * A chunk without datapoints returns an ungrouped empty series, which must not show up next to the real groups.
+     */
+    private static List<ObjectNode> withoutEmptySeries(final Iterable<ObjectNode> series) {
+        final List<ObjectNode> result = new ArrayList<>();
+        ObjectNode firstEmpty = null;
+        for (final ObjectNode s : series) {
+            if (s.path("values").size() > 0) {
+                result.add(s);
+            } else if (firstEmpty == null) {
+                firstEmpty = s;
+            }
+        }
+
+        if (result.isEmpty() && firstEmpty != null) {
+            result.add(firstEmpty);
+        }
+
+        return result;
+    }
+}
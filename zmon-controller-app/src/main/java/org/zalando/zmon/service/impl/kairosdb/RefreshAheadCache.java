@@ -0,0 +1,96 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureAdapter;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Cache of response bodies that are refreshed ahead of expiry: entries older than {@code refreshMillis} are still
+ * served while a single background load replaces them. Only entries older than {@code expireMillis} (or missing
+ * ones) make callers wait for KairosDB.
+ */
+final class RefreshAheadCache<K> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RefreshAheadCache.class);
+
+    private final String name;
+
+    private final long refreshMillis;
+
+    private final MetricRegistry metricRegistry;
+
+    private final LongSupplier clock;
+
+    private final Cache<K, Entry> cache;
+
+    private final SingleFlight<K, EncodedBody> loads = new SingleFlight<>();
+
+    RefreshAheadCache(final String name, final long refreshMillis, final long expireMillis, final long maxBytes,
+                      final MetricRegistry metricRegistry, final LongSupplier clock) {
+        this.name = Preconditions.checkNotNull(name, "name");
+        this.refreshMillis = refreshMillis;
+        this.metricRegistry = Preconditions.checkNotNull(metricRegistry, "metricRegistry");
+        this.clock = Preconditions.checkNotNull(clock, "clock");
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumWeight(maxBytes)
+                                 .weigher((K key, Entry entry) -> entry.body.size())
+                                 .expireAfterWrite(expireMillis, TimeUnit.MILLISECONDS)
+                                 .build();
+    }
+
+    ListenableFuture<EncodedBody> get(final K key, final Supplier<ListenableFuture<EncodedBody>> loader) {
+        final Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            metricRegistry.meter(name + ".miss").mark();
+            return load(key, loader);
+        }
+
+        if (clock.getAsLong() - entry.loadedAt >= refreshMillis) {
+            metricRegistry.meter(name + ".stale").mark();
+            load(key, loader).addCallback(body -> { }, ex -> LOG.warn("Refresh failed: cache={} error={}", name, ex.getMessage()));
+        } else {
+            metricRegistry.meter(name + ".hit").mark();
+        }
+
+        final SettableListenableFuture<EncodedBody> result = new SettableListenableFuture<>();
+        result.set(entry.body);
+        return result;
+    }
+
+    private ListenableFuture<EncodedBody> load(final K key, final Supplier<ListenableFuture<EncodedBody>> loader) {
+        return loads.execute(key, () -> {
+            final long startedAt = clock.getAsLong();
+            return new ListenableFutureAdapter<EncodedBody, EncodedBody>(loader.get()) {
+                @Override
+                protected EncodedBody adapt(final EncodedBody body) {
+                    cache.put(key, new Entry(body, startedAt));
+                    return body;
+                }
+            };
+        }, () -> { });
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static final class Entry {
+        private final EncodedBody body;
+        private final long loadedAt;
+
+        private Entry(final EncodedBody body, final long loadedAt) {
+            this.body = body;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
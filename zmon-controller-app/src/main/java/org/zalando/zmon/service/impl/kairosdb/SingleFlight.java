@@ -0,0 +1,58 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import com.google.common.base.Preconditions;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key: while a call is in flight, callers with an equal key attach to it
+ * instead of starting their own. Every caller gets its own future, so one caller cancelling does not affect others.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, ListenableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param call   starts the call, only invoked if no call with the same key is in flight
+     * @param onJoin invoked if the caller was attached to a call already in flight
+     */
+    public ListenableFuture<V> execute(final K key, final Supplier<ListenableFuture<V>> call, final Runnable onJoin) {
+        Preconditions.checkNotNull(key, "key");
+
+        final SettableListenableFuture<V> shared = new SettableListenableFuture<>();
+        final ListenableFuture<V> existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            onJoin.run();
+            return attach(existing);
+        }
+
+        try {
+            call.get().addCallback(result -> {
+                inFlight.remove(key, shared);
+                shared.set(result);
+            }, ex -> {
+                inFlight.remove(key, shared);
+                shared.setException(ex);
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.setException(e);
+        }
+
+        return attach(shared);
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> ListenableFuture<V> attach(final ListenableFuture<V> shared) {
+        final SettableListenableFuture<V> own = new SettableListenableFuture<>();
+        shared.addCallback(own::set, own::setException);
+        return own;
+    }
+}
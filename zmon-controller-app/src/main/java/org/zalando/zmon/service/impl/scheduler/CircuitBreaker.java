@@ -0,0 +1,61 @@
+package org.zalando.zmon.service.impl.scheduler;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Opens after a number of consecutive failures and rejects calls until the open interval has passed. Afterwards a
+ * single trial call is let through: success closes the breaker, failure opens it again.
+ */
+class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean trialInFlight;
+
+    CircuitBreaker(final int failureThreshold, final long openMillis, final LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    synchronized boolean tryAcquire() {
+        if (consecutiveFailures < failureThreshold) {
+            return true;
+        }
+
+        if (clock.getAsLong() < openUntil || trialInFlight) {
+            return false;
+        }
+
+        trialInFlight = true;
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    /**
+     * Neither success nor failure, only lets the next trial call through if this was the trial.
+     */
+    synchronized void onCancelled() {
+        trialInFlight = false;
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (consecutiveFailures >= failureThreshold) {
+            openUntil = clock.getAsLong() + openMillis;
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return consecutiveFailures >= failureThreshold;
+    }
+}
@@ -0,0 +1,196 @@
+package org.zalando.zmon.service.impl.scheduler;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Preconditions;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.fluent.ContentResponseHandler;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zalando.zmon.config.SchedulerProperties;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single entry point for all calls to the scheduler. Connections are pooled and every call is guarded by a bulkhead
+ * (bounded number of concurrent blocking calls) and a circuit breaker, so a slow or dead scheduler cannot tie up all
+ * web worker threads. Latencies are recorded per endpoint as {@code scheduler.<endpoint>}.
+ */
+@Component
+public class SchedulerClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SchedulerClient.class);
+
+    private static final String METRIC_PREFIX = "scheduler.";
+
+    private final SchedulerProperties schedulerProperties;
+
+    private final MetricRegistry metricRegistry;
+
+    private final CloseableHttpClient httpClient;
+
+    private final CloseableHttpAsyncClient httpAsyncClient;
+
+    private final Executor executor;
+
+    private final Semaphore bulkhead;
+
+    private final CircuitBreaker circuitBreaker;
+
+    @Autowired
+    public SchedulerClient(final SchedulerProperties schedulerProperties, final MetricRegistry metricRegistry) {
+        this.schedulerProperties = Preconditions.checkNotNull(schedulerProperties, "schedulerProperties");
+        this.metricRegistry = Preconditions.checkNotNull(metricRegistry, "metricRegistry");
+
+        this.httpClient = schedulerProperties.getHttpClient();
+        this.executor = Executor.newInstance(httpClient);
+        this.httpAsyncClient = schedulerProperties.getHttpAsyncClient();
+        this.httpAsyncClient.start();
+
+        this.bulkhead = new Semaphore(schedulerProperties.getMaxConcurrentCalls());
+        this.circuitBreaker = new CircuitBreaker(schedulerProperties.getCircuitBreakerFailureThreshold(),
+                schedulerProperties.getCircuitBreakerOpenMillis(), System::currentTimeMillis);
+    }
+
+    public String url(final String path) {
+        return schedulerProperties.getUrl().toString() + path;
+    }
+
+    /**
+     * Executes the request and returns the response body.
+     *
+     * @throws HttpResponseException if the scheduler responded with a status >= 300
+     */
+    public String execute(final String endpoint, final Request request) throws IOException {
+        return execute(endpoint, request, new ContentResponseHandler()).asString();
+    }
+
+    public <T> T execute(final String endpoint, final Request request, final ResponseHandler<T> handler)
+            throws IOException {
+        acquire(endpoint);
+
+        final Timer.Context timer = metricRegistry.timer(METRIC_PREFIX + endpoint).time();
+        final boolean[] responded = {false};
+        try {
+            return executor.execute(request).handleResponse(response -> {
+                responded[0] = true;
+                recordStatus(endpoint, response.getStatusLine().getStatusCode());
+                return handler.handleResponse(response);
+            });
+        } catch (IOException | RuntimeException e) {
+            if (!responded[0]) {
+                recordFailure(endpoint);
+            }
+            throw e;
+        } finally {
+            timer.stop();
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Executes the request on the pooled non-blocking client. Only the circuit breaker applies, callers that fan out
+     * are responsible for bounding their own concurrency.
+     */
+    public Future<HttpResponse> executeAsync(final String endpoint, final HttpUriRequest request,
+                                             final FutureCallback<HttpResponse> callback) {
+        if (!circuitBreaker.tryAcquire()) {
+            reject(endpoint, "circuit breaker open");
+        }
+
+        final Timer.Context timer = metricRegistry.timer(METRIC_PREFIX + endpoint).time();
+        try {
+            return httpAsyncClient.execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(final HttpResponse result) {
+                    timer.stop();
+                    recordStatus(endpoint, result.getStatusLine().getStatusCode());
+                    callback.completed(result);
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    timer.stop();
+                    recordFailure(endpoint);
+                    callback.failed(ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    timer.stop();
+                    // says nothing about the scheduler's health
+                    circuitBreaker.onCancelled();
+                    callback.cancelled();
+                }
+            });
+        } catch (RuntimeException e) {
+            // no callback runs, e.g. the I/O reactor is stopped, and a trial call must not stay in flight forever
+            timer.stop();
+            recordFailure(endpoint);
+            throw e;
+        }
+    }
+
+    private void acquire(final String endpoint) {
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(schedulerProperties.getBulkheadWaitMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired) {
+            reject(endpoint, "too many concurrent calls");
+        }
+
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            reject(endpoint, "circuit breaker open");
+        }
+    }
+
+    private void reject(final String endpoint, final String reason) {
+        metricRegistry.meter(METRIC_PREFIX + endpoint + ".rejected").mark();
+        LOG.warn("Rejected scheduler call: endpoint={} reason={}", endpoint, reason);
+        throw new SchedulerUnavailableException("Scheduler unavailable: " + reason);
+    }
+
+    private void recordStatus(final String endpoint, final int status) {
+        // 4xx means the scheduler is healthy and answered, only server errors count against it
+        if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+            recordFailure(endpoint);
+        } else {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    private void recordFailure(final String endpoint) {
+        metricRegistry.meter(METRIC_PREFIX + endpoint + ".failed").mark();
+        circuitBreaker.onFailure();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        try {
+            httpClient.close();
+        } finally {
+            httpAsyncClient.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.zalando.zmon.service.impl.scheduler;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The call was not sent to the scheduler because too many calls are in flight or the circuit breaker is open.
+ *
+ * <p>Unchecked, so callers handling {@link java.io.IOException}s of the scheduler call let it through to the
+ * controller, which answers with 503.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class SchedulerUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SchedulerUnavailableException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,144 @@
+package org.zalando.zmon.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JSON document with {@code {name}} placeholders in its text values. The document is scanned once, rendering copies
+ * it and writes the substituted text into the recorded places only.
+ */
+public final class JsonTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{(\\w+)\\}");
+
+    private final JsonNode template;
+
+    private final List<Slot> slots;
+
+    private JsonTemplate(final JsonNode template, final List<Slot> slots) {
+        this.template = template;
+        this.slots = slots;
+    }
+
+    /**
+     * @param variables names of the placeholders to substitute, other text in braces is kept as it is
+     */
+    public static JsonTemplate compile(final JsonNode template, final Set<String> variables) {
+        Preconditions.checkArgument(template.isContainerNode(), "template must be an object or array");
+
+        final List<Slot> slots = new ArrayList<>();
+        scan(template, new ArrayList<>(), variables, slots);
+        return new JsonTemplate(template.deepCopy(), ImmutableList.copyOf(slots));
+    }
+
+    private static void scan(final JsonNode node, final List<Object> path, final Set<String> variables,
+                             final List<Slot> slots) {
+        if (node.isObject()) {
+            for (final Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                final Map.Entry<String, JsonNode> field = it.next();
+                visit(field.getValue(), path, field.getKey(), variables, slots);
+            }
+        } else if (node.isArray()) {
+            for (int i = 0; i < node.size(); i++) {
+                visit(node.get(i), path, i, variables, slots);
+            }
+        }
+    }
+
+    private static void visit(final JsonNode child, final List<Object> path, final Object step,
+                              final Set<String> variables, final List<Slot> slots) {
+        if (child.isTextual()) {
+            final Slot slot = Slot.parse(path.toArray(), step, child.textValue(), variables);
+            if (slot != null) {
+                slots.add(slot);
+            }
+        } else if (child.isContainerNode()) {
+            path.add(step);
+            scan(child, path, variables, slots);
+            path.remove(path.size() - 1);
+        }
+    }
+
+    /**
+     * @param values substitutions per placeholder name, missing values are replaced by an empty string
+     * @return a new document, the template itself is never modified
+     */
+    public JsonNode render(final Map<String, String> values) {
+        final JsonNode result = template.deepCopy();
+        for (final Slot slot : slots) {
+            slot.write(result, values);
+        }
+        return result;
+    }
+
+    /**
+     * A text value containing placeholders: {@code literals[0] variables[0] literals[1] ... literals[n]}.
+     */
+    private static final class Slot {
+        private final Object[] parentPath;
+        private final Object step;
+        private final String[] literals;
+        private final String[] variables;
+
+        private Slot(final Object[] parentPath, final Object step, final String[] literals, final String[] variables) {
+            this.parentPath = parentPath;
+            this.step = step;
+            this.literals = literals;
+            this.variables = variables;
+        }
+
+        private static Slot parse(final Object[] parentPath, final Object step, final String text,
+                                  final Set<String> names) {
+            final List<String> literals = new ArrayList<>();
+            final List<String> variables = new ArrayList<>();
+
+            final Matcher matcher = PLACEHOLDER.matcher(text);
+            int literalStart = 0;
+            while (matcher.find()) {
+                if (names.contains(matcher.group(1))) {
+                    literals.add(text.substring(literalStart, matcher.start()));
+                    variables.add(matcher.group(1));
+                    literalStart = matcher.end();
+                }
+            }
+
+            if (variables.isEmpty()) {
+                return null;
+            }
+
+            literals.add(text.substring(literalStart));
+            return new Slot(parentPath, step, literals.toArray(new String[0]), variables.toArray(new String[0]));
+        }
+
+        private void write(final JsonNode root, final Map<String, String> values) {
+            JsonNode parent = root;
+            for (final Object p : parentPath) {
+                parent = p instanceof Integer ? parent.get((Integer) p) : parent.get((String) p);
+            }
+
+            final StringBuilder text = new StringBuilder(literals[0]);
+            for (int i = 0; i < variables.length; i++) {
+                final String value = values.get(variables[i]);
+                text.append(value == null ? "" : value).append(literals[i + 1]);
+            }
+
+            if (step instanceof Integer) {
+                final ArrayNode array = (ArrayNode) parent;
+                array.set((Integer) step, array.textNode(text.toString()));
+            } else {
+                ((ObjectNode) parent).put((String) step, text.toString());
+            }
+        }
+    }
+}
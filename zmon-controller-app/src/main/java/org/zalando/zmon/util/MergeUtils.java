@@ -0,0 +1,59 @@
+package org.zalando.zmon.util;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Helpers for combining results that are already sorted by their source.
+ */
+public final class MergeUtils {
+
+    private MergeUtils() { }
+
+    /**
+     * Lazily merges iterators that are each sorted by {@code comparator}. Sources are only advanced as far as needed,
+     * so at most {@code limit} elements are pulled from all sources together.
+     *
+     * @param limit maximum number of elements to return, {@code null} for all
+     */
+    public static <T> List<T> mergeSorted(final List<? extends Iterator<? extends T>> sources,
+            final Comparator<? super T> comparator, final Integer limit) {
+        Preconditions.checkNotNull(sources, "sources");
+        Preconditions.checkNotNull(comparator, "comparator");
+
+        final PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> comparator.compare(a.value, b.value));
+        for (final Iterator<? extends T> source : sources) {
+            if (source.hasNext()) {
+                heads.add(new Head<>(source.next(), source));
+            }
+        }
+
+        final List<T> result = new ArrayList<>(limit == null ? 16 : limit);
+        while (!heads.isEmpty() && (limit == null || result.size() < limit)) {
+            final Head<T> head = heads.poll();
+            result.add(head.value);
+
+            if (head.source.hasNext()) {
+                heads.add(new Head<>(head.source.next(), head.source));
+            }
+        }
+
+        return result;
+    }
+
+    private static final class Head<T> {
+        private final T value;
+        private final Iterator<? extends T> source;
+
+        private Head(final T value, final Iterator<? extends T> source) {
+            this.value = value;
+            this.source = source;
+        }
+    }
+}
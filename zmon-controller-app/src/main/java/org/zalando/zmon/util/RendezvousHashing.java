@@ -0,0 +1,38 @@
+package org.zalando.zmon.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Highest random weight (rendezvous) hashing. Every key is assigned to the node with the highest hash of
+ * (key, node). Adding or removing a node only moves the keys of that node, unlike {@code hash % nodes} which remaps
+ * almost every key.
+ */
+public final class RendezvousHashing {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private RendezvousHashing() { }
+
+    /**
+     * @return the node in {@code [0, nodes)} that owns {@code key}
+     */
+    public static int selectNode(final String key, final int nodes) {
+        Preconditions.checkNotNull(key, "key");
+        Preconditions.checkArgument(nodes > 0, "nodes must be positive: %s", nodes);
+
+        int selected = 0;
+        long maxWeight = Long.MIN_VALUE;
+        for (int node = 0; node < nodes; node++) {
+            final long weight = HASH.newHasher().putString(key, Charsets.UTF_8).putInt(node).hash().asLong();
+            if (weight > maxWeight) {
+                maxWeight = weight;
+                selected = node;
+            }
+        }
+
+        return selected;
+    }
+}
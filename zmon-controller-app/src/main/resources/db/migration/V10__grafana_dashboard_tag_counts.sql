@@ -0,0 +1,81 @@
+-- tag counts for the Grafana tag filter are kept in their own table instead of aggregating the tags of every
+-- dashboard on each request
+
+CREATE TABLE zzm_data.grafana_dashboard_tag
+(
+  gdt_tag text not null,
+  gdt_count int not null,
+  primary key ( gdt_tag )
+);
+
+-- tags are counted once per occurrence in gd_tags, like json_array_elements_text on the dashboard did
+CREATE OR REPLACE FUNCTION zzm_data.grafana_dashboard_tag_count_trigger() RETURNS trigger AS
+$BODY$
+DECLARE
+    l_old_tags jsonb := '[]'::jsonb;
+    l_new_tags jsonb := '[]'::jsonb;
+    l_tag      text;
+    l_count    int;
+BEGIN
+    -- OLD and NEW are only assigned for the matching operations
+    IF TG_OP <> 'INSERT' THEN
+        l_old_tags = OLD.gd_tags;
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        l_new_tags = NEW.gd_tags;
+    END IF;
+
+    -- rows are always locked in tag order, so concurrent saves cannot deadlock
+    -- null elements in the tags array are not counted, gdt_tag cannot hold them
+    FOR l_tag, l_count IN
+        SELECT tag, sum(delta)::int
+          FROM (SELECT tag, -1 AS delta
+                  FROM jsonb_array_elements_text(l_old_tags) o(tag)
+                 WHERE tag IS NOT NULL
+                 UNION ALL
+                SELECT tag, 1 AS delta
+                  FROM jsonb_array_elements_text(l_new_tags) n(tag)
+                 WHERE tag IS NOT NULL) t
+         GROUP BY tag
+        HAVING sum(delta) <> 0
+         ORDER BY tag
+    LOOP
+        INSERT INTO zzm_data.grafana_dashboard_tag (gdt_tag, gdt_count)
+             VALUES (l_tag, l_count)
+        ON CONFLICT (gdt_tag) DO UPDATE
+                SET gdt_count = grafana_dashboard_tag.gdt_count + EXCLUDED.gdt_count;
+
+        DELETE FROM zzm_data.grafana_dashboard_tag
+         WHERE gdt_tag = l_tag
+           AND gdt_count <= 0;
+    END LOOP;
+
+    RETURN NULL;
+END;
+$BODY$
+LANGUAGE plpgsql;
+
+CREATE TRIGGER grafana_dashboard_tag_count_trigger
+AFTER INSERT OR DELETE ON zzm_data.grafana_dashboard
+    FOR EACH ROW EXECUTE PROCEDURE zzm_data.grafana_dashboard_tag_count_trigger();
+
+-- gd_tags is written by grafana_dashboard_tags_trigger, so UPDATE OF gd_tags alone would not fire on dashboard saves
+CREATE TRIGGER grafana_dashboard_tag_count_update_trigger
+AFTER UPDATE OF gd_dashboard, gd_tags ON zzm_data.grafana_dashboard
+    FOR EACH ROW WHEN (OLD.gd_tags IS DISTINCT FROM NEW.gd_tags)
+    EXECUTE PROCEDURE zzm_data.grafana_dashboard_tag_count_trigger();
+
+INSERT INTO zzm_data.grafana_dashboard_tag (gdt_tag, gdt_count)
+     SELECT tag, count(1)
+       FROM zzm_data.grafana_dashboard, jsonb_array_elements_text(gd_tags) t(tag)
+      WHERE tag IS NOT NULL
+      GROUP BY tag;
+
+SET search_path TO zzm_api, public;
+
+CREATE OR REPLACE FUNCTION get_tags_with_count(OUT tag TEXT, OUT "count" INT) RETURNS SETOF RECORD AS
+$$
+  SELECT gdt_tag tag, gdt_count "count"
+    FROM zzm_data.grafana_dashboard_tag
+   ORDER BY gdt_tag ASC;
+$$ LANGUAGE SQL STABLE SECURITY DEFINER;
@@ -0,0 +1,39 @@
+-- lightweight Grafana dashboard search: the search only returns the projection it needs instead of every dashboard's
+-- JSON, title filters use a trigram index and tags are kept in their own indexed column
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE zzm_data.grafana_dashboard ADD COLUMN gd_tags jsonb NOT NULL DEFAULT '[]'::jsonb;
+
+CREATE OR REPLACE FUNCTION zzm_data.grafana_dashboard_tags_trigger() RETURNS trigger AS
+$BODY$
+BEGIN
+    NEW.gd_tags = CASE WHEN jsonb_typeof(NEW.gd_dashboard->'tags') = 'array' THEN NEW.gd_dashboard->'tags' ELSE '[]'::jsonb END;
+    RETURN NEW;
+END;
+$BODY$
+LANGUAGE plpgsql;
+
+CREATE TRIGGER grafana_dashboard_tags_trigger
+BEFORE INSERT OR UPDATE OF gd_dashboard ON zzm_data.grafana_dashboard
+    FOR EACH ROW EXECUTE PROCEDURE zzm_data.grafana_dashboard_tags_trigger();
+
+UPDATE zzm_data.grafana_dashboard
+   SET gd_tags = gd_dashboard->'tags'
+ WHERE jsonb_typeof(gd_dashboard->'tags') = 'array';
+
+CREATE INDEX ON zzm_data.grafana_dashboard USING gin (gd_title gin_trgm_ops);
+CREATE INDEX ON zzm_data.grafana_dashboard USING gin (gd_tags jsonb_path_ops);
+CREATE INDEX ON zzm_data.grafana_dashboard USING gin (gd_starred_by);
+
+SET search_path TO zzm_api, public;
+
+CREATE OR REPLACE FUNCTION search_grafana_dashboards(IN s_title TEXT, IN s_tags TEXT, IN s_starred TEXT, IN s_user TEXT, OUT id TEXT, OUT title TEXT, OUT "tags" TEXT, OUT "starred" BOOLEAN, OUT "grafana_version" TEXT) RETURNS SETOF record AS
+$$
+  SELECT gd_id id, gd_title title, gd_tags::text "tags", COALESCE(s_user =ANY(gd_starred_by), FALSE) "starred", gd_grafana_version "grafana_version"
+    FROM zzm_data.grafana_dashboard
+   WHERE (s_title IS NULL OR s_title = '' OR gd_title ilike '%' || s_title || '%')
+     AND (s_tags IS NULL OR gd_tags @> s_tags::jsonb)
+     AND (s_starred IS NULL OR gd_starred_by @> ARRAY[s_starred])
+   ORDER BY gd_title ASC;
+$$ LANGUAGE SQL STABLE SECURITY DEFINER;
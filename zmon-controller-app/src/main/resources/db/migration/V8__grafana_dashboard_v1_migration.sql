@@ -0,0 +1,42 @@
+-- stored v1 Grafana dashboards are converted to v2 by a background job, the v1 JSON is kept in gd_dashboard_v1
+--
+-- rollback of a dashboard:
+--   UPDATE zzm_data.grafana_dashboard
+--      SET gd_dashboard = gd_dashboard_v1, gd_dashboard_v1 = NULL, gd_grafana_version = 'v1'
+--    WHERE gd_id = '<id>' AND gd_dashboard_v1 IS NOT NULL;
+
+ALTER TABLE zzm_data.grafana_dashboard ADD COLUMN gd_dashboard_v1 jsonb;
+
+CREATE INDEX ON zzm_data.grafana_dashboard (gd_id) WHERE gd_grafana_version = 'v1';
+
+SET search_path TO zzm_api, public;
+
+CREATE OR REPLACE FUNCTION get_grafana_v1_dashboard_count() RETURNS BIGINT AS
+$$
+  SELECT count(1)
+    FROM zzm_data.grafana_dashboard
+   WHERE gd_grafana_version = 'v1';
+$$ LANGUAGE SQL STABLE SECURITY DEFINER;
+
+CREATE OR REPLACE FUNCTION get_grafana_v1_dashboards(IN after_id TEXT, IN s_limit INT, OUT id TEXT, OUT dashboard TEXT, OUT last_modified TIMESTAMP) RETURNS SETOF record AS
+$$
+  SELECT gd_id id, gd_dashboard::text dashboard, gd_last_modified last_modified
+    FROM zzm_data.grafana_dashboard
+   WHERE gd_grafana_version = 'v1'
+     AND (after_id IS NULL OR gd_id > after_id)
+   ORDER BY gd_id ASC
+   LIMIT s_limit;
+$$ LANGUAGE SQL STABLE SECURITY DEFINER;
+
+-- only replaces the dashboard if nobody saved it since it was read, gd_last_modified is kept as it is no user edit
+CREATE OR REPLACE FUNCTION migrate_grafana_v1_dashboard(INOUT id TEXT, IN dashboard TEXT, IN last_modified TIMESTAMP) RETURNS SETOF TEXT AS
+$$
+  UPDATE zzm_data.grafana_dashboard
+     SET gd_dashboard_v1 = gd_dashboard,
+         gd_dashboard = dashboard::jsonb,
+         gd_grafana_version = 'v2'
+   WHERE gd_id = id
+     AND gd_grafana_version = 'v1'
+     AND gd_last_modified = last_modified
+  RETURNING gd_id;
+$$ LANGUAGE SQL VOLATILE SECURITY DEFINER;
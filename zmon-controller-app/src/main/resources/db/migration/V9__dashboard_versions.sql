@@ -0,0 +1,223 @@
+-- dashboards get a version which is incremented on every save, it is used for compare-and-set on save and as ETag
+
+ALTER TABLE zzm_data.grafana_dashboard ADD COLUMN gd_version int NOT NULL DEFAULT 1;
+
+ALTER TABLE zzm_data.dashboard ADD COLUMN d_version int NOT NULL DEFAULT 1;
+
+SET search_path TO zzm_api, public;
+
+ALTER TYPE dashboard ADD ATTRIBUTE version int;
+
+DROP FUNCTION create_or_update_grafana_dashboard(text, text, text, text, text);
+
+-- returns the new version, or nothing if the dashboard was saved by someone else since expected_version was read
+-- a NULL expected_version overwrites any version
+CREATE OR REPLACE FUNCTION create_or_update_grafana_dashboard(id text, title text, dashboard text, user_name text, version text, expected_version int) RETURNS SETOF int AS
+$$
+DECLARE
+  l_version int;
+BEGIN
+  UPDATE zzm_data.grafana_dashboard
+     SET gd_title = title,
+         gd_dashboard = dashboard::jsonb,
+         gd_last_modified = now(),
+         gd_last_modified_by = user_name,
+         gd_grafana_version = version,
+         gd_version = gd_version + 1
+   WHERE gd_id = id
+     AND (expected_version IS NULL OR gd_version = expected_version)
+  RETURNING gd_version INTO l_version;
+
+  IF FOUND THEN
+    RETURN NEXT l_version;
+    RETURN;
+  END IF;
+
+  BEGIN
+
+    INSERT INTO zzm_data.grafana_dashboard(gd_id, gd_title, gd_dashboard, gd_grafana_version, gd_created_by, gd_last_modified_by)
+         VALUES (id, title, dashboard::jsonb, version, user_name, user_name)
+      RETURNING gd_version INTO l_version;
+
+    RETURN NEXT l_version;
+
+  EXCEPTION WHEN UNIQUE_VIOLATION THEN
+
+    -- exists with another version
+    RETURN;
+
+  END;
+END;
+$$ LANGUAGE PLPGSQL VOLATILE SECURITY DEFINER;
+
+DROP FUNCTION get_grafana_dashboard(text, text);
+
+CREATE OR REPLACE FUNCTION get_grafana_dashboard(INOUT id text, IN user_name TEXT, OUT title text, OUT dashboard text, OUT "user" TEXT, OUT starred BOOLEAN, OUT "grafana_version" TEXT, OUT version INT) RETURNS SETOF record AS
+$$
+  SELECT gd_id id, gd_title title, gd_dashboard::text dashboard, gd_created_by "user", COALESCE(user_name=ANY(gd_starred_by), FALSE) "starred", gd_grafana_version "grafana_version", gd_version version
+    FROM zzm_data.grafana_dashboard
+   WHERE gd_id = id;
+$$ LANGUAGE SQL VOLATILE SECURITY DEFINER;
+
+-- entity is NULL if dashboard.version is set and the dashboard was saved by someone else since it was read
+CREATE OR REPLACE FUNCTION create_or_update_dashboard (
+     IN dashboard         dashboard,
+     OUT entity           dashboard,
+     OUT status           operation_status,
+     OUT error_message    text
+) AS
+$BODY$
+DECLARE
+    l_view_mode   zzm_data.view_mode;
+    l_edit_option zzm_data.edit_option;
+BEGIN
+    l_view_mode   = COALESCE(dashboard.view_mode, 'FULL');
+    l_edit_option = COALESCE(dashboard.edit_option, 'PRIVATE');
+
+    IF dashboard.id IS NOT NULL THEN
+        UPDATE zzm_data.dashboard
+           SET d_id                     = dashboard.id,
+               d_name                   = dashboard.name,
+               d_last_modified          = now(),
+               d_last_modified_by       = dashboard.last_modified_by,
+               d_widget_configuration   = dashboard.widget_configuration::json,
+               d_alert_teams            = dashboard.alert_teams,
+               d_view_mode              = l_view_mode,
+               d_edit_option            = l_edit_option,
+               -- only update shared teams when edit option is changed to team
+               d_shared_teams           = CASE WHEN d_edit_option <> l_edit_option AND l_edit_option = 'TEAM'
+                                               THEN dashboard.shared_teams
+                                               ELSE d_shared_teams
+                                          END,
+               d_tags                   = dashboard.tags,
+               d_version                = d_version + 1
+         WHERE d_id  = dashboard.id
+           AND (dashboard.version IS NULL OR d_version = dashboard.version)
+     RETURNING d_id,
+               d_name,
+               d_created_by,
+               d_last_modified,
+               d_last_modified_by,
+               d_widget_configuration,
+               d_alert_teams,
+               d_view_mode,
+               d_edit_option,
+               d_shared_teams,
+               d_tags,
+               d_version
+          INTO entity.id,
+               entity.name,
+               entity.created_by,
+               entity.last_modified,
+               entity.last_modified_by,
+               entity.widget_configuration,
+               entity.alert_teams,
+               entity.view_mode,
+               entity.edit_option,
+               entity.shared_teams,
+               entity.tags,
+               entity.version;
+    ELSE
+        -- if it's not there, we should create a new one
+        INSERT INTO zzm_data.dashboard (
+            d_name,
+            d_created_by,
+            d_last_modified_by,
+            d_widget_configuration,
+            d_alert_teams,
+            d_view_mode,
+            d_edit_option,
+            d_shared_teams,
+            d_tags
+        )
+        VALUES (
+            dashboard.name,
+            dashboard.created_by,
+            dashboard.last_modified_by,
+            dashboard.widget_configuration::json,
+            dashboard.alert_teams,
+            l_view_mode,
+            l_edit_option,
+            dashboard.shared_teams,
+            dashboard.tags
+        )
+         RETURNING d_id,
+               d_name,
+               d_created_by,
+               d_last_modified,
+               d_last_modified_by,
+               d_widget_configuration,
+               d_alert_teams,
+               d_view_mode,
+               d_edit_option,
+               d_shared_teams,
+               d_tags,
+               d_version
+          INTO entity.id,
+               entity.name,
+               entity.created_by,
+               entity.last_modified,
+               entity.last_modified_by,
+               entity.widget_configuration,
+               entity.alert_teams,
+               entity.view_mode,
+               entity.edit_option,
+               entity.shared_teams,
+               entity.tags,
+               entity.version;
+    END IF;
+
+    status := 'SUCCESS';
+END
+$BODY$
+LANGUAGE 'plpgsql' VOLATILE SECURITY DEFINER
+COST 100;
+
+CREATE OR REPLACE FUNCTION get_dashboards(
+     IN dashboard_ids    int[]
+) RETURNS SETOF dashboard AS
+$BODY$
+BEGIN
+    RETURN QUERY
+        SELECT d_id,
+               d_name,
+               d_created_by,
+               d_last_modified,
+               d_last_modified_by,
+               d_widget_configuration::text,
+               d_alert_teams,
+               d_view_mode,
+               d_edit_option,
+               d_shared_teams,
+               d_tags,
+               d_version
+          FROM zzm_data.dashboard
+         WHERE (d_id = ANY (dashboard_ids));
+END
+$BODY$
+LANGUAGE 'plpgsql' VOLATILE SECURITY DEFINER
+COST 100;
+
+CREATE OR REPLACE FUNCTION get_all_dashboards()
+ RETURNS SETOF dashboard AS
+$BODY$
+BEGIN
+
+    RETURN QUERY
+        SELECT d_id,
+               d_name,
+               d_created_by,
+               d_last_modified,
+               d_last_modified_by,
+               d_widget_configuration::text,
+               d_alert_teams,
+               d_view_mode,
+               d_edit_option,
+               d_shared_teams,
+               d_tags,
+               d_version
+          FROM zzm_data.dashboard;
+END
+$BODY$
+LANGUAGE 'plpgsql' VOLATILE SECURITY DEFINER
+COST 100;
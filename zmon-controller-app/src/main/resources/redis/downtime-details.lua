@@ -0,0 +1,23 @@
+-- Returns the JSON of every downtime for the given alert definitions in one round trip.
+--
+-- KEYS[1]    set of alert definition ids in downtime (zmon:downtimes)
+-- KEYS[2..n] entity sets of the alert definitions (zmon:downtimes:<alert id>)
+-- ARGV[1..n] alert definition ids, in the order of KEYS[2..n]
+--
+-- The downtime hashes (zmon:downtimes:<alert id>:<entity>) are only known after reading the entity sets, they are
+-- derived from the entity set keys passed in KEYS.
+local result = {}
+
+for i = 2, #KEYS do
+    if redis.call('SISMEMBER', KEYS[1], ARGV[i - 1]) == 1 then
+        local entities = redis.call('SMEMBERS', KEYS[i])
+        for _, entity in ipairs(entities) do
+            local details = redis.call('HVALS', KEYS[i] .. ':' .. entity)
+            for _, downtime in ipairs(details) do
+                result[#result + 1] = downtime
+            end
+        end
+    end
+end
+
+return result
@@ -8,13 +8,26 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.zalando.zmon.config.ControllerProperties;
 import org.zalando.zmon.domain.CheckDefinition;
 import org.zalando.zmon.domain.CheckResults;
+import org.zalando.zmon.persistence.GrafanaDashboardSprocService;
+import org.zalando.zmon.security.permission.DefaultZMonPermissionService;
 import org.zalando.zmon.service.ZMonService;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Optional;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
 public class GrafanaControllerTest {
 
     @Test
@@ -32,4 +45,79 @@ public class GrafanaControllerTest {
         Assertions.assertThat(response.getBody().get("dashboard").get("links").get(0).get("url").textValue()).isEqualTo("/#/check-definitions/view/123");
 
     }
+
+    private static GrafanaDashboardSprocService.GrafanaDashboard dashboard(int version, boolean starred) {
+        GrafanaDashboardSprocService.GrafanaDashboard dashboard = new GrafanaDashboardSprocService.GrafanaDashboard();
+        dashboard.id = "my-dashboard";
+        dashboard.title = "My Dashboard";
+        dashboard.dashboard = "{\"title\":\"My Dashboard\",\"version\":1}";
+        dashboard.starred = starred;
+        dashboard.grafanaVersion = "v2";
+        dashboard.version = version;
+        return dashboard;
+    }
+
+    private static MockMvc mockMvc(GrafanaDashboardSprocService grafanaService) {
+        DefaultZMonPermissionService authService = Mockito.mock(DefaultZMonPermissionService.class);
+        Mockito.when(authService.getUserName()).thenReturn("user");
+        Mockito.when(authService.hasUserAuthority()).thenReturn(true);
+        return MockMvcBuilders.standaloneSetup(new GrafanaController(null, grafanaService, authService, new ObjectMapper(),
+                new ControllerProperties())).build();
+    }
+
+    private static JsonNode body(ResultActions result) throws Exception {
+        return new ObjectMapper().readTree(result.andReturn().getResponse().getContentAsString());
+    }
+
+    @Test
+    public void unchangedDashboardIsNotModified() throws Exception {
+        GrafanaDashboardSprocService grafanaService = Mockito.mock(GrafanaDashboardSprocService.class);
+        Mockito.when(grafanaService.getGrafanaDashboard("my-dashboard", "user"))
+                .thenReturn(Collections.singletonList(dashboard(3, false)));
+        MockMvc mockMvc = mockMvc(grafanaService);
+
+        JsonNode result = body(mockMvc.perform(get("/rest/grafana/api/dashboards/db/my-dashboard"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\"")));
+        Assertions.assertThat(result.at("/dashboard/version").intValue()).isEqualTo(3);
+        Assertions.assertThat(result.at("/meta/version").intValue()).isEqualTo(3);
+
+        mockMvc.perform(get("/rest/grafana/api/dashboards/db/my-dashboard").header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/rest/grafana/api/dashboards/db/my-dashboard").header("If-None-Match", "\"2\""))
+                .andExpect(status().isOk());
+
+        // starring changes the response but not the version
+        Mockito.when(grafanaService.getGrafanaDashboard("my-dashboard", "user"))
+                .thenReturn(Collections.singletonList(dashboard(3, true)));
+        result = body(mockMvc.perform(get("/rest/grafana/api/dashboards/db/my-dashboard").header("If-None-Match", "\"3\""))
+                .andExpect(status().isOk()));
+        Assertions.assertThat(result.at("/meta/isStarred").booleanValue()).isTrue();
+    }
+
+    @Test
+    public void saveWithChangedVersionIsRejected() throws Exception {
+        GrafanaDashboardSprocService grafanaService = Mockito.mock(GrafanaDashboardSprocService.class);
+        Mockito.when(grafanaService.createOrUpdateGrafanaDashboard(Mockito.eq("my-dashboard"), Mockito.eq("My Dashboard"),
+                Mockito.anyString(), Mockito.eq("user"), Mockito.eq("v2"), Mockito.eq(3)))
+                .thenReturn(Collections.emptyList());
+        Mockito.when(grafanaService.createOrUpdateGrafanaDashboard(Mockito.eq("my-dashboard"), Mockito.eq("My Dashboard"),
+                Mockito.anyString(), Mockito.eq("user"), Mockito.eq("v2"), Mockito.isNull(Integer.class)))
+                .thenReturn(Collections.singletonList(5));
+        MockMvc mockMvc = mockMvc(grafanaService);
+
+        String dashboard = "{\"dashboard\":{\"id\":\"my-dashboard\",\"title\":\"My Dashboard\",\"version\":3}";
+
+        JsonNode result = body(mockMvc.perform(post("/rest/grafana/api/dashboards/db").contentType("application/json")
+                .content(dashboard + "}"))
+                .andExpect(status().isPreconditionFailed()));
+        Assertions.assertThat(result.get("status").textValue()).isEqualTo("version-mismatch");
+
+        result = body(mockMvc.perform(post("/rest/grafana/api/dashboards/db").contentType("application/json")
+                .content(dashboard + ",\"overwrite\":true}"))
+                .andExpect(status().isOk()));
+        Assertions.assertThat(result.get("version").intValue()).isEqualTo(5);
+    }
 }
@@ -2,7 +2,12 @@ package org.zalando.zmon.controller;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -10,9 +15,13 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayOutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -28,7 +37,14 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.client.AsyncRestTemplate;
 import org.zalando.stups.tokens.AccessTokens;
+import org.zalando.zmon.config.KairosDBCacheProperties;
 import org.zalando.zmon.config.KairosDBProperties;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBHedging;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBMetadataCache;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBQueryCache;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBQueryLimiter;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBQueryRewriter;
+import org.zalando.zmon.service.impl.kairosdb.KairosDBQuerySplitter;
 
 import com.codahale.metrics.MetricRegistry;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
@@ -40,6 +56,8 @@ public class MultiKairosDBControllerTest {
 
     private MockMvc mockMvc;
     private MetricRegistry metricsRegistry;
+    private KairosDBProperties properties;
+    private AccessTokens accessTokens;
 
     @Before
     public void setUp() throws MalformedURLException {
@@ -51,19 +69,34 @@ public class MultiKairosDBControllerTest {
 
         this.metricsRegistry = new MetricRegistry();
 
-        AccessTokens accessTokens = Mockito.mock(AccessTokens.class);
+        accessTokens = Mockito.mock(AccessTokens.class);
         Mockito.when(accessTokens.get(Mockito.any(String.class))).thenReturn("123456789");
-        KairosDBProperties properties = new KairosDBProperties();
+        properties = new KairosDBProperties();
         properties.setEnabled(true);
         KairosDBProperties.KairosDBServiceConfig c = new KairosDBProperties.KairosDBServiceConfig();
         c.setName("kairosdb");
         c.setUrl("http://localhost:9998");
         c.setOauth2(false);
         properties.getKairosdbs().add(c);
+        KairosDBProperties.KairosDBServiceConfig eu = new KairosDBProperties.KairosDBServiceConfig();
+        eu.setName("kairosdb-eu");
+        eu.setUrl("http://localhost:9998");
+        properties.getKairosdbs().add(eu);
+        properties.getGroups().put("regions", Arrays.asList("kairosdb-eu", "kairosdb", "unknown"));
 
+        buildController();
+    }
+
+    private void buildController() {
         this.mockMvc = MockMvcBuilders
                 .standaloneSetup(new MultiKairosDBController(properties, metricsRegistry,
-                        new AsyncRestTemplate(new HttpComponentsAsyncClientHttpRequestFactory()), accessTokens))
+                        new AsyncRestTemplate(new HttpComponentsAsyncClientHttpRequestFactory()), accessTokens,
+                        new KairosDBQueryCache(new KairosDBCacheProperties(), metricsRegistry),
+                        new KairosDBQuerySplitter(new KairosDBCacheProperties()),
+                        new KairosDBMetadataCache(new KairosDBCacheProperties(), metricsRegistry),
+                        new KairosDBQueryLimiter(properties, metricsRegistry),
+                        new KairosDBHedging(properties, metricsRegistry),
+                        new KairosDBQueryRewriter(properties, metricsRegistry)))
                 .alwaysDo(MockMvcResultHandlers.print())
                 .build();
     }
@@ -98,4 +131,216 @@ public class MultiKairosDBControllerTest {
                 .contentType(APPLICATION_JSON)).andExpect(status().isOk());
     }
 
+    @Test
+    public void testKairosDbPostIsCached() throws Exception {
+        wireMockRule.stubFor(post(urlPathEqualTo("/api/v1/datapoints/query"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"queries\":[]}").withHeader("Content-Type", "application/json")));
+
+        for (String query : new String[]{"{\"start_absolute\":1000,\"metrics\":[{\"name\":\"zmon.check.42\"}]}",
+                "{\"metrics\":[{\"name\":\"zmon.check.42\"}],\"start_absolute\":2000}"}) {
+            MvcResult result = mockMvc.perform(post("/rest/kairosdbs/kairosdb/api/v1/datapoints/query")
+                    .content(query).contentType(APPLICATION_JSON))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+
+            mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                    .andExpect(content().string("{\"queries\":[]}"));
+        }
+
+        wireMockRule.verify(1, postRequestedFor(urlPathEqualTo("/api/v1/datapoints/query")));
+        assertThat(metricsRegistry.meter("kairosdb.check.cache.hit.42").getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testConcurrentKairosDbPostsAreCoalesced() throws Exception {
+        wireMockRule.stubFor(post(urlPathEqualTo("/api/v1/datapoints/query"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"queries\":[]}").withHeader("Content-Type", "application/json").withFixedDelay(500)));
+
+        MvcResult[] results = new MvcResult[3];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = mockMvc.perform(post("/rest/kairosdbs/kairosdb/api/v1/datapoints/query")
+                    .content("{\"start_absolute\":1000,\"metrics\":[{\"name\":\"zmon.check.7\"}]}").contentType(APPLICATION_JSON))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+        }
+
+        for (MvcResult result : results) {
+            mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                    .andExpect(content().string("{\"queries\":[]}"));
+        }
+
+        wireMockRule.verify(1, postRequestedFor(urlPathEqualTo("/api/v1/datapoints/query")));
+        assertThat(metricsRegistry.meter("kairosdb.check.coalesced.7").getCount(), equalTo(2L));
+    }
+
+    @Test
+    public void testLongKairosDbPostIsSplitAndMerged() throws Exception {
+        wireMockRule.stubFor(post(urlPathEqualTo("/api/v1/datapoints/query"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                        .withBody("{\"queries\":[{\"sample_size\":1,\"results\":[{\"name\":\"zmon.check.9\",\"group_by\":[],\"tags\":{},\"values\":[[1,1]]}]}]}")));
+
+        MvcResult result = mockMvc.perform(post("/rest/kairosdbs/kairosdb/api/v1/datapoints/query")
+                .content("{\"start_absolute\":0,\"end_absolute\":172800000,\"metrics\":[{\"name\":\"zmon.check.9\"}]}").contentType(APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(content().string("{\"queries\":[{\"sample_size\":3,\"results\":[{\"name\":\"zmon.check.9\",\"group_by\":[],\"tags\":{},\"values\":[[1,1],[1,1],[1,1]]}]}]}"));
+
+        wireMockRule.verify(3, postRequestedFor(urlPathEqualTo("/api/v1/datapoints/query")));
+    }
+
+    @Test
+    public void testGzipIsPassedThrough() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("{\"results\":[]}".getBytes(StandardCharsets.UTF_8));
+        }
+        wireMockRule.stubFor(post(urlPathEqualTo("/api/v1/datapoints/query/tags"))
+                .willReturn(aResponse().withStatus(200).withBody(compressed.toByteArray())
+                        .withHeader("Content-Type", "application/json").withHeader("Content-Encoding", "gzip")));
+
+        MvcResult result = mockMvc.perform(post("/rest/kairosdbs/kairosdb/api/v1/datapoints/query/tags")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .content("{}").contentType(APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(content().bytes(compressed.toByteArray()));
+
+        result = mockMvc.perform(post("/rest/kairosdbs/kairosdb/api/v1/datapoints/query/tags")
+                .content("{}").contentType(APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string("{\"results\":[]}"));
+    }
+
+    @Test
+    public void testKairosDbTagsAreCached() throws Exception {
+        for (String query : new String[]{"{\"metrics\":[{\"name\":\"zmon.check.1\"}],\"start_relative\":{\"value\":1,\"unit\":\"hours\"}}",
+                "{\"start_relative\":{\"unit\":\"hours\",\"value\":1},\"metrics\":[{\"name\":\"zmon.check.1\"}]}"}) {
+            MvcResult result = mockMvc.perform(post("/rest/kairosdbs/kairosdb/api/v1/datapoints/query/tags")
+                    .content(query).contentType(APPLICATION_JSON))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+
+            mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                    .andExpect(content().string("{\"key\":\"value\"}"));
+        }
+
+        wireMockRule.verify(1, postRequestedFor(urlPathEqualTo("/api/v1/datapoints/query/tags")));
+    }
+
+    @Test
+    public void testKairosDbPostOverCheckLimitIsShed() throws Exception {
+        wireMockRule.stubFor(post(urlPathEqualTo("/api/v1/datapoints/query"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"queries\":[]}").withHeader("Content-Type", "application/json").withFixedDelay(500)));
+
+        // queries differ by entity, the start may be aligned to the same sampling period
+        for (int i = 0; i < 20; i++) {
+            mockMvc.perform(post("/rest/kairosdbs/kairosdb/api/v1/datapoints/query")
+                    .content(checkQuery("e" + i)).contentType(APPLICATION_JSON))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted());
+        }
+
+        MvcResult result = mockMvc.perform(post("/rest/kairosdbs/kairosdb/api/v1/datapoints/query")
+                .content(checkQuery("e0")).contentType(APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+        MvcResult shed = mockMvc.perform(post("/rest/kairosdbs/kairosdb/api/v1/datapoints/query")
+                .content(checkQuery("e20")).contentType(APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+
+        // identical to an in-flight query, so it is coalesced and not limited
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        mockMvc.perform(asyncDispatch(shed)).andExpect(status().isTooManyRequests());
+
+        assertThat(metricsRegistry.meter("kairosdb.check.shed.5").getCount(), equalTo(1L));
+    }
+
+    private static String checkQuery(String entity) {
+        return "{\"start_absolute\":0,\"metrics\":[{\"name\":\"zmon.check.5\",\"tags\":{\"entity\":[\"" + entity + "\"]}}]}";
+    }
+
+    @Test
+    public void testSplitQueryChunksCountAgainstCheckLimit() throws Exception {
+        properties.setMinInFlightQueriesPerCheck(1);
+        properties.setMaxInFlightQueriesPerCheck(3);
+        buildController();
+
+        wireMockRule.stubFor(post(urlPathEqualTo("/api/v1/datapoints/query"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"queries\":[]}").withHeader("Content-Type", "application/json").withFixedDelay(500)));
+
+        // 31 daily chunks, none of them cached
+        long day = TimeUnit.DAYS.toMillis(1);
+        long start = (System.currentTimeMillis() / day - 30) * day;
+        MvcResult result = mockMvc.perform(post("/rest/kairosdbs/kairosdb/api/v1/datapoints/query")
+                .content("{\"start_absolute\":" + start + ",\"metrics\":[{\"name\":\"zmon.check.6\",\"aggregators\":"
+                        + "[{\"name\":\"avg\",\"align_sampling\":true,\"sampling\":{\"value\":1,\"unit\":\"hours\"}}]}]}")
+                .contentType(APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isTooManyRequests());
+
+        assertThat(metricsRegistry.histogram("kairosdb.check.chunks.6").getCount(), equalTo(1L));
+        wireMockRule.verify(3, postRequestedFor(urlPathEqualTo("/api/v1/datapoints/query")));
+    }
+
+    @Test
+    public void testGroupLeavesOutShedSplitMember() throws Exception {
+        properties.setMinInFlightQueriesPerCheck(1);
+        properties.setMaxInFlightQueriesPerCheck(2);
+        buildController();
+
+        wireMockRule.stubFor(post(urlPathEqualTo("/api/v1/datapoints/query"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json").withFixedDelay(200)
+                        .withBody("{\"queries\":[{\"sample_size\":1,\"results\":[{\"name\":\"zmon.check.7\",\"tags\":{\"entity\":[\"a\"]},\"values\":[[1,1]]}]}]}")));
+
+        // two daily chunks, the first member takes both permits of the check and the second one is shed
+        long day = TimeUnit.DAYS.toMillis(1);
+        long start = (System.currentTimeMillis() / day - 1) * day;
+        MvcResult result = mockMvc.perform(post("/rest/kairosdbs/regions/api/v1/datapoints/query")
+                .content("{\"start_absolute\":" + start + ",\"metrics\":[{\"name\":\"zmon.check.7\",\"aggregators\":"
+                        + "[{\"name\":\"avg\",\"align_sampling\":true,\"sampling\":{\"value\":1,\"unit\":\"hours\"}}]}]}")
+                .contentType(APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"kairosdb\":[\"kairosdb-eu\"]")))
+                .andExpect(content().string(not(containsString("\"kairosdb\":[\"kairosdb\"]"))));
+
+        // both chunks of the second member
+        assertThat(metricsRegistry.meter("kairosdb.check.shed.7").getCount(), equalTo(2L));
+        assertThat(metricsRegistry.meter("kairosdb.federated.failed.kairosdb").getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testGroupKairosDbPostIsMergedAndTagged() throws Exception {
+        wireMockRule.stubFor(post(urlPathEqualTo("/api/v1/datapoints/query"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                        .withBody("{\"queries\":[{\"sample_size\":1,\"results\":[{\"name\":\"zmon.check.3\",\"tags\":{\"entity\":[\"a\"]},\"values\":[[1,1]]}]}]}")));
+
+        MvcResult result = mockMvc.perform(post("/rest/kairosdbs/regions/api/v1/datapoints/query")
+                .content("{\"start_absolute\":0,\"metrics\":[{\"name\":\"zmon.check.3\"}]}").contentType(APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(content().string("{\"queries\":[{\"results\":["
+                        + "{\"name\":\"zmon.check.3\",\"tags\":{\"entity\":[\"a\"],\"kairosdb\":[\"kairosdb-eu\"]},\"values\":[[1,1]]},"
+                        + "{\"name\":\"zmon.check.3\",\"tags\":{\"entity\":[\"a\"],\"kairosdb\":[\"kairosdb\"]},\"values\":[[1,1]]}"
+                        + "],\"sample_size\":2}]}"));
+
+        wireMockRule.verify(2, postRequestedFor(urlPathEqualTo("/api/v1/datapoints/query")));
+    }
+
+    @Test
+    public void testAllKairosDbsMetricNamesAreUnited() throws Exception {
+        wireMockRule.stubFor(com.github.tomakehurst.wiremock.client.WireMock.get(urlPathEqualTo("/api/v1/metricnames"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"results\":[\"zmon.check.2\",\"zmon.check.1\"]}").withHeader("Content-Type", "application/json")));
+
+        MvcResult result = mockMvc.perform(get("/rest/kairosdbs/all/api/v1/metricnames"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(content().string("{\"results\":[\"zmon.check.1\",\"zmon.check.2\"]}"));
+    }
+
 }
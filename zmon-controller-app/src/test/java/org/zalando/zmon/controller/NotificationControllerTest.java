@@ -0,0 +1,116 @@
+package org.zalando.zmon.controller;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.zalando.stups.tokens.AccessTokens;
+import org.zalando.zmon.config.NotificationServiceConfiguration;
+import org.zalando.zmon.config.NotificationServiceProperties;
+import org.zalando.zmon.security.permission.DefaultZMonPermissionService;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class NotificationControllerTest {
+
+    @Rule
+    public final WireMockRule wireMockRule = new WireMockRule(9997);
+
+    private MockMvc mockMvc;
+    private MetricRegistry metricRegistry;
+
+    @Before
+    public void setUp() {
+        DefaultZMonPermissionService authorityService = Mockito.mock(DefaultZMonPermissionService.class);
+        Mockito.when(authorityService.getUserName()).thenReturn("jdoe");
+
+        AccessTokens accessTokens = Mockito.mock(AccessTokens.class);
+        Mockito.when(accessTokens.get(Mockito.any(String.class))).thenReturn("123456789");
+
+        NotificationServiceProperties properties = new NotificationServiceProperties();
+        properties.setUrl("http://localhost:9997");
+
+        NotificationServiceConfiguration configuration = new NotificationServiceConfiguration();
+        ReflectionTestUtils.setField(configuration, "notificationServiceProperties", properties);
+
+        this.metricRegistry = new MetricRegistry();
+        this.mockMvc = MockMvcBuilders
+                .standaloneSetup(new NotificationController(authorityService, properties, accessTokens,
+                        new ObjectMapper(), configuration.notificationServiceAsyncRestTemplate(), metricRegistry))
+                .build();
+    }
+
+    @Test
+    public void testGetTeamsIsProxied() throws Exception {
+        wireMockRule.stubFor(get(urlPathEqualTo("/api/v1/users/jdoe/teams"))
+                .willReturn(aResponse().withStatus(200).withBody("[\"stups\"]")
+                        .withHeader("Content-Type", "application/json").withHeader("X-Internal", "secret")));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/rest/notifications/teams"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().string("[\"stups\"]"))
+                .andExpect(header().doesNotExist("X-Internal"));
+
+        wireMockRule.verify(getRequestedFor(urlPathEqualTo("/api/v1/users/jdoe/teams"))
+                .withHeader("Authorization", equalTo("Bearer 123456789")));
+        assertThat(metricRegistry.timer("notification-service.get-teams").getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testSubscribeToTeamSendsJsonBody() throws Exception {
+        wireMockRule.stubFor(post(urlPathEqualTo("/api/v1/users/jdoe/teams"))
+                .willReturn(aResponse().withStatus(200).withBody("{}").withHeader("Content-Type", "application/json")));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/rest/notifications/teams")
+                .content("{\"team\":\"stups\"}").contentType(APPLICATION_JSON))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        wireMockRule.verify(postRequestedFor(urlPathEqualTo("/api/v1/users/jdoe/teams"))
+                .withRequestBody(equalToJson("{\"team\":\"stups\"}")));
+    }
+
+    @Test
+    public void testErrorStatusIsPassedThrough() throws Exception {
+        wireMockRule.stubFor(get(urlPathEqualTo("/api/v1/users/jdoe/alerts"))
+                .willReturn(aResponse().withStatus(404).withBody("{\"error\":\"not found\"}")
+                        .withHeader("Content-Type", "application/json")));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/rest/notifications/alerts"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotFound())
+                .andExpect(content().string("{\"error\":\"not found\"}"));
+
+        assertThat(metricRegistry.meter("notification-service.get-alerts.errors").getCount(), equalTo(1L));
+    }
+}
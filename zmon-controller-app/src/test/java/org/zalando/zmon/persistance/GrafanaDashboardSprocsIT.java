@@ -0,0 +1,77 @@
+package org.zalando.zmon.persistance;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+import org.zalando.zmon.persistence.GrafanaDashboardSprocService;
+import org.zalando.zmon.persistence.GrafanaDashboardSprocService.GrafanaTag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@Transactional
+public class GrafanaDashboardSprocsIT {
+
+    private static final String USER = "grafana-it";
+
+    @Autowired
+    GrafanaDashboardSprocService grafanaSprocs;
+
+    // unique tags, so dashboards already in the database do not change the counts
+    private final String tagA = "a-" + UUID.randomUUID();
+    private final String tagB = "b-" + UUID.randomUUID();
+
+    @Test
+    public void tagCountsFollowDashboardChanges() {
+        final String id1 = "it-" + UUID.randomUUID();
+        final String id2 = "it-" + UUID.randomUUID();
+
+        // insert
+        save(id1, "[\"" + tagA + "\", \"" + tagB + "\"]");
+        save(id2, "[\"" + tagA + "\", null]");
+
+        Map<String, Integer> counts = tagCounts();
+        assertThat(counts).containsEntry(tagA, 2).containsEntry(tagB, 1);
+
+        // update
+        save(id1, "[\"" + tagB + "\", \"" + tagB + "\"]");
+
+        counts = tagCounts();
+        assertThat(counts).containsEntry(tagA, 1).containsEntry(tagB, 2);
+
+        // delete
+        assertThat(grafanaSprocs.deleteGrafanaDashboard(id2, USER)).containsExactly(id2);
+
+        counts = tagCounts();
+        assertThat(counts).doesNotContainKey(tagA).containsEntry(tagB, 2);
+
+        assertThat(grafanaSprocs.deleteGrafanaDashboard(id1, USER)).containsExactly(id1);
+
+        counts = tagCounts();
+        assertThat(counts).doesNotContainKeys(tagA, tagB);
+    }
+
+    @Test
+    public void nullTagsAreNotCounted() {
+        save("it-" + UUID.randomUUID(), "[null, \"" + tagA + "\"]");
+
+        assertThat(grafanaSprocs.getTagsWithCount()).extracting(t -> t.tag).doesNotContainNull().contains(tagA);
+    }
+
+    private void save(final String id, final String tags) {
+        final String dashboard = "{\"title\": \"" + id + "\", \"tags\": " + tags + "}";
+        assertThat(grafanaSprocs.createOrUpdateGrafanaDashboard(id, id, dashboard, USER, "v2", null)).hasSize(1);
+    }
+
+    private Map<String, Integer> tagCounts() {
+        return grafanaSprocs.getTagsWithCount().stream().collect(Collectors.toMap(t -> t.tag, t -> t.count));
+    }
+}
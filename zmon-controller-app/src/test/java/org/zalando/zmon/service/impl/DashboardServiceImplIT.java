@@ -14,6 +14,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 import org.zalando.zmon.domain.Dashboard;
 import org.zalando.zmon.domain.DashboardIsEqual;
+import org.zalando.zmon.exception.DashboardVersionConflictException;
 import org.zalando.zmon.generator.DashboardGenerator;
 import org.zalando.zmon.generator.DataGenerator;
 import org.zalando.zmon.service.DashboardService;
@@ -66,6 +67,29 @@ public class DashboardServiceImplIT {
             Matchers.containsInAnyOrder(DashboardIsEqual.equalTo(dashboard0), DashboardIsEqual.equalTo(dashboard1)));
     }
 
+    @Test
+    public void testUpdateChangedDashboardIsRejected() throws Exception {
+        final Dashboard dashboard = service.createOrUpdateDashboard(dashboardGenerator.generate());
+        final Integer version = dashboard.getVersion();
+
+        // someone else saves the dashboard
+        final Dashboard updated = service.createOrUpdateDashboard(dashboard);
+        MatcherAssert.assertThat(updated.getVersion(), Matchers.equalTo(version + 1));
+
+        // saving the version read before fails
+        dashboard.setVersion(version);
+        try {
+            service.createOrUpdateDashboard(dashboard);
+            Assertions.fail("conflict expected");
+        } catch (DashboardVersionConflictException e) {
+            // expected
+        }
+
+        // without version the dashboard is overwritten
+        dashboard.setVersion(null);
+        MatcherAssert.assertThat(service.createOrUpdateDashboard(dashboard).getVersion(), Matchers.equalTo(version + 2));
+    }
+
     @Test
     public void testGetAllDashboards() throws Exception {
         final Dashboard genDashboard = dashboardGenerator.generate();
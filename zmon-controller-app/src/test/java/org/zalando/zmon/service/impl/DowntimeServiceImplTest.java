@@ -0,0 +1,246 @@
+package org.zalando.zmon.service.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.message.BasicHttpResponse;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.zalando.zmon.config.SchedulerProperties;
+import org.zalando.zmon.domain.DowntimeDetails;
+import org.zalando.zmon.persistence.AlertDefinitionSProcService;
+import org.zalando.zmon.service.impl.scheduler.SchedulerClient;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+public class DowntimeServiceImplTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final SchedulerProperties schedulerProperties = new SchedulerProperties();
+
+    private Jedis jedis;
+
+    private SchedulerClient schedulerClient;
+
+    private DowntimeServiceImpl service;
+
+    @Before
+    public void setUp() {
+        jedis = Mockito.mock(Jedis.class);
+        final JedisPool redisPool = Mockito.mock(JedisPool.class);
+        Mockito.when(redisPool.getResource()).thenReturn(jedis);
+        Mockito.when(jedis.scriptLoad(Mockito.anyString())).thenReturn("sha");
+        Mockito.when(jedis.smembers("zmon:downtimes")).thenReturn(Collections.emptySet());
+
+        schedulerClient = Mockito.mock(SchedulerClient.class);
+        Mockito.when(schedulerClient.url(Mockito.anyString())).then(i -> "http://scheduler" + i.getArguments()[0]);
+
+        service = new DowntimeServiceImpl(redisPool, redisPool, new ObjectMapper(),
+                Mockito.mock(AlertDefinitionSProcService.class), new NoOpEventLog());
+        ReflectionTestUtils.setField(service, "schedulerProperties", schedulerProperties);
+        ReflectionTestUtils.setField(service, "schedulerClient", schedulerClient);
+        ReflectionTestUtils.setField(service, "metricRegistry", metricRegistry);
+    }
+
+    @Test
+    public void testDowntimesAreReadWithScript() {
+        Mockito.when(jedis.evalsha(Mockito.eq("sha"), Mockito.anyListOf(String.class), Mockito.anyListOf(String.class)))
+               .thenReturn(Collections.singletonList("{\"id\":\"d1\",\"entity\":\"host-1\"}"));
+
+        final List<DowntimeDetails> downtimes = service.getDowntimes(ImmutableSet.of(1, 2));
+
+        MatcherAssert.assertThat(downtimes, Matchers.hasSize(1));
+        MatcherAssert.assertThat(downtimes.get(0).getId(), Matchers.equalTo("d1"));
+        Mockito.verify(jedis).evalsha("sha", Arrays.asList("zmon:downtimes", "zmon:downtimes:1", "zmon:downtimes:2"),
+                Arrays.asList("1", "2"));
+        Mockito.verify(jedis, Mockito.never()).smembers("zmon:downtimes");
+    }
+
+    @Test
+    public void testFailedScriptFallsBackOnlyOnce() {
+        Mockito.when(jedis.evalsha(Mockito.eq("sha"), Mockito.anyListOf(String.class), Mockito.anyListOf(String.class)))
+               .thenThrow(new JedisDataException("BUSY Redis is busy running a script"));
+
+        MatcherAssert.assertThat(service.getDowntimes(ImmutableSet.of(1)), Matchers.empty());
+        MatcherAssert.assertThat(service.getDowntimes(ImmutableSet.of(1)), Matchers.empty());
+
+        Mockito.verify(jedis, Mockito.times(2)).evalsha(Mockito.eq("sha"), Mockito.anyListOf(String.class),
+                Mockito.anyListOf(String.class));
+        Mockito.verify(jedis, Mockito.times(2)).smembers("zmon:downtimes");
+    }
+
+    @Test
+    public void testUnsupportedScriptingFallsBackUntilRetry() {
+        Mockito.when(jedis.evalsha(Mockito.eq("sha"), Mockito.anyListOf(String.class), Mockito.anyListOf(String.class)))
+               .thenThrow(new JedisDataException("ERR unknown command 'EVALSHA'"));
+
+        MatcherAssert.assertThat(service.getDowntimes(ImmutableSet.of(1)), Matchers.empty());
+        MatcherAssert.assertThat(service.getDowntimes(ImmutableSet.of(1)), Matchers.empty());
+
+        Mockito.verify(jedis, Mockito.times(1)).evalsha(Mockito.eq("sha"), Mockito.anyListOf(String.class),
+                Mockito.anyListOf(String.class));
+        Mockito.verify(jedis, Mockito.times(2)).smembers("zmon:downtimes");
+    }
+
+    @Test
+    public void testScriptingUnsupportedErrors() {
+        MatcherAssert.assertThat(DowntimeServiceImpl.isScriptingUnsupported(
+                new JedisDataException("ERR unknown command 'EVALSHA'")), Matchers.is(true));
+        MatcherAssert.assertThat(DowntimeServiceImpl.isScriptingUnsupported(
+                new JedisDataException("CROSSSLOT Keys in request don't hash to the same slot")), Matchers.is(true));
+        MatcherAssert.assertThat(DowntimeServiceImpl.isScriptingUnsupported(
+                new JedisDataException("READONLY You can't write against a read only slave.")), Matchers.is(false));
+        MatcherAssert.assertThat(DowntimeServiceImpl.isScriptingUnsupported(
+                new JedisDataException("WRONGTYPE Operation against a key holding the wrong kind of value")), Matchers.is(false));
+    }
+
+    @Test
+    public void testBulkDeleteSendsOneRequest() throws Exception {
+        schedulerProperties.setDowntimeBulkDelete(true);
+        givenBulkDeleteStatus(200);
+
+        service.deleteDowntimes(ImmutableSet.of("d1", "d2"));
+
+        verifyBulkDeletes(1);
+        Mockito.verify(schedulerClient, Mockito.never()).executeAsync(Mockito.anyString(),
+                Mockito.any(HttpUriRequest.class), Mockito.any());
+    }
+
+    @Test
+    public void testBulkDeleteIsNotUsedByDefault() throws Exception {
+        givenDeleteStatus(ImmutableMap.of("d1", 200));
+
+        service.deleteDowntimes(ImmutableSet.of("d1"));
+
+        verifyBulkDeletes(0);
+    }
+
+    @Test
+    public void testUnsupportedBulkDeleteFallsBackToSingleDeletes() throws Exception {
+        schedulerProperties.setDowntimeBulkDelete(true);
+        givenBulkDeleteStatus(404);
+        givenDeleteStatus(ImmutableMap.of("d1", 200, "d2", 204));
+
+        service.deleteDowntimes(ImmutableSet.of("d1", "d2"));
+        service.deleteDowntimes(ImmutableSet.of("d1"));
+
+        verifyBulkDeletes(1);
+        Mockito.verify(schedulerClient, Mockito.times(3)).executeAsync(Mockito.eq("delete-downtime"),
+                Mockito.any(HttpUriRequest.class), Mockito.any());
+    }
+
+    @Test
+    public void testFailedBulkDeleteFallsBackOnlyOnce() throws Exception {
+        schedulerProperties.setDowntimeBulkDelete(true);
+        givenBulkDeleteStatus(500);
+        givenDeleteStatus(ImmutableMap.of("d1", 200));
+
+        service.deleteDowntimes(ImmutableSet.of("d1"));
+        service.deleteDowntimes(ImmutableSet.of("d1"));
+
+        verifyBulkDeletes(2);
+    }
+
+    @Test
+    public void testFailedDeletesAreReported() {
+        // d3 fails, d4 is rejected before it is sent
+        givenDeleteStatus(ImmutableMap.of("d1", 200, "d2", 500, "d3", 0));
+        Mockito.when(schedulerClient.executeAsync(Mockito.anyString(), Mockito.argThat(deleteOf("d4")),
+                Mockito.any())).thenThrow(new IllegalStateException("client stopped"));
+
+        try {
+            service.deleteDowntimes(ImmutableSet.of("d1", "d2", "d3", "d4"));
+            Assert.fail("failed deletes were not reported");
+        } catch (RuntimeException e) {
+            MatcherAssert.assertThat(e.getMessage(), Matchers.startsWith("Delete failed for 3 downtimes"));
+            MatcherAssert.assertThat(e.getMessage(), Matchers.allOf(Matchers.containsString("d2"),
+                    Matchers.containsString("d3"), Matchers.containsString("d4"),
+                    Matchers.not(Matchers.containsString("d1"))));
+        }
+    }
+
+    @Test
+    public void testUnfinishedDeletesAreReportedAfterTimeout() {
+        schedulerProperties.setDowntimeDeleteTimeoutMillis(100);
+        schedulerProperties.setDowntimeDeleteConcurrency(1);
+        // d2 never completes, d3 is never sent as d2 keeps the only slot
+        givenDeleteStatus(ImmutableMap.of("d1", 200));
+
+        try {
+            service.deleteDowntimes(ImmutableSet.of("d1", "d2", "d3"));
+            Assert.fail("unfinished deletes were not reported");
+        } catch (RuntimeException e) {
+            MatcherAssert.assertThat(e.getMessage(), Matchers.startsWith("Delete failed for 2 downtimes"));
+            MatcherAssert.assertThat(e.getMessage(), Matchers.allOf(Matchers.containsString("d2"),
+                    Matchers.containsString("d3")));
+        }
+    }
+
+    private void givenBulkDeleteStatus(final int status) throws IOException {
+        Mockito.when(schedulerClient.execute(Mockito.eq("bulk-delete-downtimes"), Mockito.any(Request.class),
+                Mockito.<ResponseHandler<Integer>>any())).thenReturn(status);
+    }
+
+    private void verifyBulkDeletes(final int times) throws IOException {
+        Mockito.verify(schedulerClient, Mockito.times(times)).execute(Mockito.eq("bulk-delete-downtimes"),
+                Mockito.any(Request.class), Mockito.<ResponseHandler<Integer>>any());
+    }
+
+    /**
+     * Completes each delete with the given status, status 0 fails it and ids without a status never complete.
+     */
+    @SuppressWarnings("unchecked")
+    private void givenDeleteStatus(final Map<String, Integer> statusById) {
+        Mockito.when(schedulerClient.executeAsync(Mockito.eq("delete-downtime"), Mockito.any(HttpUriRequest.class),
+                Mockito.any())).then(i -> {
+                    final String uri = ((HttpUriRequest) i.getArguments()[1]).getURI().toString();
+                    final Integer status = statusById.get(uri.substring(uri.lastIndexOf('/') + 1));
+                    final FutureCallback<HttpResponse> callback = (FutureCallback<HttpResponse>) i.getArguments()[2];
+                    if (status == null) {
+                        return null;
+                    }
+
+                    if (status == 0) {
+                        callback.failed(new IOException("connection reset"));
+                    } else {
+                        callback.completed(new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null));
+                    }
+
+                    return null;
+                });
+    }
+
+    private static ArgumentMatcher<HttpUriRequest> deleteOf(final String downtimeId) {
+        return new ArgumentMatcher<HttpUriRequest>() {
+            @Override
+            public boolean matches(final Object request) {
+                return request != null
+                        && ((HttpUriRequest) request).getURI().toString().endsWith("/" + downtimeId);
+            }
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package org.zalando.zmon.service.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.zalando.zmon.config.GrafanaMigrationProperties;
+import org.zalando.zmon.persistence.GrafanaDashboardSprocService;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class GrafanaDashboardMigrationTest {
+
+    private static final Date MODIFIED = new Date(1000);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private GrafanaDashboardSprocService grafanaService;
+
+    private GrafanaDashboardMigration migration;
+
+    @Before
+    public void setUp() {
+        grafanaService = Mockito.mock(GrafanaDashboardSprocService.class);
+
+        GrafanaMigrationProperties properties = new GrafanaMigrationProperties();
+        properties.setChunkSize(2);
+        properties.setChunkPauseMillis(0);
+        migration = new GrafanaDashboardMigration(properties, grafanaService, mapper, metricRegistry);
+    }
+
+    private static GrafanaDashboardSprocService.GrafanaV1Dashboard dashboard(String id, String json) {
+        GrafanaDashboardSprocService.GrafanaV1Dashboard dashboard = new GrafanaDashboardSprocService.GrafanaV1Dashboard();
+        dashboard.id = id;
+        dashboard.dashboard = json;
+        dashboard.lastModified = MODIFIED;
+        return dashboard;
+    }
+
+    @Test
+    public void testDashboardsAreMigratedInChunks() throws Exception {
+        String v1 = "{\"rows\":[{\"panels\":[{\"targets\":[{\"groups\":[\"entity\"],\"tags\":[{\"key\":\"k\",\"value\":\"v\"}]}]}]}]}";
+
+        Mockito.when(grafanaService.getGrafanaV1DashboardCount()).thenReturn(3L);
+        Mockito.when(grafanaService.getGrafanaV1Dashboards(null, 2))
+               .thenReturn(Arrays.asList(dashboard("a", v1), dashboard("b", "not json")));
+        Mockito.when(grafanaService.getGrafanaV1Dashboards("b", 2))
+               .thenReturn(Collections.singletonList(dashboard("c", v1)));
+        Mockito.when(grafanaService.migrateGrafanaV1Dashboard(Mockito.eq("a"), Mockito.anyString(), Mockito.eq(MODIFIED)))
+               .thenReturn(Collections.singletonList("a"));
+        Mockito.when(grafanaService.migrateGrafanaV1Dashboard(Mockito.eq("c"), Mockito.anyString(), Mockito.eq(MODIFIED)))
+               .thenReturn(Collections.emptyList());
+
+        migration.run();
+
+        ArgumentCaptor<String> migrated = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(grafanaService).migrateGrafanaV1Dashboard(Mockito.eq("a"), migrated.capture(), Mockito.eq(MODIFIED));
+        MatcherAssert.assertThat(mapper.readTree(migrated.getValue()).at("/rows/0/panels/0/targets/0/groupByTags/0").textValue(),
+                Matchers.equalTo("entity"));
+        MatcherAssert.assertThat(mapper.readTree(migrated.getValue()).at("/rows/0/panels/0/targets/0/tags/k/0").textValue(),
+                Matchers.equalTo("v"));
+
+        MatcherAssert.assertThat(metricRegistry.meter("grafana.migration.migrated").getCount(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(metricRegistry.meter("grafana.migration.failed").getCount(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(metricRegistry.meter("grafana.migration.skipped").getCount(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(metricRegistry.getGauges().get("grafana.migration.remaining").getValue(), Matchers.equalTo(0L));
+    }
+}
@@ -0,0 +1,84 @@
+package org.zalando.zmon.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.zmon.config.HistoryCacheProperties;
+
+public class HistoryCacheTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    // 10:30 on some day, head window is 10:00 until now
+    private static final long NOW = 1000 * HOUR + HOUR / 2;
+
+    private final List<Long[]> loads = new ArrayList<>();
+
+    private HistoryCache cache;
+
+    @Before
+    public void setup() {
+        cache = new HistoryCache(new HistoryCacheProperties(), () -> NOW);
+    }
+
+    private HistoryCache.Loader<Long> loader(final List<Long> head, final List<Long> tail) {
+        return (from, to, limit) -> {
+            loads.add(new Long[] {from, to});
+            return HistoryCache.Loaded.complete(from != null && from == 1000 * HOUR ? head : tail);
+        };
+    }
+
+    @Test
+    public void testClosedRangeIsLoadedOnce() {
+        final HistoryCache.Loader<Long> loader = loader(Collections.emptyList(), Arrays.asList(3L, 2L, 1L));
+
+        cache.get("alert", 1, 10, 0L, 999 * HOUR, loader);
+        final List<Long> history = cache.get("alert", 1, 10, 0L, 999 * HOUR, loader);
+
+        MatcherAssert.assertThat(history, Matchers.contains(3L, 2L, 1L));
+        MatcherAssert.assertThat(loads, Matchers.hasSize(1));
+    }
+
+    @Test
+    public void testOpenRangeLoadsOnlyHeadLive() {
+        final HistoryCache.Loader<Long> loader = loader(Arrays.asList(5L, 4L), Arrays.asList(3L, 2L, 1L));
+
+        cache.get("alert", 1, 4, null, null, loader);
+        final List<Long> history = cache.get("alert", 1, 4, null, null, loader);
+
+        MatcherAssert.assertThat(history, Matchers.contains(5L, 4L, 3L, 2L));
+
+        // head, tail, head again
+        MatcherAssert.assertThat(loads, Matchers.hasSize(3));
+        MatcherAssert.assertThat(loads.get(1)[1], Matchers.equalTo(1000 * HOUR - 1));
+    }
+
+    @Test
+    public void testFullHeadSkipsTail() {
+        final List<Long> history = cache.get("alert", 1, 2, null, null,
+                loader(Arrays.asList(5L, 4L), Arrays.asList(3L)));
+
+        MatcherAssert.assertThat(history, Matchers.contains(5L, 4L));
+        MatcherAssert.assertThat(loads, Matchers.hasSize(1));
+    }
+
+    @Test
+    public void testIncompleteResultIsNotCached() {
+        final HistoryCache.Loader<Long> loader = (from, to, limit) -> {
+            loads.add(new Long[] {from, to});
+            return HistoryCache.Loaded.incomplete(Collections.emptyList());
+        };
+
+        cache.get("alert", 1, 10, 0L, 999 * HOUR, loader);
+        cache.get("alert", 1, 10, 0L, 999 * HOUR, loader);
+
+        MatcherAssert.assertThat(loads, Matchers.hasSize(2));
+    }
+}
@@ -0,0 +1,32 @@
+package org.zalando.zmon.service.impl;
+
+import java.io.IOException;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.zalando.zmon.config.MetricCacheProperties;
+import org.zalando.zmon.util.RendezvousHashing;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class MetricCacheClientTest {
+
+    @Test
+    public void testNodeIsSelectedLikeMetricCacheWritersByDefault() throws IOException {
+        final MetricCacheProperties properties = new MetricCacheProperties();
+        final MetricCacheClient client = new MetricCacheClient(properties, new MetricRegistry());
+        try {
+            for (int i = 0; i < 100; i++) {
+                MatcherAssert.assertThat(client.selectNode("app-" + i), Matchers.equalTo(Math.abs(("app-" + i).hashCode() % 3)));
+            }
+
+            properties.setRendezvousHashing(true);
+            for (int i = 0; i < 100; i++) {
+                MatcherAssert.assertThat(client.selectNode("app-" + i), Matchers.equalTo(RendezvousHashing.selectNode("app-" + i, 3)));
+            }
+        } finally {
+            client.close();
+        }
+    }
+}
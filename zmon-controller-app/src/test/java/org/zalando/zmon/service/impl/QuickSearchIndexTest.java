@@ -0,0 +1,83 @@
+package org.zalando.zmon.service.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+public class QuickSearchIndexTest {
+
+    private static QuickSearchIndex.Entry entry(String id, String title, String... teams) {
+        return new QuickSearchIndex.Entry(id, title, teams.length > 0 ? teams[0] : "", Arrays.asList(teams));
+    }
+
+    private static List<String> ids(QuickSearchIndex index, String search, List<String> teams, int limit) {
+        return index.search(search, teams, limit).stream().map(i -> i.id).collect(Collectors.toList());
+    }
+
+    private final QuickSearchIndex index = new QuickSearchIndex(Arrays.asList(
+            entry("1", "Zookeeper disk usage", "team-a"),
+            entry("12", "Disk usage", "team-b"),
+            entry("123", "Memory", "team-a"),
+            entry("7", "Available disk space", "team-a", "team-b"),
+            entry("disk", "Catalog", "team-c")), QuickSearchIndex.TeamFilter.ANY);
+
+    @Test
+    public void testMatchesAreRanked() {
+        // exact id, title prefix, then the other matches by title
+        MatcherAssert.assertThat(ids(index, "DISK", null, 10), Matchers.contains("disk", "12", "7", "1"));
+    }
+
+    @Test
+    public void testIdPrefix() {
+        MatcherAssert.assertThat(ids(index, "12", null, 10), Matchers.contains("12", "123"));
+        MatcherAssert.assertThat(ids(index, "123", null, 10), Matchers.contains("123"));
+    }
+
+    @Test
+    public void testShortAndMissingSearches() {
+        MatcherAssert.assertThat(ids(index, "", null, 10), Matchers.hasSize(5));
+        MatcherAssert.assertThat(ids(index, "ory", null, 10), Matchers.contains("123"));
+        MatcherAssert.assertThat(ids(index, "xyz", null, 10), Matchers.empty());
+        MatcherAssert.assertThat(ids(index, "disk", null, 2), Matchers.contains("disk", "12"));
+    }
+
+    @Test
+    public void testTeamFilters() {
+        MatcherAssert.assertThat(ids(index, "disk", Collections.singletonList("team-a"), 10), Matchers.contains("7", "1"));
+        MatcherAssert.assertThat(ids(index, "disk", Arrays.asList("team-b", "team-c"), 10), Matchers.contains("disk", "12", "7"));
+        MatcherAssert.assertThat(ids(index, "disk", Collections.singletonList("unknown"), 10), Matchers.empty());
+
+        QuickSearchIndex all = new QuickSearchIndex(Arrays.asList(
+                entry("a", "Disk", "team-a", "team-b"),
+                entry("b", "Disk", "team-a")), QuickSearchIndex.TeamFilter.ALL);
+        MatcherAssert.assertThat(ids(all, "disk", Arrays.asList("team-a", "team-b"), 10), Matchers.contains("a"));
+
+        QuickSearchIndex none = new QuickSearchIndex(Collections.singletonList(entry("a", "Disk")), QuickSearchIndex.TeamFilter.NONE);
+        MatcherAssert.assertThat(ids(none, "disk", Collections.singletonList("team-a"), 10), Matchers.contains("a"));
+    }
+
+    @Test
+    public void testRepeatedTrigrams() {
+        QuickSearchIndex repeated = new QuickSearchIndex(Arrays.asList(
+                entry("a", "aaaa aaaa"),
+                entry("b", "aaa"),
+                entry("c", "baaab")), QuickSearchIndex.TeamFilter.NONE);
+
+        MatcherAssert.assertThat(ids(repeated, "aaaa", null, 10), Matchers.contains("a"));
+        MatcherAssert.assertThat(ids(repeated, "aaa", null, 10), Matchers.contains("b", "a", "c"));
+        MatcherAssert.assertThat(ids(repeated, "aaab", null, 10), Matchers.contains("c"));
+    }
+
+    @Test
+    public void testIntersect() {
+        MatcherAssert.assertThat(QuickSearchIndex.intersect(new int[]{1, 3, 5, 7}, new int[]{0, 3, 4, 7, 9}),
+                Matchers.equalTo(new int[]{3, 7}));
+        MatcherAssert.assertThat(QuickSearchIndex.intersect(new int[]{1, 2}, new int[]{3, 4}), Matchers.equalTo(new int[0]));
+        MatcherAssert.assertThat(QuickSearchIndex.intersect(new int[0], new int[]{1}), Matchers.equalTo(new int[0]));
+    }
+}
@@ -0,0 +1,170 @@
+package org.zalando.zmon.service.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.zalando.zmon.config.QuickSearchProperties;
+import org.zalando.zmon.persistence.GrafanaDashboardSprocService;
+import org.zalando.zmon.persistence.QuickSearchResultItem;
+import org.zalando.zmon.persistence.QuickSearchSprocService;
+import org.zalando.zmon.service.QuickSearchService;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class QuickSearchServiceImplTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final QuickSearchProperties properties = new QuickSearchProperties();
+
+    private QuickSearchSprocService searchService;
+
+    private GrafanaDashboardSprocService grafanaService;
+
+    private QuickSearchServiceImpl quickSearch;
+
+    @Before
+    public void setUp() {
+        searchService = Mockito.mock(QuickSearchSprocService.class);
+        grafanaService = Mockito.mock(GrafanaDashboardSprocService.class);
+
+        properties.setTimeoutMillis(200);
+        quickSearch = new QuickSearchServiceImpl(properties, searchService, grafanaService, new ObjectMapper(),
+                metricRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        quickSearch.close();
+    }
+
+    private static List<QuickSearchResultItem> item(String id) {
+        return item(id, "title " + id, "team");
+    }
+
+    private static List<QuickSearchResultItem> item(String id, String title, String team) {
+        QuickSearchResultItem item = new QuickSearchResultItem();
+        item.id = id;
+        item.title = title;
+        item.team = team;
+        return Collections.singletonList(item);
+    }
+
+    private static GrafanaDashboardSprocService.GrafanaDashboardSearchResult grafanaDashboard(String id, String tags) {
+        GrafanaDashboardSprocService.GrafanaDashboardSearchResult dashboard = new GrafanaDashboardSprocService.GrafanaDashboardSearchResult();
+        dashboard.id = id;
+        dashboard.title = "title " + id;
+        dashboard.tags = tags;
+        return dashboard;
+    }
+
+    @Test
+    public void testLoadedIndexIsSearched() {
+        Mockito.when(searchService.quickSearchAlerts("", null, Integer.MAX_VALUE)).thenReturn(item("1", "Disk full", "team-a"));
+        Mockito.when(searchService.quickSearchChecks("", null, Integer.MAX_VALUE)).thenReturn(item("2", "Disk usage", "team-b"));
+        Mockito.when(searchService.quickSearchDashboards("", null, Integer.MAX_VALUE)).thenReturn(item("3", "Disks", ""));
+        Mockito.when(grafanaService.searchGrafanaDashboards("", null, null, null))
+               .thenReturn(Arrays.asList(grafanaDashboard("disk-a", "[\"team-a\"]"), grafanaDashboard("disk-b", "[]")));
+
+        quickSearch.loadIndexes();
+
+        Map<String, List<QuickSearchResultItem>> results = quickSearch.search("disk", Collections.singletonList("team-a"), 5);
+
+        MatcherAssert.assertThat(results.get(QuickSearchService.ALERTS).get(0).title, Matchers.equalTo("Disk full"));
+        MatcherAssert.assertThat(results.get(QuickSearchService.CHECKS), Matchers.empty());
+        MatcherAssert.assertThat(results.get(QuickSearchService.DASHBOARDS).get(0).id, Matchers.equalTo("3"));
+        MatcherAssert.assertThat(results.get(QuickSearchService.GRAFANA_DASHBOARDS), Matchers.hasSize(1));
+        MatcherAssert.assertThat(results.get(QuickSearchService.GRAFANA_DASHBOARDS).get(0).id, Matchers.equalTo("disk-a"));
+
+        // only the index load hit the database
+        Mockito.verify(searchService, Mockito.never()).quickSearchAlerts("disk", Collections.singletonList("team-a"), 5);
+        MatcherAssert.assertThat(metricRegistry.getGauges().get("quicksearch.index.size").getValue(), Matchers.equalTo(5));
+    }
+
+    @Test
+    public void testSourcesAreSearchedConcurrently() {
+        // every source waits until all four are running
+        CountDownLatch running = new CountDownLatch(4);
+        Mockito.when(searchService.quickSearchAlerts("x", null, 5)).then(i -> await(running, item("a")));
+        Mockito.when(searchService.quickSearchChecks("x", null, 5)).then(i -> await(running, item("c")));
+        Mockito.when(searchService.quickSearchDashboards("x", null, 5)).then(i -> await(running, item("d")));
+        Mockito.when(searchService.quickSearchGrafanaDashboards("x", null, 5)).then(i -> await(running, item("g")));
+
+        Map<String, List<QuickSearchResultItem>> results = quickSearch.search("x", null, 5);
+
+        MatcherAssert.assertThat(results.keySet(), Matchers.contains(QuickSearchService.ALERTS, QuickSearchService.CHECKS,
+                QuickSearchService.DASHBOARDS, QuickSearchService.GRAFANA_DASHBOARDS));
+        MatcherAssert.assertThat(results.get(QuickSearchService.GRAFANA_DASHBOARDS).get(0).id, Matchers.equalTo("g"));
+        MatcherAssert.assertThat(metricRegistry.timer("quicksearch.alerts").getCount(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    public void testSlowSourceReturnsNoResults() {
+        Mockito.when(searchService.quickSearchAlerts("x", null, 5)).thenReturn(item("a"));
+        Mockito.when(searchService.quickSearchChecks("x", null, 5)).then(i -> {
+            release.await(5, TimeUnit.SECONDS);
+            return item("c");
+        });
+        Mockito.when(searchService.quickSearchDashboards("x", null, 5)).thenThrow(new IllegalStateException("down"));
+        Mockito.when(searchService.quickSearchGrafanaDashboards("x", null, 5)).thenReturn(item("g"));
+
+        Map<String, List<QuickSearchResultItem>> results = quickSearch.search("x", null, 5);
+
+        MatcherAssert.assertThat(results.get(QuickSearchService.ALERTS).get(0).id, Matchers.equalTo("a"));
+        MatcherAssert.assertThat(results.get(QuickSearchService.CHECKS), Matchers.empty());
+        MatcherAssert.assertThat(results.get(QuickSearchService.DASHBOARDS), Matchers.empty());
+        MatcherAssert.assertThat(results.get(QuickSearchService.GRAFANA_DASHBOARDS).get(0).id, Matchers.equalTo("g"));
+        MatcherAssert.assertThat(metricRegistry.meter("quicksearch.timeout.checks").getCount(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(metricRegistry.meter("quicksearch.failed.dashboards").getCount(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    public void testLocalWritesReloadIndex() throws InterruptedException {
+        properties.setIndexRefreshSeconds(3600);
+        quickSearch.start();
+        verifyIndexLoads(1);
+
+        quickSearch.reloadIndex();
+        verifyIndexLoads(2);
+
+        // within a transaction only after the commit
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            quickSearch.reloadIndex();
+            Thread.sleep(100);
+            verifyIndexLoads(2);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verifyIndexLoads(3);
+    }
+
+    private void verifyIndexLoads(int times) {
+        Mockito.verify(searchService, Mockito.timeout(1000).times(times)).quickSearchAlerts("", null, Integer.MAX_VALUE);
+    }
+
+    private static List<QuickSearchResultItem> await(CountDownLatch latch, List<QuickSearchResultItem> result)
+            throws InterruptedException {
+        latch.countDown();
+        latch.await(5, TimeUnit.SECONDS);
+        return result;
+    }
+}
@@ -0,0 +1,40 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+public class EncodedBodyTest {
+
+    static byte[] gzip(final String content) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testDecoded() throws IOException {
+        MatcherAssert.assertThat(new String(new EncodedBody(gzip("{\"a\":1}"), true).decoded(), StandardCharsets.UTF_8),
+                Matchers.equalTo("{\"a\":1}"));
+
+        final byte[] plain = "{}".getBytes(StandardCharsets.UTF_8);
+        MatcherAssert.assertThat(new EncodedBody(plain, false).decoded(), Matchers.sameInstance(plain));
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        MatcherAssert.assertThat(EncodedBody.acceptsGzip("gzip, deflate"), Matchers.is(true));
+        MatcherAssert.assertThat(EncodedBody.acceptsGzip("deflate, GZIP;q=0.5"), Matchers.is(true));
+        MatcherAssert.assertThat(EncodedBody.acceptsGzip("gzip;q=0"), Matchers.is(false));
+        MatcherAssert.assertThat(EncodedBody.acceptsGzip("identity"), Matchers.is(false));
+        MatcherAssert.assertThat(EncodedBody.acceptsGzip(null), Matchers.is(false));
+    }
+}
@@ -0,0 +1,54 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+public class KairosDBFederationTest {
+
+    private static EncodedBody body(final String content) {
+        return new EncodedBody(content.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    private static String content(final EncodedBody body) throws Exception {
+        return new String(body.decoded(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testQueriesAreMergedByIndexAndFailedSourcesSkipped() throws Exception {
+        final EncodedBody merged = KairosDBFederation.mergeQueries(Arrays.asList("a", "b", "c"), Arrays.asList(
+                body("{\"queries\":[{\"sample_size\":1,\"results\":[{\"name\":\"m1\",\"values\":[[1,1]]}]},"
+                        + "{\"sample_size\":0,\"results\":[]}]}"),
+                null,
+                body("{\"queries\":[{\"results\":[{\"name\":\"m1\",\"tags\":{},\"values\":[[2,2]]}],\"sample_size\":1},"
+                        + "{\"sample_size\":1,\"results\":[{\"name\":\"m2\",\"values\":[[3,3]]}]}]}")));
+
+        MatcherAssert.assertThat(content(merged), Matchers.equalTo("{\"queries\":["
+                + "{\"results\":[{\"name\":\"m1\",\"values\":[[1,1]],\"tags\":{\"kairosdb\":[\"a\"]}},"
+                + "{\"name\":\"m1\",\"tags\":{\"kairosdb\":[\"c\"]},\"values\":[[2,2]]}],\"sample_size\":2},"
+                + "{\"results\":[{\"name\":\"m2\",\"values\":[[3,3]],\"tags\":{\"kairosdb\":[\"c\"]}}],\"sample_size\":1}]}"));
+    }
+
+    @Test
+    public void testErrorResponseIsSkipped() throws Exception {
+        final EncodedBody merged = KairosDBFederation.mergeQueries(Arrays.asList("a", "b"), Arrays.asList(
+                body("{\"errors\":[\"query failed\"]}"),
+                body("{\"queries\":[{\"sample_size\":0,\"results\":[]}]}")));
+
+        MatcherAssert.assertThat(content(merged), Matchers.equalTo("{\"queries\":[{\"results\":[],\"sample_size\":0}]}"));
+    }
+
+    @Test
+    public void testTagsAreUnited() throws Exception {
+        final EncodedBody merged = KairosDBFederation.mergeTags(Arrays.asList(
+                body("{\"queries\":[{\"results\":[{\"name\":\"m1\",\"tags\":{\"entity\":[\"x\"]}}]}]}"),
+                body("{\"queries\":[{\"results\":[{\"name\":\"m1\",\"tags\":{\"entity\":[\"w\",\"x\"],\"key\":[\"k\"]}}]}]}")));
+
+        MatcherAssert.assertThat(content(merged), Matchers.equalTo(
+                "{\"queries\":[{\"results\":[{\"name\":\"m1\",\"tags\":{\"entity\":[\"w\",\"x\"],\"key\":[\"k\"]}}]}]}"));
+    }
+}
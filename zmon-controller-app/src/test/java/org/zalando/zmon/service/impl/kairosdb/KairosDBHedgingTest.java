@@ -0,0 +1,154 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.zalando.zmon.config.KairosDBProperties;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class KairosDBHedgingTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final List<SettableListenableFuture<String>> requests = new ArrayList<>();
+
+    private KairosDBProperties properties;
+
+    private KairosDBHedging hedging;
+
+    @Before
+    public void setUp() {
+        properties = new KairosDBProperties();
+        properties.setHedgeInitialDelayMillis(50);
+        hedging = new KairosDBHedging(properties, metricRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        hedging.close();
+    }
+
+    private Supplier<ListenableFuture<String>> replica() {
+        return () -> {
+            final SettableListenableFuture<String> request = new SettableListenableFuture<>();
+            synchronized (requests) {
+                requests.add(request);
+            }
+            return request;
+        };
+    }
+
+    private ListenableFuture<String> execute() {
+        return hedging.execute("kairosdb", Arrays.asList(replica(), replica()));
+    }
+
+    private SettableListenableFuture<String> awaitRequest(final int index) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            synchronized (requests) {
+                if (requests.size() > index) {
+                    return requests.get(index);
+                }
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        throw new AssertionError("request " + index + " was not sent");
+    }
+
+    @Test
+    public void testFastReplicaIsNotHedged() throws Exception {
+        final ListenableFuture<String> result = execute();
+        requests.get(0).set("first");
+
+        MatcherAssert.assertThat(result.get(), Matchers.equalTo("first"));
+        TimeUnit.MILLISECONDS.sleep(100);
+        MatcherAssert.assertThat(requests, Matchers.hasSize(1));
+        MatcherAssert.assertThat(metricRegistry.meter("kairosdb.hedge.sent.kairosdb").getCount(), Matchers.equalTo(0L));
+    }
+
+    @Test
+    public void testSlowReplicaIsHedgedAndCancelled() throws Exception {
+        final ListenableFuture<String> result = execute();
+
+        awaitRequest(1).set("hedge");
+
+        MatcherAssert.assertThat(result.get(), Matchers.equalTo("hedge"));
+        MatcherAssert.assertThat(requests.get(0).isCancelled(), Matchers.is(true));
+        MatcherAssert.assertThat(metricRegistry.meter("kairosdb.hedge.sent.kairosdb").getCount(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(metricRegistry.meter("kairosdb.hedge.won.kairosdb").getCount(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    public void testFailedReplicaIsHedgedRightAway() throws Exception {
+        properties.setHedgeInitialDelayMillis(60000);
+        final ListenableFuture<String> result = execute();
+
+        requests.get(0).setException(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        MatcherAssert.assertThat(requests, Matchers.hasSize(2));
+
+        requests.get(1).setException(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+        try {
+            result.get();
+            MatcherAssert.assertThat("expected failure", false);
+        } catch (ExecutionException e) {
+            MatcherAssert.assertThat(e.getCause(), Matchers.instanceOf(HttpServerErrorException.class));
+        }
+    }
+
+    @Test
+    public void testBadQueryIsNotHedged() throws Exception {
+        final ListenableFuture<String> result = execute();
+        requests.get(0).setException(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+        try {
+            result.get();
+            MatcherAssert.assertThat("expected failure", false);
+        } catch (ExecutionException e) {
+            MatcherAssert.assertThat(e.getCause(), Matchers.instanceOf(HttpClientErrorException.class));
+        }
+        MatcherAssert.assertThat(requests, Matchers.hasSize(1));
+    }
+
+    @Test
+    public void testReplicaFailingToSendDoesNotFailRequestInFlight() throws Exception {
+        final ListenableFuture<String> result = hedging.execute("kairosdb", Arrays.asList(replica(), () -> {
+            throw new IllegalStateException("I/O reactor stopped");
+        }));
+
+        // the hedge was tried and could not be sent
+        for (int i = 0; i < 100 && metricRegistry.meter("kairosdb.hedge.sent.kairosdb").getCount() == 0; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        MatcherAssert.assertThat(metricRegistry.meter("kairosdb.hedge.sent.kairosdb").getCount(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(result.isDone(), Matchers.is(false));
+
+        requests.get(0).set("first");
+        MatcherAssert.assertThat(result.get(), Matchers.equalTo("first"));
+    }
+
+    @Test
+    public void testPrimaryFailingToSendIsHedgedRightAway() throws Exception {
+        properties.setHedgeInitialDelayMillis(60000);
+        final ListenableFuture<String> result = hedging.execute("kairosdb", Arrays.asList(() -> {
+            throw new IllegalStateException("I/O reactor stopped");
+        }, replica()));
+
+        requests.get(0).set("hedge");
+        MatcherAssert.assertThat(result.get(), Matchers.equalTo("hedge"));
+    }
+}
@@ -0,0 +1,95 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.zmon.config.KairosDBCacheProperties;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class KairosDBQueryCacheTest {
+
+    private static final long NOW = 1_500_000_000_000L;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicLong now = new AtomicLong(NOW);
+
+    private KairosDBCacheProperties properties;
+
+    private MetricRegistry metricRegistry;
+
+    private KairosDBQueryCache cache;
+
+    @Before
+    public void setUp() {
+        properties = new KairosDBCacheProperties();
+        metricRegistry = new MetricRegistry();
+        cache = new KairosDBQueryCache(properties, metricRegistry, now::get);
+    }
+
+    private JsonNode json(final String json) throws IOException {
+        return mapper.readTree(json.replace('\'', '"'));
+    }
+
+    @Test
+    public void testKeyIgnoresFieldOrder() throws IOException {
+        final JsonNode a = json("{'start_absolute':1,'metrics':[{'name':'zmon.check.1','tags':{'a':'1','b':'2'}}]}");
+        final JsonNode b = json("{'metrics':[{'tags':{'b':'2','a':'1'},'name':'zmon.check.1'}],'start_absolute':1}");
+
+        MatcherAssert.assertThat(KairosDBQueryCache.key("kairosdb", a), Matchers.equalTo(KairosDBQueryCache.key("kairosdb", b)));
+        MatcherAssert.assertThat(KairosDBQueryCache.key("kairosdb", a), Matchers.not(Matchers.equalTo(KairosDBQueryCache.key("other", b))));
+    }
+
+    @Test
+    public void testTtlDependsOnQueryEnd() throws IOException {
+        final long closedEnd = NOW - TimeUnit.HOURS.toMillis(1);
+        final long openEnd = NOW - TimeUnit.SECONDS.toMillis(10);
+
+        MatcherAssert.assertThat(cache.ttlSeconds(json("{'start_absolute':0,'end_absolute':" + closedEnd + "}")),
+                Matchers.equalTo(properties.getLongTtlSeconds()));
+        MatcherAssert.assertThat(cache.ttlSeconds(json("{'start_absolute':0,'end_absolute':" + openEnd + "}")),
+                Matchers.equalTo(properties.getShortTtlSeconds()));
+        MatcherAssert.assertThat(cache.ttlSeconds(json("{'start_absolute':0}")),
+                Matchers.equalTo(properties.getShortTtlSeconds()));
+        MatcherAssert.assertThat(cache.ttlSeconds(json("{'start_relative':{'value':1,'unit':'hours'}}")),
+                Matchers.equalTo(properties.getShortTtlSeconds()));
+    }
+
+    @Test
+    public void testEntriesExpireAfterTtl() throws IOException {
+        final JsonNode query = json("{'start_relative':{'value':1,'unit':'hours'}}");
+        final KairosDBQueryCache.Key key = KairosDBQueryCache.key("kairosdb", query);
+
+        MatcherAssert.assertThat(cache.get(key, "1"), Matchers.nullValue());
+
+        final EncodedBody body = new EncodedBody(new byte[]{1, 2, 3}, false);
+        cache.put(key, query, body);
+        MatcherAssert.assertThat(cache.get(key, "1"), Matchers.sameInstance(body));
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(properties.getShortTtlSeconds()));
+        MatcherAssert.assertThat(cache.get(key, "1"), Matchers.nullValue());
+
+        MatcherAssert.assertThat(metricRegistry.meter("kairosdb.check.cache.hit.1").getCount(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(metricRegistry.meter("kairosdb.check.cache.miss.1").getCount(), Matchers.equalTo(2L));
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        properties.setEnabled(false);
+        final JsonNode query = json("{'start_absolute':0}");
+        final KairosDBQueryCache.Key key = KairosDBQueryCache.key("kairosdb", query);
+
+        cache.put(key, query, new EncodedBody(new byte[]{1}, false));
+
+        MatcherAssert.assertThat(cache.get(key, "1"), Matchers.nullValue());
+    }
+}
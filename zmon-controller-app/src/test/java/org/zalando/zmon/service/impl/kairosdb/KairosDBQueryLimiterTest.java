@@ -0,0 +1,77 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.zmon.config.KairosDBProperties;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class KairosDBQueryLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private KairosDBProperties properties;
+
+    private MetricRegistry metricRegistry;
+
+    private KairosDBQueryLimiter limiter;
+
+    @Before
+    public void setUp() {
+        properties = new KairosDBProperties();
+        properties.setMaxInFlightQueries(3);
+        properties.setMaxInFlightQueriesPerCheck(2);
+        properties.setMinInFlightQueriesPerCheck(1);
+        properties.setTargetLatencyMillis(1000);
+        metricRegistry = new MetricRegistry();
+        limiter = new KairosDBQueryLimiter(properties, metricRegistry, now::get);
+    }
+
+    @Test
+    public void testPerCheckLimit() {
+        limiter.acquire("1");
+        final KairosDBQueryLimiter.Permit permit = limiter.acquire("1");
+
+        try {
+            limiter.acquire("1");
+            MatcherAssert.assertThat("expected rejection", false);
+        } catch (KairosDBOverloadedException e) {
+            MatcherAssert.assertThat(metricRegistry.meter("kairosdb.check.shed.1").getCount(), Matchers.equalTo(1L));
+        }
+
+        // other checks are not affected
+        limiter.acquire("2");
+
+        permit.release();
+        permit.release();
+        MatcherAssert.assertThat(limiter.inFlight(), Matchers.equalTo(2));
+        limiter.acquire("1");
+    }
+
+    @Test(expected = KairosDBOverloadedException.class)
+    public void testGlobalLimit() {
+        limiter.acquire("1");
+        limiter.acquire("2");
+        limiter.acquire("3");
+        limiter.acquire("4");
+    }
+
+    @Test
+    public void testLimitAdaptsToLatency() {
+        final KairosDBQueryLimiter.Permit slow = limiter.acquire("1");
+        now.addAndGet(5000);
+        slow.release();
+
+        MatcherAssert.assertThat(limiter.limit("1"), Matchers.equalTo(1));
+
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire("1").release();
+        }
+        MatcherAssert.assertThat(limiter.limit("1"), Matchers.equalTo(2));
+    }
+}
@@ -0,0 +1,116 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.zmon.config.KairosDBCacheProperties;
+import org.zalando.zmon.config.KairosDBProperties;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class KairosDBQueryRewriterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final long NOW = TimeUnit.DAYS.toMillis(1000);
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private KairosDBQueryRewriter rewriter;
+
+    @Before
+    public void setUp() {
+        final KairosDBProperties properties = new KairosDBProperties();
+        properties.getRollups().add(rollup(TimeUnit.DAYS.toSeconds(7), "{name}.1h"));
+        properties.getRollups().add(rollup(TimeUnit.DAYS.toSeconds(2), "{name}.5m"));
+        properties.setDownsampleMinRangeSeconds(TimeUnit.DAYS.toSeconds(7));
+        properties.setDownsampleMaxPoints(1000);
+        rewriter = new KairosDBQueryRewriter(properties, metricRegistry, () -> NOW);
+    }
+
+    private static KairosDBProperties.RollupConfig rollup(final long minRangeSeconds, final String metric) {
+        final KairosDBProperties.RollupConfig rollup = new KairosDBProperties.RollupConfig();
+        rollup.setMinRangeSeconds(minRangeSeconds);
+        rollup.setMetric(metric);
+        return rollup;
+    }
+
+    private static JsonNode query(final String json) throws Exception {
+        return MAPPER.readTree(json);
+    }
+
+    @Test
+    public void testShortRangeIsNotRewritten() throws Exception {
+        final JsonNode query = query("{\"start_relative\":{\"value\":1,\"unit\":\"hours\"},\"metrics\":[{\"name\":\"zmon.check.1\"}]}");
+
+        MatcherAssert.assertThat(rewriter.rewrite(query, "1"), Matchers.is(false));
+        MatcherAssert.assertThat(query.toString(), Matchers.equalTo(
+                "{\"start_relative\":{\"value\":1,\"unit\":\"hours\"},\"metrics\":[{\"name\":\"zmon.check.1\"}]}"));
+    }
+
+    @Test
+    public void testLongestMatchingRollupIsUsed() throws Exception {
+        final JsonNode query = query("{\"start_relative\":{\"value\":3,\"unit\":\"days\"},"
+                + "\"metrics\":[{\"name\":\"zmon.check.1\",\"aggregators\":[{\"name\":\"max\"}]},{\"name\":\"other\"}]}");
+
+        MatcherAssert.assertThat(rewriter.rewrite(query, "1"), Matchers.is(true));
+        MatcherAssert.assertThat(query.at("/metrics/0/name").asText(), Matchers.equalTo("zmon.check.1.5m"));
+        MatcherAssert.assertThat(query.at("/metrics/1/name").asText(), Matchers.equalTo("other"));
+
+        final JsonNode longer = query("{\"start_absolute\":0,\"end_absolute\":" + TimeUnit.DAYS.toMillis(90)
+                + ",\"metrics\":[{\"name\":\"zmon.check.1\",\"aggregators\":[{\"name\":\"max\"}]}]}");
+        rewriter.rewrite(longer, "1");
+        MatcherAssert.assertThat(longer.at("/metrics/0/name").asText(), Matchers.equalTo("zmon.check.1.1h"));
+        MatcherAssert.assertThat(longer.at("/metrics/0/aggregators").toString(), Matchers.equalTo("[{\"name\":\"max\"}]"));
+
+        MatcherAssert.assertThat(metricRegistry.meter("kairosdb.check.rewrite.rollup.1").getCount(), Matchers.equalTo(2L));
+    }
+
+    @Test
+    public void testDownsamplingIsAddedWithoutAggregators() throws Exception {
+        final JsonNode query = query("{\"start_relative\":{\"value\":90,\"unit\":\"days\"},\"metrics\":[{\"name\":\"custom\"}]}");
+
+        MatcherAssert.assertThat(rewriter.rewrite(query, "1"), Matchers.is(true));
+        MatcherAssert.assertThat(query.at("/metrics/0/aggregators").toString(), Matchers.equalTo(
+                "[{\"name\":\"avg\",\"align_sampling\":true,\"sampling\":{\"value\":144,\"unit\":\"minutes\"}}]"));
+        MatcherAssert.assertThat(metricRegistry.meter("kairosdb.rewrite.downsample").getCount(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    public void testDownsampledQueryCanBeSplit() throws Exception {
+        final long start = NOW - TimeUnit.DAYS.toMillis(7) - 12_345L;
+        final JsonNode query = query("{\"start_absolute\":" + start + ",\"end_absolute\":" + NOW
+                + ",\"metrics\":[{\"name\":\"custom\"}]}");
+
+        MatcherAssert.assertThat(rewriter.rewrite(query, "1"), Matchers.is(true));
+        MatcherAssert.assertThat(query.get("start_absolute").asLong(), Matchers.equalTo(start - start % TimeUnit.MINUTES.toMillis(12)));
+
+        final KairosDBQuerySplitter splitter = new KairosDBQuerySplitter(new KairosDBCacheProperties(), () -> NOW);
+        final List<ObjectNode> chunks = splitter.split(query);
+        MatcherAssert.assertThat(chunks, Matchers.hasSize(9));
+        MatcherAssert.assertThat(chunks.get(0).get("start_absolute"), Matchers.equalTo(query.get("start_absolute")));
+        MatcherAssert.assertThat(chunks.get(1).get("start_absolute").asLong(), Matchers.equalTo(NOW - TimeUnit.DAYS.toMillis(7)));
+    }
+
+    @Test
+    public void testSamplingDividesDay() {
+        MatcherAssert.assertThat(rewriter.samplingMinutes(TimeUnit.DAYS.toMillis(7)), Matchers.equalTo(12L));
+        MatcherAssert.assertThat(rewriter.samplingMinutes(TimeUnit.MINUTES.toMillis(10)), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(rewriter.samplingMinutes(TimeUnit.DAYS.toMillis(3650)), Matchers.equalTo(5760L));
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        MatcherAssert.assertThat(rewriter.rangeMillis(query("{\"start_relative\":{\"value\":1,\"unit\":\"months\"},"
+                + "\"end_relative\":{\"value\":1,\"unit\":\"days\"}}")), Matchers.equalTo(TimeUnit.DAYS.toMillis(29)));
+        MatcherAssert.assertThat(rewriter.rangeMillis(query("{\"end_absolute\":1000}")), Matchers.equalTo(0L));
+    }
+}
@@ -0,0 +1,165 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.zmon.config.KairosDBCacheProperties;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class KairosDBQuerySplitterTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static final long NOW = 100 * DAY + 3600_000L;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private KairosDBCacheProperties properties;
+
+    private KairosDBQuerySplitter splitter;
+
+    @Before
+    public void setUp() {
+        properties = new KairosDBCacheProperties();
+        splitter = new KairosDBQuerySplitter(properties, () -> NOW);
+    }
+
+    private JsonNode json(final String json) throws IOException {
+        return mapper.readTree(json.replace('\'', '"'));
+    }
+
+    @Test
+    public void testSplitAbsoluteRangeIntoAlignedChunks() throws IOException {
+        final long start = 97 * DAY + 60_000L;
+        final long end = 99 * DAY + 120_000L;
+        final List<ObjectNode> chunks = splitter.split(json("{'start_absolute':" + start + ",'end_absolute':" + end
+                + ",'metrics':[{'name':'zmon.check.1'}]}"));
+
+        MatcherAssert.assertThat(chunks, Matchers.hasSize(3));
+        assertRange(chunks.get(0), start, 98 * DAY - 1);
+        assertRange(chunks.get(1), 98 * DAY, 99 * DAY - 1);
+        assertRange(chunks.get(2), 99 * DAY, end);
+    }
+
+    @Test
+    public void testNewestChunkOfOpenRangeStaysOpen() throws IOException {
+        final List<ObjectNode> chunks = splitter.split(json("{'start_absolute':" + (99 * DAY) + ",'metrics':[{'name':'zmon.check.1'}]}"));
+
+        MatcherAssert.assertThat(chunks, Matchers.hasSize(2));
+        assertRange(chunks.get(0), 99 * DAY, 100 * DAY - 1);
+        MatcherAssert.assertThat(chunks.get(1).get("start_absolute").asLong(), Matchers.equalTo(100 * DAY));
+        MatcherAssert.assertThat(chunks.get(1).has("end_absolute"), Matchers.is(false));
+    }
+
+    @Test
+    public void testAlignedSamplingIsSplit() throws IOException {
+        MatcherAssert.assertThat(splitter.split(json("{'start_absolute':0,'end_absolute':" + (3 * DAY) + ",'metrics':[{'name':'zmon.check.1',"
+                + "'aggregators':[{'name':'avg','align_sampling':true,'sampling':{'value':1,'unit':'hours'}}]}]}")), Matchers.hasSize(4));
+    }
+
+    @Test
+    public void testSplitQueriesHaveTheBucketsOfTheUnsplitQuery() throws IOException {
+        final long[] starts = {96 * DAY, 97 * DAY + 60_000L, 97 * DAY + 120_000L, 97 * DAY + 123_456L};
+        final String[] aggregators = {
+                "{'name':'avg','align_sampling':true,'sampling':{'value':1,'unit':'minutes'}}",
+                "{'name':'avg','align_sampling':true,'sampling':{'value':5,'unit':'minutes'}}",
+                "{'name':'avg','align_start_time':true,'sampling':{'value':5,'unit':'minutes'}}"};
+
+        int split = 0;
+        for (final long start : starts) {
+            for (final String aggregator : aggregators) {
+                final JsonNode query = json("{'start_absolute':" + start + ",'end_absolute':" + (99 * DAY + 3600_000L)
+                        + ",'metrics':[{'name':'zmon.check.1','aggregators':[" + aggregator + "]}]}");
+                final List<ObjectNode> chunks = splitter.split(query);
+                if (!chunks.isEmpty()) {
+                    split++;
+                }
+
+                for (final ObjectNode chunk : chunks) {
+                    final long end = chunk.get("end_absolute").asLong();
+                    for (long t = chunk.get("start_absolute").asLong(); t <= end; t += 30_000L) {
+                        MatcherAssert.assertThat(aggregator + " from " + start + " at " + t, bucket(chunk, t),
+                                Matchers.equalTo(bucket(query, t)));
+                    }
+                }
+            }
+        }
+
+        // aligned starts with align_sampling
+        MatcherAssert.assertThat(split, Matchers.equalTo(4));
+    }
+
+    /**
+     * The start of the KairosDB bucket a datapoint at {@code time} falls into.
+     */
+    private static long bucket(final JsonNode query, final long time) {
+        final JsonNode aggregator = query.path("metrics").path(0).path("aggregators").path(0);
+        final long unitMillis = KairosDBQuerySplitter.UNIT_MILLIS.get(aggregator.path("sampling").path("unit").asText());
+        final long samplingMillis = unitMillis * aggregator.path("sampling").path("value").asLong();
+
+        final long start = query.get("start_absolute").asLong();
+        final long base = aggregator.path("align_sampling").asBoolean() ? start - start % unitMillis : start;
+        return base + (time - base) / samplingMillis * samplingMillis;
+    }
+
+    @Test
+    public void testQueriesDependingOnRangeAreNotSplit() throws IOException {
+        final String range = "'start_absolute':0,'end_absolute':" + (3 * DAY);
+
+        for (String metric : Arrays.asList(
+                "{'name':'zmon.check.1','aggregators':[{'name':'avg','sampling':{'value':1,'unit':'hours'}}]}",
+                "{'name':'zmon.check.1','aggregators':[{'name':'avg','align_start_time':true,'sampling':{'value':1,'unit':'hours'}}]}",
+                "{'name':'zmon.check.1','aggregators':[{'name':'avg','align_sampling':true,'sampling':{'value':7,'unit':'hours'}}]}",
+                "{'name':'zmon.check.1','aggregators':[{'name':'avg','align_sampling':true,'sampling':{'value':1,'unit':'months'}}]}",
+                "{'name':'zmon.check.1','aggregators':[{'name':'rate','sampling':{'value':1,'unit':'minutes'}}]}",
+                "{'name':'zmon.check.1','limit':10}")) {
+            MatcherAssert.assertThat(metric, splitter.split(json("{" + range + ",'metrics':[" + metric + "]}")), Matchers.empty());
+        }
+
+        MatcherAssert.assertThat(splitter.split(json("{'start_absolute':1,'end_absolute':" + (3 * DAY) + ",'metrics':[{'name':'zmon.check.1',"
+                + "'aggregators':[{'name':'avg','align_sampling':true,'sampling':{'value':1,'unit':'hours'}}]}]}")), Matchers.empty());
+        MatcherAssert.assertThat(splitter.split(json("{'start_absolute':" + (100 * DAY) + ",'metrics':[{'name':'zmon.check.1'}]}")), Matchers.empty());
+        MatcherAssert.assertThat(splitter.split(json("{'start_relative':{'value':30,'unit':'days'},'metrics':[{'name':'zmon.check.1'}]}")), Matchers.empty());
+
+        properties.setSplitMaxChunks(2);
+        MatcherAssert.assertThat(splitter.split(json("{" + range + ",'metrics':[{'name':'zmon.check.1'}]}")), Matchers.empty());
+    }
+
+    @Test
+    public void testMerge() throws IOException {
+        final JsonNode first = json("{'queries':[{'sample_size':2,'results':["
+                + "{'name':'zmon.check.1','group_by':[{'name':'tag','tags':['entity'],'group':{'entity':'a'}}],'tags':{'entity':['a'],'key':['x']},'values':[[1,1],[2,2]]}]}]}");
+        final JsonNode empty = json("{'queries':[{'sample_size':0,'results':[{'name':'zmon.check.1','group_by':[{'name':'type','type':'number'}],'tags':{},'values':[]}]}]}");
+        final JsonNode last = json("{'queries':[{'sample_size':2,'results':["
+                + "{'name':'zmon.check.1','group_by':[{'name':'tag','tags':['entity'],'group':{'entity':'a'}}],'tags':{'entity':['a'],'key':['y']},'values':[[5,5]]},"
+                + "{'name':'zmon.check.1','group_by':[{'name':'tag','tags':['entity'],'group':{'entity':'b'}}],'tags':{'entity':['b']},'values':[[6,6]]}]}]}");
+
+        final JsonNode merged = KairosDBQuerySplitter.merge(Arrays.asList(first, empty, last));
+
+        MatcherAssert.assertThat(merged.toString(), Matchers.equalTo(json("{'queries':[{'sample_size':4,'results':["
+                + "{'name':'zmon.check.1','group_by':[{'name':'tag','tags':['entity'],'group':{'entity':'a'}}],'tags':{'entity':['a'],'key':['x','y']},'values':[[1,1],[2,2],[5,5]]},"
+                + "{'name':'zmon.check.1','group_by':[{'name':'tag','tags':['entity'],'group':{'entity':'b'}}],'tags':{'entity':['b']},'values':[[6,6]]}]}]}").toString()));
+    }
+
+    @Test
+    public void testMergeOfEmptyChunksKeepsOneSeries() throws IOException {
+        final JsonNode empty = json("{'queries':[{'sample_size':0,'results':[{'name':'zmon.check.1','group_by':[{'name':'type','type':'number'}],'tags':{},'values':[]}]}]}");
+
+        MatcherAssert.assertThat(KairosDBQuerySplitter.merge(Arrays.asList(empty, empty)).toString(), Matchers.equalTo(empty.toString()));
+    }
+
+    private static void assertRange(final JsonNode chunk, final long start, final long end) {
+        MatcherAssert.assertThat(chunk.get("start_absolute").asLong(), Matchers.equalTo(start));
+        MatcherAssert.assertThat(chunk.get("end_absolute").asLong(), Matchers.equalTo(end));
+    }
+}
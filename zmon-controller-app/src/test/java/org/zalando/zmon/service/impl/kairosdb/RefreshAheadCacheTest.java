@@ -0,0 +1,104 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class RefreshAheadCacheTest {
+
+    private static final long REFRESH = 1000;
+
+    private static final long EXPIRE = 10000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final RefreshAheadCache<String> cache = new RefreshAheadCache<>("test", REFRESH, EXPIRE, 1024 * 1024,
+            metricRegistry, now::get);
+
+    private final List<SettableListenableFuture<EncodedBody>> loads = new ArrayList<>();
+
+    private ListenableFuture<EncodedBody> get() {
+        return cache.get("kairosdb", () -> {
+            final SettableListenableFuture<EncodedBody> load = new SettableListenableFuture<>();
+            loads.add(load);
+            return load;
+        });
+    }
+
+    private static EncodedBody body(final String content) {
+        return new EncodedBody(content.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    private static String content(final ListenableFuture<EncodedBody> future) throws Exception {
+        return new String(future.get().getBytes(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testMissWaitsForLoadAndHitIsServedFromCache() throws Exception {
+        final ListenableFuture<EncodedBody> first = get();
+        final ListenableFuture<EncodedBody> concurrent = get();
+        MatcherAssert.assertThat(loads, Matchers.hasSize(1));
+        MatcherAssert.assertThat(first.isDone(), Matchers.is(false));
+
+        loads.get(0).set(body("v1"));
+
+        MatcherAssert.assertThat(content(first), Matchers.equalTo("v1"));
+        MatcherAssert.assertThat(content(concurrent), Matchers.equalTo("v1"));
+        MatcherAssert.assertThat(content(get()), Matchers.equalTo("v1"));
+        MatcherAssert.assertThat(loads, Matchers.hasSize(1));
+        MatcherAssert.assertThat(metricRegistry.meter("test.hit").getCount(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    public void testStaleValueIsServedWhileRefreshing() throws Exception {
+        get();
+        loads.get(0).set(body("v1"));
+
+        now.addAndGet(REFRESH);
+        MatcherAssert.assertThat(content(get()), Matchers.equalTo("v1"));
+        MatcherAssert.assertThat(content(get()), Matchers.equalTo("v1"));
+        MatcherAssert.assertThat("one refresh in flight", loads, Matchers.hasSize(2));
+
+        loads.get(1).set(body("v2"));
+        MatcherAssert.assertThat(content(get()), Matchers.equalTo("v2"));
+        MatcherAssert.assertThat(metricRegistry.meter("test.stale").getCount(), Matchers.equalTo(2L));
+    }
+
+    @Test
+    public void testFailedRefreshKeepsStaleValue() throws Exception {
+        get();
+        loads.get(0).set(body("v1"));
+
+        now.addAndGet(REFRESH);
+        get();
+        loads.get(1).setException(new IllegalStateException("down"));
+
+        MatcherAssert.assertThat(content(get()), Matchers.equalTo("v1"));
+    }
+
+    @Test
+    public void testExpiredValueIsLoadedAgain() throws Exception {
+        get();
+        loads.get(0).set(body("v1"));
+
+        now.addAndGet(EXPIRE);
+        cache.invalidateAll();
+
+        final ListenableFuture<EncodedBody> next = get();
+        MatcherAssert.assertThat(next.isDone(), Matchers.is(false));
+        loads.get(1).set(body("v2"));
+        MatcherAssert.assertThat(content(next), Matchers.equalTo("v2"));
+    }
+}
@@ -0,0 +1,91 @@
+package org.zalando.zmon.service.impl.kairosdb;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final AtomicInteger joins = new AtomicInteger();
+
+    private ListenableFuture<String> execute(final String key, final SettableListenableFuture<String> upstream) {
+        return singleFlight.execute(key, () -> {
+            calls.incrementAndGet();
+            return upstream;
+        }, joins::incrementAndGet);
+    }
+
+    @Test
+    public void testConcurrentCallsAreCoalesced() throws Exception {
+        final SettableListenableFuture<String> upstream = new SettableListenableFuture<>();
+
+        final ListenableFuture<String> first = execute("q", upstream);
+        final ListenableFuture<String> second = execute("q", new SettableListenableFuture<>());
+        final ListenableFuture<String> other = execute("other", new SettableListenableFuture<>());
+
+        MatcherAssert.assertThat(calls.get(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(joins.get(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(other.isDone(), Matchers.is(false));
+
+        upstream.set("result");
+
+        MatcherAssert.assertThat(first.get(), Matchers.equalTo("result"));
+        MatcherAssert.assertThat(second.get(), Matchers.equalTo("result"));
+        MatcherAssert.assertThat(singleFlight.inFlight(), Matchers.equalTo(1));
+    }
+
+    @Test
+    public void testCompletedCallIsNotReused() throws Exception {
+        final SettableListenableFuture<String> upstream = new SettableListenableFuture<>();
+        upstream.set("old");
+        MatcherAssert.assertThat(execute("q", upstream).get(), Matchers.equalTo("old"));
+
+        final SettableListenableFuture<String> next = new SettableListenableFuture<>();
+        next.set("new");
+        MatcherAssert.assertThat(execute("q", next).get(), Matchers.equalTo("new"));
+
+        MatcherAssert.assertThat(calls.get(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(singleFlight.inFlight(), Matchers.equalTo(0));
+    }
+
+    @Test
+    public void testFailureIsSharedAndCleared() throws Exception {
+        final SettableListenableFuture<String> upstream = new SettableListenableFuture<>();
+
+        final ListenableFuture<String> first = execute("q", upstream);
+        final ListenableFuture<String> second = execute("q", upstream);
+        upstream.setException(new IllegalStateException("down"));
+
+        for (ListenableFuture<String> f : new ListenableFuture[]{first, second}) {
+            try {
+                f.get();
+                MatcherAssert.assertThat("expected failure", false);
+            } catch (ExecutionException e) {
+                MatcherAssert.assertThat(e.getCause().getMessage(), Matchers.equalTo("down"));
+            }
+        }
+        MatcherAssert.assertThat(singleFlight.inFlight(), Matchers.equalTo(0));
+    }
+
+    @Test
+    public void testCancellingOneCallerKeepsOthers() throws Exception {
+        final SettableListenableFuture<String> upstream = new SettableListenableFuture<>();
+
+        final ListenableFuture<String> first = execute("q", upstream);
+        final ListenableFuture<String> second = execute("q", upstream);
+        first.cancel(true);
+        upstream.set("result");
+
+        MatcherAssert.assertThat(second.get(), Matchers.equalTo("result"));
+    }
+}
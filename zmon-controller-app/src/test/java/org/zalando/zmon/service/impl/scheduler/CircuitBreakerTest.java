@@ -0,0 +1,75 @@
+package org.zalando.zmon.service.impl.scheduler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    private final CircuitBreaker breaker = new CircuitBreaker(2, 1000, now::get);
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        breaker.onFailure();
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(true));
+
+        breaker.onFailure();
+        MatcherAssert.assertThat(breaker.isOpen(), Matchers.is(true));
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(false));
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(true));
+    }
+
+    @Test
+    public void testSingleTrialAfterOpenInterval() {
+        breaker.onFailure();
+        breaker.onFailure();
+
+        now.set(1000);
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(true));
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(false));
+
+        breaker.onSuccess();
+        MatcherAssert.assertThat(breaker.isOpen(), Matchers.is(false));
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(true));
+    }
+
+    @Test
+    public void testFailedTrialOpensAgain() {
+        breaker.onFailure();
+        breaker.onFailure();
+
+        now.set(1000);
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(true));
+        breaker.onFailure();
+
+        now.set(1500);
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(false));
+    }
+
+    @Test
+    public void testCancelledTrialKeepsBreakerOpen() {
+        breaker.onFailure();
+        breaker.onFailure();
+
+        now.set(1000);
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(true));
+        breaker.onCancelled();
+
+        MatcherAssert.assertThat(breaker.isOpen(), Matchers.is(true));
+        // the next call is a trial again
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(true));
+        MatcherAssert.assertThat(breaker.tryAcquire(), Matchers.is(false));
+    }
+}
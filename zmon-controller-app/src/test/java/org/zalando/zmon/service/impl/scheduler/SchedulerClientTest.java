@@ -0,0 +1,238 @@
+package org.zalando.zmon.service.impl.scheduler;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.delete;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.zalando.zmon.config.SchedulerProperties;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+
+public class SchedulerClientTest {
+
+    @Rule
+    public final WireMockRule wireMockRule = new WireMockRule(9994);
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private SchedulerProperties properties;
+
+    private SchedulerClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        properties = new SchedulerProperties();
+        properties.setUrl(new URL("http://localhost:9994"));
+        properties.setSocketTimeout(500);
+        properties.setMaxConcurrentCalls(1);
+        properties.setBulkheadWaitMillis(10);
+        properties.setCircuitBreakerFailureThreshold(2);
+        client = new SchedulerClient(properties, metricRegistry);
+
+        wireMockRule.stubFor(get(urlPathEqualTo("/ok")).willReturn(aResponse().withStatus(200).withBody("ok")));
+        wireMockRule.stubFor(get(urlPathEqualTo("/error")).willReturn(aResponse().withStatus(500)));
+        wireMockRule.stubFor(get(urlPathEqualTo("/missing")).willReturn(aResponse().withStatus(404)));
+        wireMockRule.stubFor(get(urlPathEqualTo("/slow")).willReturn(aResponse().withStatus(200).withFixedDelay(1000)));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+    }
+
+    @Test
+    public void testLatencyIsRecordedPerEndpoint() throws IOException {
+        MatcherAssert.assertThat(client.execute("ok", Request.Get(client.url("/ok"))), Matchers.equalTo("ok"));
+        MatcherAssert.assertThat(client.execute("ok", Request.Get(client.url("/ok"))), Matchers.equalTo("ok"));
+
+        MatcherAssert.assertThat(metricRegistry.timer("scheduler.ok").getCount(), Matchers.equalTo(2L));
+        MatcherAssert.assertThat(metricRegistry.meter("scheduler.ok.failed").getCount(), Matchers.equalTo(0L));
+    }
+
+    @Test
+    public void testServerErrorsOpenCircuitBreaker() throws IOException {
+        failTwice();
+
+        try {
+            client.execute("ok", Request.Get(client.url("/ok")));
+            MatcherAssert.assertThat("should be rejected", false);
+        } catch (SchedulerUnavailableException e) {
+            MatcherAssert.assertThat(e.getMessage(), Matchers.containsString("circuit breaker open"));
+        }
+
+        MatcherAssert.assertThat(metricRegistry.meter("scheduler.error.failed").getCount(), Matchers.equalTo(2L));
+        MatcherAssert.assertThat(metricRegistry.meter("scheduler.ok.rejected").getCount(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(metricRegistry.timer("scheduler.ok").getCount(), Matchers.equalTo(0L));
+    }
+
+    @Test
+    public void testClientErrorsDoNotCountAsFailures() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            try {
+                client.execute("missing", Request.Get(client.url("/missing")));
+            } catch (HttpResponseException e) {
+                MatcherAssert.assertThat(e.getStatusCode(), Matchers.equalTo(404));
+            }
+        }
+
+        MatcherAssert.assertThat(client.execute("ok", Request.Get(client.url("/ok"))), Matchers.equalTo("ok"));
+        MatcherAssert.assertThat(metricRegistry.meter("scheduler.missing.failed").getCount(), Matchers.equalTo(0L));
+    }
+
+    @Test
+    public void testTimeoutCountsAsFailure() throws IOException {
+        try {
+            client.execute("slow", Request.Get(client.url("/slow")));
+            MatcherAssert.assertThat("should time out", false);
+        } catch (IOException e) {
+            MatcherAssert.assertThat(e, Matchers.not(Matchers.instanceOf(HttpResponseException.class)));
+        }
+
+        MatcherAssert.assertThat(metricRegistry.meter("scheduler.slow.failed").getCount(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(metricRegistry.timer("scheduler.slow").getCount(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    public void testBulkheadRejectsCallsOverLimit() throws Exception {
+        properties.setSocketTimeout(5000);
+        client.close();
+        client = new SchedulerClient(properties, metricRegistry);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> slow = executor.submit(() -> client.execute("slow", Request.Get(client.url("/slow"))));
+            // wait until the slow call holds the only slot
+            while (wireMockRule.findAll(getRequestedFor(urlPathEqualTo("/slow"))).isEmpty()) {
+                Thread.sleep(10);
+            }
+
+            try {
+                client.execute("ok", Request.Get(client.url("/ok")));
+                MatcherAssert.assertThat("should be rejected", false);
+            } catch (SchedulerUnavailableException e) {
+                MatcherAssert.assertThat(e.getMessage(), Matchers.containsString("too many concurrent calls"));
+            }
+            MatcherAssert.assertThat(metricRegistry.meter("scheduler.ok.rejected").getCount(), Matchers.equalTo(1L));
+
+            slow.get(5, TimeUnit.SECONDS);
+            MatcherAssert.assertThat(client.execute("ok", Request.Get(client.url("/ok"))), Matchers.equalTo("ok"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancelledTrialDoesNotCloseCircuitBreaker() throws Exception {
+        properties.setCircuitBreakerOpenMillis(200);
+        client.close();
+        client = new SchedulerClient(properties, metricRegistry);
+        wireMockRule.stubFor(delete(urlPathEqualTo("/slow")).willReturn(aResponse().withStatus(200).withFixedDelay(1000)));
+
+        failTwice();
+        Thread.sleep(250);
+
+        // the trial call is cancelled
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        client.executeAsync("slow", new HttpDelete(client.url("/slow")), new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(final HttpResponse result) {
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+            }
+
+            @Override
+            public void cancelled() {
+                cancelled.countDown();
+            }
+        }).cancel(true);
+        MatcherAssert.assertThat(cancelled.await(5, TimeUnit.SECONDS), Matchers.is(true));
+
+        // the next call is a trial again, and its failure opens the breaker at once
+        try {
+            client.execute("error", Request.Get(client.url("/error")));
+            MatcherAssert.assertThat("should fail", false);
+        } catch (HttpResponseException e) {
+            MatcherAssert.assertThat(e.getStatusCode(), Matchers.equalTo(500));
+        }
+        try {
+            client.execute("ok", Request.Get(client.url("/ok")));
+            MatcherAssert.assertThat("should be rejected", false);
+        } catch (SchedulerUnavailableException e) {
+            MatcherAssert.assertThat(e.getMessage(), Matchers.containsString("circuit breaker open"));
+        }
+    }
+
+    @Test
+    public void testTrialFailingToSendDoesNotKeepCircuitBreakerOpen() throws Exception {
+        properties.setCircuitBreakerOpenMillis(200);
+        client.close();
+        client = new SchedulerClient(properties, metricRegistry);
+
+        failTwice();
+        Thread.sleep(250);
+
+        // the trial call cannot even be sent, no callback runs
+        ((CloseableHttpAsyncClient) ReflectionTestUtils.getField(client, "httpAsyncClient")).close();
+        try {
+            client.executeAsync("ok", new HttpDelete(client.url("/ok")), new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(final HttpResponse result) {
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                }
+
+                @Override
+                public void cancelled() {
+                }
+            });
+            MatcherAssert.assertThat("should fail", false);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        MatcherAssert.assertThat(metricRegistry.meter("scheduler.ok.failed").getCount(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(metricRegistry.timer("scheduler.ok").getCount(), Matchers.equalTo(1L));
+
+        // counted as a failed trial, the breaker lets the next trial through after the open interval
+        Thread.sleep(250);
+        MatcherAssert.assertThat(client.execute("ok", Request.Get(client.url("/ok"))), Matchers.equalTo("ok"));
+    }
+
+    private void failTwice() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            try {
+                client.execute("error", Request.Get(client.url("/error")));
+                MatcherAssert.assertThat("should fail", false);
+            } catch (HttpResponseException e) {
+                MatcherAssert.assertThat(e.getStatusCode(), Matchers.equalTo(500));
+            }
+        }
+    }
+}
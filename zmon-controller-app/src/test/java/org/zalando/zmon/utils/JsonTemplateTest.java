@@ -0,0 +1,49 @@
+package org.zalando.zmon.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+import org.zalando.zmon.util.JsonTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
+
+public class JsonTemplateTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testPlaceholdersAreSubstituted() throws Exception {
+        final JsonNode source = MAPPER.readTree("{\"title\":\"{checkName} ({checkId})\",\"id\":1,"
+                + "\"rows\":[{\"targets\":[\"zmon.check.{checkId}\",\"$entity\",\"{other}\"]}],\"{checkId}\":\"key\"}");
+        final JsonTemplate template = JsonTemplate.compile(source, ImmutableSet.of("checkId", "checkName"));
+
+        final Map<String, String> values = new HashMap<>();
+        values.put("checkId", "123");
+        values.put("checkName", "Costs in $ \\o/");
+
+        MatcherAssert.assertThat(template.render(values).toString(), Matchers.equalTo(
+                "{\"title\":\"Costs in $ \\\\o/ (123)\",\"id\":1,"
+                        + "\"rows\":[{\"targets\":[\"zmon.check.123\",\"$entity\",\"{other}\"]}],\"{checkId}\":\"key\"}"));
+    }
+
+    @Test
+    public void testRenderDoesNotModifyTemplate() throws Exception {
+        final JsonNode source = MAPPER.readTree("{\"title\":\"{checkId}\"}");
+        final JsonTemplate template = JsonTemplate.compile(source, ImmutableSet.of("checkId"));
+
+        final JsonNode first = template.render(new HashMap<>());
+        ((ObjectNode) first).put("title", "changed");
+
+        final Map<String, String> values = new HashMap<>();
+        values.put("checkId", "1");
+        MatcherAssert.assertThat(template.render(values).get("title").textValue(), Matchers.equalTo("1"));
+        MatcherAssert.assertThat(source.get("title").textValue(), Matchers.equalTo("{checkId}"));
+    }
+}
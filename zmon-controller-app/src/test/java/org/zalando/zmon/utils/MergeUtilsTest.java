@@ -0,0 +1,46 @@
+package org.zalando.zmon.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+import org.zalando.zmon.util.MergeUtils;
+
+public class MergeUtilsTest {
+
+    private static final Comparator<Integer> DESCENDING = Comparator.reverseOrder();
+
+    @Test
+    public void testMergeSorted() {
+        final List<Integer> merged = MergeUtils.mergeSorted(
+                Arrays.asList(Arrays.asList(9, 5, 1).iterator(), Arrays.asList(8, 6, 2).iterator()), DESCENDING, null);
+
+        MatcherAssert.assertThat(merged, Matchers.contains(9, 8, 6, 5, 2, 1));
+    }
+
+    @Test
+    public void testMergeSortedStopsAtLimit() {
+        final Iterator<Integer> second = Arrays.asList(3, 2, 1).iterator();
+        final List<Integer> merged = MergeUtils.mergeSorted(Arrays.asList(Arrays.asList(10, 9, 8).iterator(), second),
+                DESCENDING, 2);
+
+        MatcherAssert.assertThat(merged, Matchers.contains(10, 9));
+
+        // only the head of the second source was pulled
+        MatcherAssert.assertThat(second.next(), Matchers.equalTo(2));
+    }
+
+    @Test
+    public void testMergeSortedLimitLargerThanInput() {
+        final List<Integer> merged = MergeUtils.mergeSorted(
+                Arrays.asList(Collections.<Integer>emptyIterator(), Arrays.asList(4, 3).iterator()), DESCENDING, 50);
+
+        MatcherAssert.assertThat(merged, Matchers.contains(4, 3));
+    }
+}
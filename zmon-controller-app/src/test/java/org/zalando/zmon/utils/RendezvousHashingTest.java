@@ -0,0 +1,44 @@
+package org.zalando.zmon.utils;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+import org.zalando.zmon.util.RendezvousHashing;
+
+public class RendezvousHashingTest {
+
+    private static final int KEYS = 10000;
+
+    @Test
+    public void testSelectNodeIsStableAndInRange() {
+        for (int i = 0; i < KEYS; i++) {
+            final int node = RendezvousHashing.selectNode("app-" + i, 3);
+
+            MatcherAssert.assertThat(node, Matchers.allOf(Matchers.greaterThanOrEqualTo(0), Matchers.lessThan(3)));
+            MatcherAssert.assertThat(RendezvousHashing.selectNode("app-" + i, 3), Matchers.equalTo(node));
+        }
+    }
+
+    @Test
+    public void testAddingNodeOnlyMovesKeysToNewNode() {
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            final int before = RendezvousHashing.selectNode("app-" + i, 3);
+            final int after = RendezvousHashing.selectNode("app-" + i, 4);
+
+            if (before != after) {
+                MatcherAssert.assertThat(after, Matchers.equalTo(3));
+                moved++;
+            }
+        }
+
+        // about a quarter of the keys belong to the new node
+        MatcherAssert.assertThat(moved, Matchers.allOf(Matchers.greaterThan(KEYS / 5), Matchers.lessThan(KEYS * 3 / 10)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoNodes() {
+        RendezvousHashing.selectNode("app", 0);
+    }
+}
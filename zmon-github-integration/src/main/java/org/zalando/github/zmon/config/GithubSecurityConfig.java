@@ -1,5 +1,6 @@
 package org.zalando.github.zmon.config;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -23,6 +24,7 @@ import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.social.security.SocialUserDetailsService;
 import org.springframework.social.security.SpringSocialConfigurer;
+import org.zalando.github.zmon.security.GithubResourceServerProperties;
 import org.zalando.github.zmon.security.GithubSignupConditionProperties;
 import org.zalando.github.zmon.security.IsAllowedOrgaSignupCondition;
 import org.zalando.github.zmon.security.IsAllowedUserSignupCondition;
@@ -78,6 +80,12 @@ public class GithubSecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private IsAllowedUserSignupCondition userCondition;
 
+    @Autowired
+    private GithubResourceServerProperties tokensProperties;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
     @Autowired
     public void configureGlobal(final AuthenticationManagerBuilder auth) throws Exception {
         auth.userDetailsService(userDetailsManager());
@@ -158,7 +166,8 @@ public class GithubSecurityConfig extends WebSecurityConfigurerAdapter {
     public ResourceServerConfigurer zmonResourceServerConfigurer() {
         final List<ResourceServerTokenServices> chain = ImmutableList.of(
                 new PresharedTokensResourceServerTokenServices(authorityService, environment),
-                new GithubResourceServerTokenServices(authorityService, userCondition, orgaCondition));
+                new GithubResourceServerTokenServices(authorityService, userCondition, orgaCondition,
+                        tokensProperties, metricRegistry));
         return new ZmonResourceServerConfigurer(new ChainedResourceServerTokenServices(chain));
     }
 }
@@ -7,6 +7,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Profile;
 
+import org.zalando.github.zmon.security.GithubResourceServerProperties;
 import org.zalando.github.zmon.security.GithubSignupConditionProperties;
 
 import org.zalando.zmon.config.ZmonOAuth2Properties;
@@ -16,7 +17,8 @@ import org.zalando.zmon.security.SigninController;
  * @author  jbellmann
  */
 @Configuration
-@EnableConfigurationProperties({ ZmonOAuth2Properties.class, GithubSignupConditionProperties.class })
+@EnableConfigurationProperties({ ZmonOAuth2Properties.class, GithubSignupConditionProperties.class,
+        GithubResourceServerProperties.class })
 @Import(
     {
         GithubSecurityConfig.class, GithubSocialConfigurer.class, GithubAccountConnectionSignupConfig.class,
@@ -0,0 +1,49 @@
+package org.zalando.github.zmon.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Caching of GitHub access tokens presented to the API.
+ */
+@ConfigurationProperties(prefix = "zmon.github.tokens")
+public class GithubResourceServerProperties {
+
+    /**
+     * Maximum number of valid and of invalid tokens kept, 0 asks GitHub on every request.
+     */
+    private int cacheSize = 10000;
+
+    /**
+     * How long a valid token is used without asking GitHub again.
+     */
+    private int cacheSeconds = 300;
+
+    /**
+     * How long an invalid token is rejected without asking GitHub again.
+     */
+    private int invalidCacheSeconds = 60;
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(final int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public int getCacheSeconds() {
+        return cacheSeconds;
+    }
+
+    public void setCacheSeconds(final int cacheSeconds) {
+        this.cacheSeconds = cacheSeconds;
+    }
+
+    public int getInvalidCacheSeconds() {
+        return invalidCacheSeconds;
+    }
+
+    public void setInvalidCacheSeconds(final int invalidCacheSeconds) {
+        this.invalidCacheSeconds = invalidCacheSeconds;
+    }
+}
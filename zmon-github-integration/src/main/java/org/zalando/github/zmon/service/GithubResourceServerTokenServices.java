@@ -1,8 +1,11 @@
 package org.zalando.github.zmon.service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -13,17 +16,29 @@ import org.springframework.security.oauth2.common.exceptions.InvalidTokenExcepti
 import org.springframework.security.oauth2.provider.OAuth2Authentication;
 import org.springframework.security.oauth2.provider.OAuth2Request;
 import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+import org.springframework.social.github.api.GitHub;
 import org.springframework.social.github.api.impl.GitHubTemplate;
 import org.springframework.web.client.HttpClientErrorException;
+import org.zalando.github.zmon.security.GithubResourceServerProperties;
 import org.zalando.github.zmon.security.IsAllowedOrgaSignupCondition;
 import org.zalando.github.zmon.security.IsAllowedUserSignupCondition;
 import org.zalando.zmon.security.AuthorityService;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * Created by hjacobs on 14.12.15.
+ *
+ * <p>Tokens are cached by their hash, valid ones with their user and authorities, invalid ones with the reason, so
+ * repeated requests with the same token do not ask GitHub again until the entry expires.
  */
 public class GithubResourceServerTokenServices implements ResourceServerTokenServices {
 
@@ -32,38 +47,116 @@ public class GithubResourceServerTokenServices implements ResourceServerTokenSer
     private final IsAllowedUserSignupCondition userCondition;
     private final IsAllowedOrgaSignupCondition orgaCondition;
 
-    public GithubResourceServerTokenServices(AuthorityService authorityService, IsAllowedUserSignupCondition userCondition, IsAllowedOrgaSignupCondition orgaCondition) {
+    private final MetricRegistry metricRegistry;
+
+    // both null if caching is disabled
+    private final Cache<String, GithubUser> validTokens;
+    private final Cache<String, String> invalidTokens;
+
+    private static final class GithubUser {
+        private final String userName;
+        private final Collection<? extends GrantedAuthority> authorities;
+
+        private GithubUser(String userName, Collection<? extends GrantedAuthority> authorities) {
+            this.userName = userName;
+            this.authorities = authorities;
+        }
+    }
+
+    public GithubResourceServerTokenServices(AuthorityService authorityService, IsAllowedUserSignupCondition userCondition,
+                                             IsAllowedOrgaSignupCondition orgaCondition,
+                                             GithubResourceServerProperties properties, MetricRegistry metricRegistry) {
         this.authorityService = authorityService;
         this.userCondition = userCondition;
         this.orgaCondition = orgaCondition;
+        this.metricRegistry = metricRegistry;
+
+        if (properties.getCacheSize() > 0) {
+            this.validTokens = CacheBuilder.newBuilder()
+                    .maximumSize(properties.getCacheSize())
+                    .expireAfterWrite(properties.getCacheSeconds(), TimeUnit.SECONDS)
+                    .build();
+            this.invalidTokens = CacheBuilder.newBuilder()
+                    .maximumSize(properties.getCacheSize())
+                    .expireAfterWrite(properties.getInvalidCacheSeconds(), TimeUnit.SECONDS)
+                    .build();
+        } else {
+            this.validTokens = null;
+            this.invalidTokens = null;
+        }
     }
 
     @Override
     public OAuth2Authentication loadAuthentication(String accessToken)
             throws AuthenticationException, InvalidTokenException {
-        GitHubTemplate github = new GitHubTemplate(accessToken);
+        if (validTokens == null) {
+            return toAuthentication(lookup(accessToken));
+        }
 
-        try {
-            boolean matchUser = userCondition.matches(github);
-            boolean matchOrgas = orgaCondition.matches(github);
+        String key = Hashing.sha256().hashString(accessToken, StandardCharsets.UTF_8).toString();
 
-            if (!matchUser || !matchOrgas) {
-                throw new InvalidTokenException("User or Organization access not allowed");
-            }
+        String invalid = invalidTokens.getIfPresent(key);
+        if (invalid != null) {
+            metricRegistry.meter("github.tokens.hit.invalid").mark();
+            throw new InvalidTokenException(invalid);
+        }
+
+        GithubUser user = validTokens.getIfPresent(key);
+        if (user != null) {
+            metricRegistry.meter("github.tokens.hit").mark();
+            return toAuthentication(user);
+        }
 
-        } catch (HttpClientErrorException ex) {
-            if (HttpStatus.UNAUTHORIZED == ex.getStatusCode()) {
-                throw new InvalidTokenException("Invalid GitHub access token!");
+        metricRegistry.meter("github.tokens.miss").mark();
+        try {
+            // concurrent requests with the same token share one lookup
+            return toAuthentication(validTokens.get(key, () -> lookup(accessToken)));
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof InvalidTokenException) {
+                invalidTokens.put(key, e.getCause().getMessage());
             }
-            throw ex;
+            throw Throwables.propagate(e.getCause());
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
         }
+    }
+
+    private GithubUser lookup(String accessToken) {
+        Timer.Context timer = metricRegistry.timer("github.tokens.lookup").time();
+        try {
+            GitHub github = github(accessToken);
+
+            try {
+                boolean matchUser = userCondition.matches(github);
+                boolean matchOrgas = orgaCondition.matches(github);
+
+                if (!matchUser || !matchOrgas) {
+                    throw new InvalidTokenException("User or Organization access not allowed");
+                }
 
-        String userName = github.userOperations().getProfileId();
+            } catch (HttpClientErrorException ex) {
+                if (HttpStatus.UNAUTHORIZED == ex.getStatusCode()) {
+                    throw new InvalidTokenException("Invalid GitHub access token!");
+                }
+                throw ex;
+            }
+
+            String userName = github.userOperations().getProfileId();
+
+            return new GithubUser(userName, authorityService.getAuthorities(userName));
+        } finally {
+            timer.stop();
+        }
+    }
 
-        Collection<? extends GrantedAuthority> authorities = authorityService.getAuthorities(userName);
+    protected GitHub github(String accessToken) {
+        return new GitHubTemplate(accessToken);
+    }
 
-        UsernamePasswordAuthenticationToken user = new UsernamePasswordAuthenticationToken(userName, "N/A",
-                authorities);
+    // a new authentication for every request, as the security filters modify it
+    private static OAuth2Authentication toAuthentication(GithubUser githubUser) {
+        UsernamePasswordAuthenticationToken user = new UsernamePasswordAuthenticationToken(githubUser.userName, "N/A",
+                githubUser.authorities);
 
         Set<String> scopes = Sets.newHashSet("uid");
         Map<String, Object> map = Maps.newHashMap();
@@ -0,0 +1,93 @@
+package org.zalando.github.zmon.service;
+
+import java.util.Collections;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.social.github.api.GitHub;
+import org.springframework.social.github.api.UserOperations;
+import org.springframework.web.client.HttpClientErrorException;
+import org.zalando.github.zmon.security.GithubResourceServerProperties;
+import org.zalando.github.zmon.security.IsAllowedOrgaSignupCondition;
+import org.zalando.github.zmon.security.IsAllowedUserSignupCondition;
+import org.zalando.zmon.security.AuthorityService;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class GithubResourceServerTokenServicesTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private GitHub github = Mockito.mock(GitHub.class);
+    private UserOperations userOperations = Mockito.mock(UserOperations.class);
+    private IsAllowedUserSignupCondition userCondition = Mockito.mock(IsAllowedUserSignupCondition.class);
+    private IsAllowedOrgaSignupCondition orgaCondition = Mockito.mock(IsAllowedOrgaSignupCondition.class);
+    private AuthorityService authorityService = Mockito.mock(AuthorityService.class);
+
+    private GithubResourceServerTokenServices tokenServices;
+
+    @Before
+    public void setUp() {
+        Mockito.when(github.userOperations()).thenReturn(userOperations);
+        Mockito.when(userOperations.getProfileId()).thenReturn("pmueller");
+        Mockito.when(userCondition.matches(github)).thenReturn(true);
+        Mockito.when(orgaCondition.matches(github)).thenReturn(true);
+        Mockito.when(authorityService.getAuthorities("pmueller")).thenReturn(Collections.emptyList());
+
+        tokenServices = new GithubResourceServerTokenServices(authorityService, userCondition, orgaCondition,
+                new GithubResourceServerProperties(), metricRegistry) {
+            @Override
+            protected GitHub github(String accessToken) {
+                return github;
+            }
+        };
+    }
+
+    @Test
+    public void validTokenIsCached() {
+        OAuth2Authentication first = tokenServices.loadAuthentication("token");
+        OAuth2Authentication second = tokenServices.loadAuthentication("token");
+
+        Assertions.assertThat(first.getName()).isEqualTo("pmueller");
+        Assertions.assertThat(second.getName()).isEqualTo("pmueller");
+        Assertions.assertThat(second).isNotSameAs(first);
+        Mockito.verify(userCondition, Mockito.times(1)).matches(github);
+        Assertions.assertThat(metricRegistry.meter("github.tokens.hit").getCount()).isEqualTo(1);
+        Assertions.assertThat(metricRegistry.timer("github.tokens.lookup").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidTokenIsCached() {
+        Mockito.when(userCondition.matches(github)).thenThrow(new HttpClientErrorException(HttpStatus.UNAUTHORIZED));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                tokenServices.loadAuthentication("token");
+                Assertions.fail("token should be invalid");
+            } catch (InvalidTokenException e) {
+                Assertions.assertThat(e.getMessage()).isEqualTo("Invalid GitHub access token!");
+            }
+        }
+        Mockito.verify(userCondition, Mockito.times(1)).matches(github);
+        Assertions.assertThat(metricRegistry.meter("github.tokens.hit.invalid").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void otherGithubErrorsAreNotCached() {
+        Mockito.when(userCondition.matches(github)).thenThrow(new HttpClientErrorException(HttpStatus.FORBIDDEN))
+               .thenReturn(true);
+
+        try {
+            tokenServices.loadAuthentication("token");
+            Assertions.fail("GitHub error should be thrown");
+        } catch (HttpClientErrorException e) {
+            Assertions.assertThat(e.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        }
+        Assertions.assertThat(tokenServices.loadAuthentication("token").getName()).isEqualTo("pmueller");
+    }
+}
@@ -1,5 +1,6 @@
 package org.zalando.zmon.security.jwt;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -22,8 +23,11 @@ import org.zalando.zmon.security.authority.AbstractZMonAuthority;
 import org.zalando.zmon.security.authority.ZMONRoleToAuthority;
 import org.zalando.zmon.security.authority.ZMonAuthority;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
@@ -35,7 +39,7 @@ import com.nimbusds.jose.Payload;
 import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.jwt.SignedJWT;
 
 import javaslang.control.Try;
 import net.minidev.json.JSONStyle;
@@ -50,6 +54,8 @@ public class JWTService {
 
     private static final String COOKIE_NAME = "ZMON_JWT";
 
+    private static final long VALIDITY_HOURS = 24;
+
     private final Logger log = LoggerFactory.getLogger(JWTService.class);
 
     private final JWSHeader header;
@@ -57,7 +63,33 @@ public class JWTService {
     private final JWSVerifier verifier;
     private final JWSAlgorithm algorithm;
 
+    // token hash to the user of already verified cookies, null if disabled
+    private final Cache<String, VerifiedToken> cache;
+
+    private static final class VerifiedToken {
+        private final User user;
+        private final GrantedAuthority authority;
+        private final long expirationTime;
+
+        private VerifiedToken(User user, GrantedAuthority authority, long expirationTime) {
+            this.user = user;
+            this.authority = authority;
+            this.expirationTime = expirationTime;
+        }
+
+        private boolean isExpired() {
+            return expirationTime < System.currentTimeMillis();
+        }
+    }
+
     public JWTService(JWTServiceProperties jwtServiceProperties) {
+        this.cache = jwtServiceProperties.getCacheSize() > 0
+                ? CacheBuilder.newBuilder()
+                        .maximumSize(jwtServiceProperties.getCacheSize())
+                        // drops expired tokens even if the cache is not full
+                        .expireAfterWrite(VALIDITY_HOURS, TimeUnit.HOURS)
+                        .build()
+                : null;
         try {
             this.signer = new MACSigner(jwtServiceProperties.getSecret());
             this.verifier = new MACVerifier(jwtServiceProperties.getSecret());
@@ -81,32 +113,58 @@ public class JWTService {
             return null;
         } else {
             String jwtString = cookie.getValue();
-            if (!signedByApp(jwtString)) {
-                // JWT was not signed with our current secret
-                return null;
-            } else {
-                JWTClaimsSet claims = Try.of(() -> JWTParser.parse(jwtString).getJWTClaimsSet())
-                        .getOrElse((JWTClaimsSet) null);
-                if (claims != null) {
-                    if (claims.getExpirationTime().getTime() < System.currentTimeMillis()) {
-                        // JWT expired, treat same as unauthenticated
-                        return null;
-                    }
-                    try {
-                        String username = claims.getSubject();
-                        Set<String> teams = StringUtils.commaDelimitedListToSet((String) claims.getClaim(TEAMS_CLAIM));
-                        String rolename = (String) claims.getClaim(AUTHORITY_CLAIM);
-                        GrantedAuthority authority = ZMONRoleToAuthority.createAutority(rolename, username, teams);
-                        return new RememberMeAuthenticationToken("ZMON_JWT",
-                                new User(username, "N/A", Lists.newArrayList(authority)),
-                                Lists.newArrayList(authority));
-                    } catch (Exception e) {
-                        log.error(e.getMessage(), e);
-                    }
+            if (cache == null) {
+                return toAuthentication(verify(jwtString));
+            }
+
+            // the cookie is signed, so only its expiration can change the result
+            String key = Hashing.sha256().hashString(jwtString, StandardCharsets.UTF_8).toString();
+            VerifiedToken token = cache.getIfPresent(key);
+            if (token == null) {
+                token = verify(jwtString);
+                if (token != null) {
+                    cache.put(key, token);
                 }
+            } else if (token.isExpired()) {
+                cache.invalidate(key);
+                return null;
             }
+            return toAuthentication(token);
+        }
+    }
+
+    private VerifiedToken verify(String jwtString) {
+        SignedJWT jwt = Try.of(() -> SignedJWT.parse(jwtString)).getOrElse((SignedJWT) null);
+        if (jwt == null || !Try.of(() -> jwt.verify(verifier)).getOrElse(false)) {
+            // JWT was not signed with our current secret
+            return null;
+        }
+        JWTClaimsSet claims = Try.of(jwt::getJWTClaimsSet).getOrElse((JWTClaimsSet) null);
+        if (claims != null) {
+            if (claims.getExpirationTime().getTime() < System.currentTimeMillis()) {
+                // JWT expired, treat same as unauthenticated
+                return null;
+            }
+            try {
+                String username = claims.getSubject();
+                Set<String> teams = StringUtils.commaDelimitedListToSet((String) claims.getClaim(TEAMS_CLAIM));
+                String rolename = (String) claims.getClaim(AUTHORITY_CLAIM);
+                GrantedAuthority authority = ZMONRoleToAuthority.createAutority(rolename, username, teams);
+                return new VerifiedToken(new User(username, "N/A", Lists.newArrayList(authority)), authority,
+                        claims.getExpirationTime().getTime());
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+        return null;
+    }
+
+    // a new token for every request, as the security filters may modify it
+    private static Authentication toAuthentication(VerifiedToken token) {
+        if (token == null) {
             return null;
         }
+        return new RememberMeAuthenticationToken("ZMON_JWT", token.user, Lists.newArrayList(token.authority));
     }
 
     public void removeCookie(HttpServletRequest request, HttpServletResponse response) {
@@ -162,7 +220,7 @@ public class JWTService {
         Assert.hasText(username, "'username' should never be null or empty");
         JWTClaimsSet.Builder claimsBuilder = new JWTClaimsSet.Builder()
                 .issuer(ZMON)
-                .expirationTime(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(24)))
+                .expirationTime(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(VALIDITY_HOURS)))
                 .issueTime(new Date())
                 .claim(TEAMS_CLAIM, teams)
                 .claim(AUTHORITY_CLAIM, authority)
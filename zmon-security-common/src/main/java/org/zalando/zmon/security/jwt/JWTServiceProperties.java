@@ -19,6 +19,11 @@ public class JWTServiceProperties {
 
     private String secret;
 
+    /**
+     * Maximum number of verified cookies kept, 0 verifies every request.
+     */
+    private int cacheSize = 10000;
+
     public String getSecret() {
         return secret;
     }
@@ -27,6 +32,14 @@ public class JWTServiceProperties {
         this.secret = secret;
     }
 
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
     @PostConstruct
     public void postConstruct() {
         if (StringUtils.isEmpty(secret)) {
@@ -0,0 +1,68 @@
+package org.zalando.zmon.security.jwt;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.zalando.zmon.security.authority.ZMonUserAuthority;
+
+/**
+ * Cookie authentication of a UI request, with and without the cache of verified cookies.
+ *
+ * <p>Run with {@code main} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JWTServiceBenchmark {
+
+    @Param({ "0", "10000" })
+    public int cacheSize;
+
+    private JWTService service;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        JWTServiceProperties props = new JWTServiceProperties();
+        props.setSecret("28PI9q068f2qCbT38hnGX279Wei5YU5n");
+        props.setCacheSize(cacheSize);
+        service = new JWTService(props);
+
+        GrantedAuthority authority = ZMonUserAuthority.FACTORY.create("kmeier", Collections.singleton("team"));
+        Authentication authentication = new TestingAuthenticationToken("kmeier", "N/A",
+                Collections.singletonList(authority));
+
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+        service.writeCookie(request, response, authentication);
+        request.setCookies(response.getCookie("ZMON_JWT"));
+    }
+
+    @Benchmark
+    public Authentication authenticateFromCookie() {
+        return service.authenticateFromCookie(request, response);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JWTServiceBenchmark.class.getSimpleName()).forks(1).build()).run();
+    }
+}
@@ -1,9 +1,12 @@
 package org.zalando.zmon.security.jwt;
 
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.UUID;
 
+import javax.servlet.http.Cookie;
+
 import org.assertj.core.api.Assertions;
 import org.junit.Before;
 import org.junit.Test;
@@ -24,6 +27,7 @@ import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSObject;
 import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -80,6 +84,58 @@ public class JWTServiceTest {
 
     }
 
+    @Test
+    public void testAuthenticateFromCookie() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.writeCookie(request, response, getAuthentication());
+        request.setCookies(response.getCookie("ZMON_JWT"));
+
+        Authentication first = service.authenticateFromCookie(request, response);
+        Authentication second = service.authenticateFromCookie(request, response);
+        assertThat(first.getName()).isEqualTo("kmeier");
+        assertThat(second.getName()).isEqualTo("kmeier");
+        // served from the cache, but never the same instance
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getPrincipal()).isSameAs(first.getPrincipal());
+    }
+
+    @Test
+    public void testAuthenticateFromCookieNotSignedByApp() throws JOSEException {
+        JWSSigner signer = new MACSigner("b6K0qetsB7SvRJq473rkfP6qEb56m4u9");
+        JWSObject jwt = service.buildJWSObject(service.buildClaimSet(getAuthentication()));
+        jwt.sign(signer);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie("ZMON_JWT", jwt.serialize()));
+        assertThat(service.authenticateFromCookie(request, new MockHttpServletResponse())).isNull();
+        assertThat(service.authenticateFromCookie(request, new MockHttpServletResponse())).isNull();
+    }
+
+    @Test
+    public void testCachedCookieExpires() throws Exception {
+        JWTServiceProperties props = new JWTServiceProperties();
+        props.setSecret("28PI9q068f2qCbT38hnGX279Wei5YU5n");
+        JWTService shortLived = new JWTService(props) {
+            @Override
+            protected JWTClaimsSet buildClaimSet(Authentication authentication) {
+                return new JWTClaimsSet.Builder(super.buildClaimSet(authentication))
+                        .expirationTime(new Date(System.currentTimeMillis() + 1500))
+                        .build();
+            }
+        };
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        shortLived.writeCookie(request, response, getAuthentication());
+        request.setCookies(response.getCookie("ZMON_JWT"));
+
+        assertThat(shortLived.authenticateFromCookie(request, response)).isNotNull();
+        // the expiration time has a precision of seconds
+        Thread.sleep(1600);
+        assertThat(shortLived.authenticateFromCookie(request, response)).isNull();
+    }
+
     protected Authentication getAuthentication() {
         GrantedAuthority ga = ZMonUserAuthority.FACTORY.create("kmeier", Collections.emptySet());
         SocialUserDetails userDetails = new SocialUser("kmeier", "geheim", Lists.newArrayList(ga));